@@ -0,0 +1,221 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Steps the organisms on one thread, letting only the ones that are awake act.
+ *
+ * The organisms act in the order of the list of the simulation, as they always have, with the
+ * newborns added at the end. Every organism is awake at one time of the day: during the day for
+ * most animals, during the night for the nocturnal ones, and during the day for the plants, which
+ * only grow then. A sleeping animal would only grow older, so it is aged at its turn instead of
+ * acting. The animals are also kept in a list of their own, in the same order, and a night step
+ * only goes through that list, so the plants are not visited at all during the night.
+ *
+ * The sleeping animals are aged one at a time, not in a batch ahead of the others. An animal
+ * dying of old age in its sleep leaves its cell free for the organisms after it in the list, so
+ * ageing them all before anyone acts would change the simulation.
+ *
+ * Dead organisms are never removed one by one. They are only marked dead, and the list is
+ * compacted while it is stepped, the survivors moving down over the dead in the same pass. The
+ * organisms of every species are also kept in a list of their own, a lookup beside the list of
+ * the simulation, so removing a whole species only touches the members of that species. Anything
+ * that changes the list outside of a step must call invalidate so the lookups are filled from it
+ * again.
+ *
+ * @author Syraj Alkhalil and Cosmo Colman
+ * @version 2022.02.27 (2)
+ */
+public class ActivityScheduler {
+    /**
+     * The times of the day organisms are awake at.
+     */
+    public enum Window {
+        DIURNAL, NOCTURNAL, PLANT
+    }
+
+    private final List<List<Organism>> species = new ArrayList<>();  // The organisms of every species, by species id
+    private final List<Organism> animals = new ArrayList<>();  // The animals, in the order of the list of the simulation
+    private final List<Organism> newborns = new ArrayList<>(); // The organisms born during the current step
+    private int expectedSize = -1;                              // The size of the list after the last step, -1 to fill the lookups again
+
+    /**
+     * Tell the scheduler the list of organisms was changed outside of a step.
+     */
+    public void invalidate() {
+        expectedSize = -1;
+    }
+
+    /**
+     * Return the time of the day an organism is awake at.
+     *
+     * @param organism the organism
+     * @return the window of the organism
+     */
+    public static Window getWindow(Organism organism) {
+        if (organism instanceof Plant) {
+            return Window.PLANT;
+        }
+        return ((AnimalStats) organism.getStats()).isNocturnal() ? Window.NOCTURNAL : Window.DIURNAL;
+    }
+
+    /**
+     * Return whether the organisms of a window are awake.
+     *
+     * @param window the window
+     * @param isDay is it currently day or night ?
+     * @return true if the organisms of the window act
+     */
+    public static boolean isAwake(Window window, boolean isDay) {
+        return window == Window.NOCTURNAL ? !isDay : isDay;
+    }
+
+    /**
+     * Run one step: let the awake organisms act and the sleeping animals grow older, in the
+     * order of the list, then add the newborns at its end. The organisms dead at their turn
+     * leave the list, the others killed during the step leave it at the next one.
+     *
+     * @param organisms the organisms of the simulation, updated in place
+     * @param isDay is it currently day or night ?
+     * @param weather the current weather
+     * @param profiler the profiler measuring the step
+     */
+    public void step(List<Organism> organisms, boolean isDay, Weather weather, StepProfiler profiler) {
+        if (expectedSize != organisms.size()) {
+            fill(organisms);
+        }
+        newborns.clear();
+        if (isDay) {
+            stepDay(organisms, weather, profiler);
+        } else {
+            stepNight(organisms, weather, profiler);
+        }
+        for (Organism newborn : newborns) {
+            membersOf(newborn.getStats()).add(newborn);
+            if (newborn instanceof Animal) {
+                animals.add(newborn);
+            }
+        }
+        organisms.addAll(newborns);
+        newborns.clear();
+        expectedSize = organisms.size();
+    }
+
+    /**
+     * Step every organism during the day, compacting the list and filling the lookups again.
+     */
+    private void stepDay(List<Organism> organisms, Weather weather, StepProfiler profiler) {
+        for (List<Organism> members : species) {
+            members.clear();
+        }
+        animals.clear();
+        int kept = 0;
+        for (int index = 0; index < organisms.size(); index++) {
+            Organism organism = organisms.get(index);
+            if (organism.getIsAlive() && turn(organism, true, weather, profiler)) {
+                organisms.set(kept++, organism);
+                membersOf(organism.getStats()).add(organism);
+                if (organism instanceof Animal) {
+                    animals.add(organism);
+                }
+            }
+        }
+        organisms.subList(kept, organisms.size()).clear();
+    }
+
+    /**
+     * Step the animals during the night, compacting their list. The list of the simulation is
+     * only compacted if an animal died or a nocturnal one acted, as it may have eaten a plant.
+     */
+    private void stepNight(List<Organism> organisms, Weather weather, StepProfiler profiler) {
+        boolean changed = false;
+        int kept = 0;
+        for (int index = 0; index < animals.size(); index++) {
+            Organism animal = animals.get(index);
+            if (!animal.getIsAlive()) {
+                changed = true;
+                continue;
+            }
+            changed |= isAwake(getWindow(animal), false);
+            if (turn(animal, false, weather, profiler)) {
+                animals.set(kept++, animal);
+            } else {
+                changed = true;
+            }
+        }
+        animals.subList(kept, animals.size()).clear();
+        if (changed) {
+            organisms.removeIf(organism -> !organism.getIsAlive());
+        }
+    }
+
+    /**
+     * Let an organism act if it is awake, or age it if it is a sleeping animal.
+     *
+     * @return true if the organism is still alive
+     */
+    private boolean turn(Organism organism, boolean isDay, Weather weather, StepProfiler profiler) {
+        Window window = getWindow(organism);
+        if (isAwake(window, isDay)) {
+            profiler.act(organism, newborns, isDay, weather);
+        } else if (window != Window.PLANT) {
+            long start = profiler.start();
+            ((Animal) organism).incrementAge();
+            profiler.lap(StepProfiler.Phase.AGING, start);
+        }
+        return organism.getIsAlive();
+    }
+
+    /**
+     * Take every organism of a species out of the field. The organisms leave the list of the
+     * simulation at the next step, until then they are dead.
+     *
+     * @param organisms the organisms of the simulation
+     * @param stats the species, or any clone of it
+     */
+    public void removeSpecies(List<Organism> organisms, EntityStats stats) {
+        if (expectedSize != organisms.size()) {
+            fill(organisms);
+        }
+        int id = stats.getSpeciesId();
+        if (id >= 0 && id < species.size()) {
+            for (Organism member : species.get(id)) {
+                member.remove();
+            }
+            species.get(id).clear();
+        }
+    }
+
+    /**
+     * Return the members of a species, making the list the first time the species is seen.
+     *
+     * @param stats the species
+     * @return the members of the species
+     */
+    private List<Organism> membersOf(EntityStats stats) {
+        int id = stats.getSpeciesId();
+        while (species.size() <= id) {
+            species.add(new ArrayList<>());
+        }
+        return species.get(id);
+    }
+
+    /**
+     * Fill the lookups from the living organisms of the list, dropping the dead from it.
+     *
+     * @param organisms the organisms of the simulation, updated in place
+     */
+    private void fill(List<Organism> organisms) {
+        organisms.removeIf(organism -> !organism.getIsAlive());
+        for (List<Organism> members : species) {
+            members.clear();
+        }
+        animals.clear();
+        for (Organism organism : organisms) {
+            membersOf(organism.getStats()).add(organism);
+            if (organism instanceof Animal) {
+                animals.add(organism);
+            }
+        }
+        expectedSize = organisms.size();
+    }
+}
@@ -3,8 +3,6 @@ import javax.swing.border.LineBorder;
 import java.awt.*;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
-import java.util.Random;
 
 /**
  * A class representing shared characteristics of animals.
@@ -14,12 +12,10 @@ import java.util.Random;
  */
 public abstract class Animal extends Organism{
     // all the field shared by all animals
-    private static final Random rand = Randomizer.getRandom();          // a random chance of things happening shared by all animals
-    private final boolean isMale = rand.nextDouble() < 0.5;             // random chance that each animal might be a male or female
+    private boolean isMale = getRand().nextDouble() < 0.5;              // random chance that each animal might be a male or female
     private boolean isPregnant;                                         // is pregnant is for both the recovery period AND pregnancy
     private int breedCounter;                                           // recovery from being pregnant
     private int foodLevel;                                              // how hungry is the animal if food level is 0 animal dies
-    private final ArrayList<Class> prey;                                // arraylist of all animals that can be eaten by this animal
     private int waterLevel = 500;                                       // how thirsty is the animal if water level is 0 animal dies
 
     /**
@@ -31,10 +27,10 @@ public abstract class Animal extends Organism{
      * @param initLocation The location within the field.
      * @param foodVal the food value of the animal when born
      * @param age the age of the animal when born
+     * @param rand the random stream of the animal
      */
-    public Animal(AnimalStats stats, boolean randomAge, Field field,  Location initLocation, int foodVal, int age) {
-        super(stats, field, initLocation);
-        this.prey = new ArrayList<>();
+    public Animal(AnimalStats stats, boolean randomAge, Field field,  Location initLocation, int foodVal, int age, RandomStream rand) {
+        super(stats, field, initLocation, rand);
         this.breedCounter = 10;
 
         // give the animal a random age + food level if we want to
@@ -120,24 +116,6 @@ public abstract class Animal extends Organism{
         this.breedCounter = pregnancy;
     }
 
-    /**
-     * Add the class to the arraylist so that this animal may feed on the animals of the specified class.
-     *
-     * @param prey a class of the animals that can be eaten by the current animal
-     */
-    protected void addPrey(Class prey) {
-        this.prey.add(prey);
-    }
-
-    /**
-     * A simple getter method to get the prey field.
-     *
-     * @return the arraylist of animals that this animal may eat
-     */
-    protected ArrayList<Class> getPrey() {
-        return this.prey;
-    }
-    
     /**
      * A getter method to get the isMale field.
      *
@@ -166,6 +144,18 @@ public abstract class Animal extends Organism{
         return waterLevel;
     }
 
+    /**
+     * Increase the age by one step. This could result in the animal's death of old age.
+     * It is the only thing an animal does while it sleeps, so the ActivityScheduler calls it
+     * directly on the sleeping animals instead of letting them act.
+     */
+    protected final void incrementAge() {
+        setAgeInSteps(getAgeInSteps() + 1);
+        if(getAgeInDays() > ((AnimalStats)getStats()).getMaxAge()) {
+            setDead();
+        }
+    }
+
     /**
      * Make the animal more thirsty. This could result in the animal's death.
      */
@@ -200,10 +190,27 @@ public abstract class Animal extends Organism{
      *
      * @return if the animal is pregnant
      */
-    private boolean getIsPregnant() {
+    protected boolean getIsPregnant() {
         return isPregnant;
     }
 
+    /**
+     * Put back the state of a saved animal, used when a checkpoint is restored.
+     *
+     * @param isMale is the animal a male
+     * @param isPregnant is the animal pregnant or recovering from a pregnancy
+     * @param breedCounter the steps left before the animal can give birth again
+     * @param foodLevel the food level of the animal
+     * @param waterLevel the water level of the animal
+     */
+    void restoreState(boolean isMale, boolean isPregnant, int breedCounter, int foodLevel, int waterLevel) {
+        this.isMale = isMale;
+        this.isPregnant = isPregnant;
+        this.breedCounter = breedCounter;
+        this.foodLevel = foodLevel;
+        this.waterLevel = waterLevel;
+    }
+
     /**
      * set the food level of the animal
      */
@@ -235,30 +242,33 @@ public abstract class Animal extends Organism{
      * find the location of the food.
      *
      * @return the location of the prey note this could be a plant
-     * @param animalsToEat a list of the animals to be eaten
+     * @param eater the stats whose diet is followed, normally the animal's own
      * @param currentWeather the current weather
      */
-    protected Location findFood(ArrayList<Class> animalsToEat, Weather currentWeather) {
+    protected Location findFood(AnimalStats eater, Weather currentWeather) {
         // first we allow the animal to drink
         setWaterLevel(currentWeather.getActualDownfall());
 
         // then we try to find food.
         Field field = getField();
-        List<Location> adjacent = field.adjacentLocations(getLocation());
-        for (Location where : adjacent) {
-            Object organism = field.getObjectAt(where);
-            for(Class animal : animalsToEat){
-                if(animal.isInstance(organism)){
-                    if(organism instanceof Plant){
-                        ((Plant) organism).setDead();
-                        setFoodLevel(((PlantStats)(((Plant) organism).getStats())).getFoodValue());
-                    }else {
-                        Animal dinner = (Animal) organism;
-                        dinner.setDead();
-                        setFoodLevel(dinner.getFoodLevel());
-                    }
-                    return where;
+        int row = getLocation().getRow();
+        int col = getLocation().getCol();
+        for (int direction : field.randomNeighbourOrder(getRand())) {
+            int where = field.neighbour(row, col, direction);
+            if (where == Field.NO_LOCATION) {
+                continue;
+            }
+            Entity organism = (Entity) field.getObjectAtPacked(where);
+            if(organism != null && eater.eats(organism.getStats())){
+                if(organism instanceof Plant){
+                    ((Plant) organism).setDead();
+                    setFoodLevel(((PlantStats) organism.getStats()).getFoodValue());
+                }else {
+                    Animal dinner = (Animal) organism;
+                    dinner.setDead();
+                    setFoodLevel(dinner.getFoodLevel());
                 }
+                return new Location(Field.rowOf(where), Field.colOf(where));
             }
         }
         return null;
@@ -270,11 +280,14 @@ public abstract class Animal extends Organism{
      * @param currentWeather the current weather
      */
     protected void moveLocationOfAnimal(Weather currentWeather){
+        StepProfiler profiler = getProfiler();
+        long start = profiler.start();
         // Move towards a source of food if found.
-        Location newLocation = findFood(getPrey(), currentWeather);
+        Location newLocation = findFood((AnimalStats) getStats(), currentWeather);
+        start = profiler.lap(StepProfiler.Phase.FEEDING, start);
         if(newLocation == null) {
             // No food found - try to move to a free location.
-            newLocation = getField().freeAdjacentLocation(getLocation());
+            newLocation = getField().freeAdjacentLocation(getLocation(), getRand());
         }
         // See if it was possible to move.
         if(newLocation != null) {
@@ -283,26 +296,14 @@ public abstract class Animal extends Organism{
             // Overcrowding.
             setDead();
         }
-    }
-
-    /**
-     * Each turn this method is being called that allows the disease to
-     * infect other entities on the field
-     *
-     * @param currentWeather the current weather which affects the spread
-     */
-    private void updateInfections(Weather currentWeather){
-        for(Disease disease : this.getDiseases()){
-            disease.infect(currentWeather);
-        }
+        profiler.lap(StepProfiler.Phase.MOVEMENT, start);
     }
 
     /**
      * Update the general statistics of the animal
      * this includes: the hunger, thirst, and the pregnancy
      */
-    protected void updateStatsOfAnimal(Weather currentWeather){
-        updateInfections(currentWeather);
+    protected void updateStatsOfAnimal(){
         incrementThirst();
         incrementHunger();
         setBreedCounter(breedCounter-1);
@@ -316,9 +317,14 @@ public abstract class Animal extends Organism{
      */
     protected boolean findMate(Entity matingPartner){
         Field field = getField();
-        List<Location> adjacent = field.adjacentLocations(getLocation());
-        for (Location where : adjacent) {
-            Entity animal = (Entity) field.getObjectAt(where);
+        int row = getLocation().getRow();
+        int col = getLocation().getCol();
+        for (int direction : field.randomNeighbourOrder(getRand())) {
+            int where = field.neighbour(row, col, direction);
+            if (where == Field.NO_LOCATION) {
+                continue;
+            }
+            Entity animal = (Entity) field.getObjectAtPacked(where);
             if(animal != null && matingPartner.getStats().getName().equals(animal.getStats().getName())){
                 Animal potentialMate = (Animal) animal;
                 if(potentialMate.getAgeInDays() >= potentialMate.getBreedingAge() && potentialMate.getIsMale() != this.getIsMale()){
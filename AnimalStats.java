@@ -1,4 +1,5 @@
 import java.awt.*;
+import java.util.BitSet;
 
 /**
  * A container for all the unique values for an animal. It also makes a backup of the values if the originals want to be reassigned if they're changed
@@ -13,6 +14,7 @@ public class AnimalStats extends EntityStats {
     private int maxLitterSize;               // The maximum number of births.
     private int hungerValue;                 // The food value of a single animal.
     private boolean isNocturnal;             // Determines if the animal is nocturnal
+    private BitSet diet = new BitSet();      // The species the animal eats, by species id
 
     public static final int BREEDINGAGE_MAX = 200;
     public static final int MAXAGE_MAX = 200;
@@ -55,6 +57,7 @@ public class AnimalStats extends EntityStats {
         this.maxAge = clone.maxAge;
         this.maxLitterSize = clone.maxLitterSize;
         this.hungerValue = clone.hungerValue;
+        this.diet = (BitSet) clone.diet.clone();
 
         DEFAULT_STATS = this;
     }
@@ -73,6 +76,18 @@ public class AnimalStats extends EntityStats {
         DEFAULT_STATS = new AnimalStats(this);
     }
 
+    /**
+     * Clones the animal, the clone gets its own copy of the diet.
+     * @return the animal cloned.
+     * @throws CloneNotSupportedException
+     */
+    @Override
+    public AnimalStats clone() throws CloneNotSupportedException {
+        AnimalStats clone = (AnimalStats) super.clone();
+        clone.diet = (BitSet) diet.clone();
+        return clone;
+    }
+
     /**
      * A simple getter method to get the default stats of the animal
      *
@@ -84,14 +99,14 @@ public class AnimalStats extends EntityStats {
     }
 
     /**
-     * resets the stats to the default
+     * resets the stats to the default, the diet included
      */
     @Override
     public void resetToDefault() {
         super.resetToDefault();
         AnimalStats defaults = null;
         try {
-            defaults = (AnimalStats)this.getDefaults().clone();
+            defaults = this.getDefaults().clone();
         } catch (CloneNotSupportedException e) {
             e.printStackTrace();
         }
@@ -99,7 +114,50 @@ public class AnimalStats extends EntityStats {
         this.breedingAge = defaults.breedingAge;
         this.maxAge = defaults.maxAge;
         this.maxLitterSize = defaults.maxLitterSize;
-        this.hungerValue = defaults.hungerValue;;
+        this.hungerValue = defaults.hungerValue;
+        this.diet = defaults.diet;
+    }
+
+    /**
+     * Tell whether an animal of a type eats the entities of another type when no diet is chosen
+     * for it: predators eat prey and prey eat plants.
+     *
+     * @param eater the type of the animal
+     * @param food the type of the entity
+     * @return true if the animal eats the entity by default
+     */
+    public static boolean eatsByDefault(EntityType eater, EntityType food) {
+        return (eater == EntityType.PREDATOR && food == EntityType.PREY)
+                || (eater == EntityType.PREY && food == EntityType.PLANT);
+    }
+
+    /**
+     * Tell whether the animal eats a species, a single lookup done for every neighbour it looks at
+     * when it is hungry. A species that has not joined a simulation yet has no id and is in no
+     * diet.
+     *
+     * @param food the species, or any clone of it
+     * @return true if the species is in the diet of the animal, false if it has no species id
+     */
+    public boolean eats(EntityStats food) {
+        int id = food.getSpeciesId();
+        return id >= 0 && diet.get(id);
+    }
+
+    /**
+     * A simple setter method to add a species to the diet of the animal or take it out. The diet
+     * is kept by species id, so the species must have joined a simulation.
+     *
+     * @param food the species, or any clone of it
+     * @param eats true if the animal eats the species
+     * @throws IllegalArgumentException if the species has no species id yet
+     */
+    public void setEats(EntityStats food, boolean eats) {
+        int id = food.getSpeciesId();
+        if (id < 0) {
+            throw new IllegalArgumentException(food.getName() + " has not joined a simulation and has no species id");
+        }
+        diet.set(id, eats);
     }
 
     // a list of all the getter and setter methods
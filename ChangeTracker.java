@@ -0,0 +1,134 @@
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Remembers which cells of a field changed occupant since it was last drained.
+ * A tracker is handed out by Field.trackChanges() and the field marks it every time a cell is
+ * emptied or given a new occupant, so whoever owns the tracker (the renderer for example) only
+ * has to look at the cells that actually changed.
+ *
+ * The flags are kept by chunk of the field, a chunk getting its flags the first time one of its
+ * cells changes, so draining only looks at the chunks that changed however large the field is.
+ * Every cell and every chunk has a flag of its own. Marking a cell only ever sets flags, so the
+ * parallel engine can mark cells from several threads at once; the tracker must be drained
+ * between steps. When every cell counts as changed, e.g. after the field was cleared, a caller
+ * that can redraw everything its own way asks isAllChanged() and clear() rather than visiting
+ * every cell of a large field.
+ *
+ * @author Syraj Alkhalil and Cosmo Colman
+ * @version 2022.02.27 (2)
+ */
+public class ChangeTracker {
+    private static final int CHUNK_CELLS = Field.CHUNK_SIZE * Field.CHUNK_SIZE;
+
+    private final int depth;                        // The depth of the field
+    private final int width;                        // The width of the field
+    private final int chunkCols;                    // The number of chunks across the field
+    private final byte[][] changedCells;            // 1 for every cell that changed, by chunk then row and column in the chunk, null if none did
+    private final byte[] changedChunks;             // 1 for every chunk holding a changed cell
+    private volatile boolean allChanged;            // Whether every cell counts as changed
+
+    /**
+     * Create a tracker for a field of the given size, every cell starts as changed.
+     *
+     * @param depth the depth of the field
+     * @param width the width of the field
+     */
+    public ChangeTracker(int depth, int width) {
+        this.depth = depth;
+        this.width = width;
+        this.chunkCols = (width + Field.CHUNK_SIZE - 1) / Field.CHUNK_SIZE;
+        int chunks = (depth + Field.CHUNK_SIZE - 1) / Field.CHUNK_SIZE * chunkCols;
+        this.changedCells = new byte[chunks][];
+        this.changedChunks = new byte[chunks];
+        markAll();
+    }
+
+    /**
+     * Mark a cell as changed.
+     *
+     * @param row the row of the cell
+     * @param col the column of the cell
+     */
+    void markChanged(int row, int col) {
+        int chunk = (row / Field.CHUNK_SIZE) * chunkCols + col / Field.CHUNK_SIZE;
+        byte[] cells = changedCells[chunk];
+        if (cells == null) {
+            cells = allocate(chunk);
+        }
+        cells[(row % Field.CHUNK_SIZE) * Field.CHUNK_SIZE + col % Field.CHUNK_SIZE] = 1;
+        changedChunks[chunk] = 1;
+    }
+
+    /**
+     * Give a chunk its flags unless another thread just did.
+     */
+    private synchronized byte[] allocate(int chunk) {
+        if (changedCells[chunk] == null) {
+            changedCells[chunk] = new byte[CHUNK_CELLS];
+        }
+        return changedCells[chunk];
+    }
+
+    /**
+     * Mark every cell as changed, for example when the field is cleared.
+     */
+    void markAll() {
+        allChanged = true;
+    }
+
+    /**
+     * A simple getter method to return the allChanged field
+     *
+     * @return true if every cell counts as changed until the next drain() or clear()
+     */
+    public boolean isAllChanged() {
+        return allChanged;
+    }
+
+    /**
+     * Forget about every change without visiting the cells, e.g. once the caller redrew everything.
+     */
+    public void clear() {
+        allChanged = false;
+        for (byte[] cells : changedCells) {
+            if (cells != null) {
+                Arrays.fill(cells, (byte) 0);
+            }
+        }
+        Arrays.fill(changedChunks, (byte) 0);
+    }
+
+    /**
+     * Visit every cell that changed since the last call and forget about them.
+     * Chunks without changes are skipped as a whole. When every cell changed, e.g. the first
+     * time, every cell is visited in row-major order, otherwise the chunks are visited one after
+     * the other.
+     *
+     * @param visitor called with the index of every changed cell, row * width + col
+     */
+    public void drain(LongConsumer visitor) {
+        if (allChanged) {
+            clear();
+            for (long cell = 0; cell < (long) depth * width; cell++) {
+                visitor.accept(cell);
+            }
+            return;
+        }
+        for (int chunk = 0; chunk < changedChunks.length; chunk++) {
+            if (changedChunks[chunk] == 0) {
+                continue;
+            }
+            changedChunks[chunk] = 0;
+            byte[] cells = changedCells[chunk];
+            int top = chunk / chunkCols * Field.CHUNK_SIZE;
+            int left = chunk % chunkCols * Field.CHUNK_SIZE;
+            for (int offset = 0; offset < CHUNK_CELLS; offset++) {
+                if (cells[offset] != 0) {
+                    cells[offset] = 0;
+                    visitor.accept((long) (top + offset / Field.CHUNK_SIZE) * width + left + offset % Field.CHUNK_SIZE);
+                }
+            }
+        }
+    }
+}
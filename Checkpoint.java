@@ -0,0 +1,490 @@
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Saves the whole state of a simulation to a compact binary file and restores it, so a long
+ * run can be continued later and goes on exactly as if it had never stopped.
+ * The file is written and read through a FileChannel in blocks of BLOCK_SIZE bytes, nothing
+ * is built in memory apart from the organisms themselves. All numbers are big-endian:
+ *
+ *   header     MAGIC, VERSION, depth, width
+ *   clock      step, dayCount
+ *   topology   the ordinal of the Topology of the field
+ *   randomizer run seed, root stream seed and gamma
+ *   weather    season index, visibility, downfall, stream seed and gamma
+ *   epidemic   seed, number of diseases, then spread rate, deadliness and infection period of each
+ *   species    number of possible entities, number of species, then every species
+ *              (the possible entities first, then any species only the organisms still use)
+ *   diets      for every animal species in the same order, the number of species it eats and
+ *              their indices among the species
+ *   organisms  number of organisms, then every living organism in the order they act
+ *
+ * An organism is saved with its species, cell, age, random stream, whether it holds its cell
+ * (a plant can be overwritten by an animal and live on), the state of its cell (its infection)
+ * and then the fields of an animal or a plant.
+ *
+ * @author Syraj Alkhalil and Cosmo Colman
+ * @version 2022.02.27 (2)
+ */
+public class Checkpoint {
+    private static final int MAGIC = 0x46584350;                // "FXCP"
+    private static final int VERSION = 3;                       // Bumped whenever the format changes
+    private static final int BLOCK_SIZE = 1 << 20;              // The size of the buffer between the file and the simulation
+
+    static final byte PREDATOR = 0;                             // The kinds of organism
+    static final byte PREY = 1;
+    static final byte PLANT = 2;
+
+    private static final int HOLDS_CELL = 1;                    // The bits of the flags of an organism
+    private static final int IS_MALE = 2;
+    private static final int IS_PREGNANT = 4;
+
+    /**
+     * Save a simulation.
+     *
+     * @param simulator the simulation to save, it must not be stepping
+     * @param path the file to write, it is replaced if it exists
+     * @throws IOException if the file cannot be written
+     */
+    public static void save(Simulator simulator, Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BLOCK_SIZE);
+            Field field = simulator.getField();
+
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(field.getDepth()).putInt(field.getWidth());
+            buffer.putInt(simulator.getStep()).putInt(simulator.getDayCount());
+            buffer.putInt(field.getTopology().ordinal());
+
+            Randomizer rand = simulator.getRandomizer();
+            buffer.putLong(rand.getRunSeed());
+            putStream(buffer, rand.getStream());
+
+            Weather weather = simulator.getWeather();
+            buffer.putInt(weather.getSeasonIndex()).putInt(weather.getActualVisibility()).putInt(weather.getActualDownfall());
+            putStream(buffer, weather.getRand());
+
+            Epidemic epidemic = simulator.getEpidemic();
+            buffer.putLong(epidemic.getSeed()).putInt(epidemic.getDiseaseCount());
+            for (int id = 1; id <= epidemic.getDiseaseCount(); id++) {
+                Disease disease = epidemic.getDisease(id);
+                buffer.putDouble(disease.getSpreadRate()).putDouble(disease.getDeadliness()).putInt(disease.getInfectionPeriod());
+            }
+
+            List<Organism> organisms = simulator.getOrganisms();
+            List<EntityStats> species = new ArrayList<>(simulator.getPossibleEntities());
+            Map<EntityStats, Integer> speciesIndex = new IdentityHashMap<>();
+            for (EntityStats stats : species) {
+                speciesIndex.putIfAbsent(stats, speciesIndex.size());
+            }
+            int living = 0;
+            for (Organism organism : organisms) {
+                if (isSaved(organism)) {
+                    living++;
+                    if (speciesIndex.putIfAbsent(organism.getStats(), species.size()) == null) {
+                        species.add(organism.getStats());
+                    }
+                }
+            }
+            buffer.putInt(simulator.getPossibleEntities().size()).putInt(species.size());
+            for (EntityStats stats : species) {
+                buffer = flushIfFull(channel, buffer, 1024);
+                putSpecies(buffer, stats);
+            }
+            for (EntityStats stats : species) {
+                if (stats instanceof AnimalStats) {
+                    buffer = flushIfFull(channel, buffer, 4 + 4 * species.size());
+                    putDiet(buffer, (AnimalStats) stats, species);
+                }
+            }
+
+            buffer.putInt(living);
+            for (Organism organism : organisms) {
+                if (isSaved(organism)) {
+                    buffer = flushIfFull(channel, buffer, 64);
+                    putOrganism(buffer, organism, speciesIndex.get(organism.getStats()), field);
+                }
+            }
+            flush(channel, buffer);
+        }
+    }
+
+    /**
+     * Restore a simulation, replacing everything it held.
+     *
+     * @param simulator the simulation to restore into, its field must have the saved size
+     * @param path the file to read
+     * @throws IOException if the file cannot be read or was not written by save
+     */
+    public static void restore(Simulator simulator, Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BLOCK_SIZE);
+            buffer.flip();
+            Field field = simulator.getField();
+
+            buffer = fill(channel, buffer, 28);
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException(path + " is not a checkpoint");
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException(path + " has version " + version + ", expected " + VERSION);
+            }
+            int depth = buffer.getInt();
+            int width = buffer.getInt();
+            if (depth != field.getDepth() || width != field.getWidth()) {
+                throw new IOException(path + " holds a " + depth + "x" + width + " field, expected "
+                        + field.getDepth() + "x" + field.getWidth());
+            }
+            int step = buffer.getInt();
+            int dayCount = buffer.getInt();
+            int topology = buffer.getInt();
+            if (topology < 0 || topology >= Topology.values().length) {
+                throw new IOException(path + " has an unknown topology " + topology);
+            }
+
+            buffer = fill(channel, buffer, 24);
+            long runSeed = buffer.getLong();
+            RandomStream rootStream = getStream(buffer);
+
+            buffer = fill(channel, buffer, 28);
+            int season = buffer.getInt();
+            int visibility = buffer.getInt();
+            int downfall = buffer.getInt();
+            RandomStream weatherStream = getStream(buffer);
+
+            buffer = fill(channel, buffer, 12);
+            long epidemicSeed = buffer.getLong();
+            int diseaseCount = buffer.getInt();
+            List<Disease> diseases = new ArrayList<>();
+            for (int id = 1; id <= diseaseCount; id++) {
+                buffer = fill(channel, buffer, 20);
+                diseases.add(new Disease(buffer.getDouble(), buffer.getDouble(), buffer.getInt()));
+            }
+
+            buffer = fill(channel, buffer, 8);
+            int possibleCount = buffer.getInt();
+            EntityStats[] species = new EntityStats[buffer.getInt()];
+            ArrayList<EntityStats> possibleEntities = new ArrayList<>();
+            for (int index = 0; index < species.length; index++) {
+                buffer = fill(channel, buffer, 2);
+                buffer = fill(channel, buffer, 2 + (buffer.getShort(buffer.position()) & 0xFFFF) + 64);
+                species[index] = getSpecies(buffer);
+                species[index].setSpeciesId(index);
+                if (index < possibleCount) {
+                    possibleEntities.add(species[index]);
+                }
+            }
+            for (EntityStats stats : species) {
+                if (stats instanceof AnimalStats) {
+                    buffer = fill(channel, buffer, 4);
+                    buffer = fill(channel, buffer, 4 + 4 * buffer.getInt(buffer.position()));
+                    getDiet(buffer, (AnimalStats) stats, species);
+                }
+            }
+
+            // everything but the organisms has been read, replace the state of the simulation
+            simulator.clearScreen();
+            simulator.getRandomizer().completeReset(runSeed);
+            simulator.getRandomizer().setStream(rootStream);
+            simulator.getWeather().restoreWeather(season, visibility, downfall, weatherStream);
+            simulator.setPossibleEntities(possibleEntities);
+            simulator.reserveSpeciesIds(species.length);
+            simulator.restoreClock(step, dayCount);
+            simulator.setTopology(Topology.values()[topology]);
+
+            buffer = fill(channel, buffer, 4);
+            int count = buffer.getInt();
+            List<Organism> organisms = simulator.getOrganisms();
+            int[] cellStates = new int[count];
+            for (int index = 0; index < count; index++) {
+                buffer = fill(channel, buffer, 64);
+                organisms.add(getOrganism(buffer, species, field, cellStates, index));
+            }
+
+            settle(field, organisms, cellStates);
+            simulator.getEpidemic().restore(epidemicSeed, diseases);
+        } catch (BufferUnderflowException e) {
+            throw new IOException(path + " ends too early", e);
+        }
+    }
+
+    /**
+     * Put organisms just rebuilt back in their cells. A plant overwritten by an animal lives on
+     * outside the field, take those out again and put back the organisms holding their cell that
+     * were overwritten by them, then restore the state of the cells.
+     *
+     * @param field the field the organisms were rebuilt in
+     * @param organisms the organisms, in the order they were rebuilt
+     * @param cellStates the state of every organism's cell, -1 if it does not hold its cell
+     */
+    static void settle(Field field, List<Organism> organisms, int[] cellStates) {
+        for (int index = 0; index < cellStates.length; index++) {
+            Organism organism = organisms.get(index);
+            if (cellStates[index] == -1 && field.getObjectAt(organism.getLocation()) == organism) {
+                field.clear(organism.getLocation());
+            }
+        }
+        for (int index = 0; index < cellStates.length; index++) {
+            Organism organism = organisms.get(index);
+            if (cellStates[index] != -1 && field.getObjectAt(organism.getLocation()) != organism) {
+                field.place(organism, organism.getLocation());
+            }
+        }
+        for (int index = 0; index < cellStates.length; index++) {
+            Location location = organisms.get(index).getLocation();
+            if (cellStates[index] != -1) {
+                field.setCellState(Field.pack(location.getRow(), location.getCol()), cellStates[index]);
+            }
+        }
+    }
+
+    /**
+     * Only living organisms are saved, the dead ones would leave the simulation at their next turn.
+     */
+    private static boolean isSaved(Organism organism) {
+        return organism.getIsAlive() && organism.getLocation() != null;
+    }
+
+    /**
+     * Write the state of a random stream.
+     */
+    private static void putStream(ByteBuffer buffer, RandomStream stream) {
+        buffer.putLong(stream.getSeed()).putLong(stream.getGamma());
+    }
+
+    /**
+     * Read the state of a random stream.
+     */
+    private static RandomStream getStream(ByteBuffer buffer) {
+        long seed = buffer.getLong();
+        return new RandomStream(seed, buffer.getLong());
+    }
+
+    /**
+     * Write the statistics of a species, at most 2 + name length + 64 bytes.
+     */
+    private static void putSpecies(ByteBuffer buffer, EntityStats stats) {
+        byte[] name = stats.getName().getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) name.length).put(name);
+        buffer.put((byte) stats.getEntityType().ordinal());
+        buffer.put((byte) (stats.getColor() == null ? 0 : 1));
+        buffer.putInt(stats.getColor() == null ? 0 : stats.getColor().getRGB());
+        buffer.putDouble(stats.getCreationProbability()).putDouble(stats.getBreedingProbability());
+        buffer.put((byte) (stats.isEnabled() ? 1 : 0));
+        if (stats instanceof AnimalStats) {
+            AnimalStats animal = (AnimalStats) stats;
+            buffer.put((byte) (animal.isNocturnal() ? 1 : 0));
+            buffer.putInt(animal.getBreedingAge()).putInt(animal.getMaxAge()).putInt(animal.getMaxLitterSize()).putInt(animal.getHungerValue());
+        } else {
+            PlantStats plant = (PlantStats) stats;
+            buffer.putInt(plant.getFoodValue()).putInt(plant.getMaxLevel());
+        }
+    }
+
+    /**
+     * Read the statistics of a species.
+     */
+    private static EntityStats getSpecies(ByteBuffer buffer) {
+        byte[] name = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(name);
+        EntityStats.EntityType type = EntityStats.EntityType.values()[buffer.get()];
+        boolean hasColor = buffer.get() != 0;
+        int rgb = buffer.getInt();
+        Color color = hasColor ? new Color(rgb, true) : null;
+        double creationProbability = buffer.getDouble();
+        double breedingProbability = buffer.getDouble();
+        boolean enabled = buffer.get() != 0;
+        EntityStats stats;
+        if (type == EntityStats.EntityType.PLANT) {
+            int foodValue = buffer.getInt();
+            int maxLevel = buffer.getInt();
+            stats = new PlantStats(new String(name, StandardCharsets.UTF_8), type, color, creationProbability, breedingProbability, foodValue, maxLevel);
+        } else {
+            boolean nocturnal = buffer.get() != 0;
+            int breedingAge = buffer.getInt();
+            int maxAge = buffer.getInt();
+            int maxLitterSize = buffer.getInt();
+            int hungerValue = buffer.getInt();
+            stats = new AnimalStats(new String(name, StandardCharsets.UTF_8), type, color, creationProbability, breedingProbability, nocturnal, breedingAge, maxAge, maxLitterSize, hungerValue);
+        }
+        if (stats.isEnabled() != enabled) {
+            stats.toggleEnabled();
+        }
+        return stats;
+    }
+
+    /**
+     * Write the diet of an animal as the indices of the species it eats, at most 4 + 4 bytes per species.
+     */
+    private static void putDiet(ByteBuffer buffer, AnimalStats eater, List<EntityStats> species) {
+        int countAt = buffer.position();
+        int count = 0;
+        buffer.putInt(0);
+        for (int index = 0; index < species.size(); index++) {
+            if (eater.eats(species.get(index))) {
+                buffer.putInt(index);
+                count++;
+            }
+        }
+        buffer.putInt(countAt, count);
+    }
+
+    /**
+     * Read the diet of an animal.
+     */
+    private static void getDiet(ByteBuffer buffer, AnimalStats eater, EntityStats[] species) throws IOException {
+        int count = buffer.getInt();
+        for (int entry = 0; entry < count; entry++) {
+            int index = buffer.getInt();
+            if (index < 0 || index >= species.length) {
+                throw new IOException("a diet names species " + index + " out of " + species.length);
+            }
+            eater.setEats(species[index], true);
+        }
+    }
+
+    /**
+     * Write an organism, at most 64 bytes.
+     */
+    static void putOrganism(ByteBuffer buffer, Organism organism, int species, Field field) {
+        Location location = organism.getLocation();
+        int cell = Field.pack(location.getRow(), location.getCol());
+        boolean holdsCell = field.getObjectAt(location) == organism;
+        int flags = holdsCell ? HOLDS_CELL : 0;
+        byte kind = PLANT;
+        if (organism instanceof Animal) {
+            Animal animal = (Animal) organism;
+            kind = organism instanceof Predator ? PREDATOR : PREY;
+            flags |= animal.getIsMale() ? IS_MALE : 0;
+            flags |= animal.getIsPregnant() ? IS_PREGNANT : 0;
+        }
+        buffer.put(kind).put((byte) flags).putShort((short) species);
+        buffer.putInt(cell).putInt(organism.getAgeInSteps());
+        putStream(buffer, organism.getRand());
+        buffer.putInt(holdsCell ? field.getCellState(cell) : 0);
+        if (organism instanceof Animal) {
+            Animal animal = (Animal) organism;
+            buffer.putInt(animal.getBreedCounter()).putInt(animal.getFoodLevel()).putInt(animal.getWaterLevel());
+        } else {
+            Plant plant = (Plant) organism;
+            buffer.putInt(plant.getCurrentLevel()).putInt(plant.getWaterLevel()).putInt(plant.getSunLightLevel());
+        }
+    }
+
+    /**
+     * Read an organism and put it in the field.
+     *
+     * @param cellStates where the state of the organism's cell is stored, -1 if it does not hold its cell
+     * @param index the index of the organism
+     */
+    static Organism getOrganism(ByteBuffer buffer, EntityStats[] species, Field field, int[] cellStates, int index) {
+        byte kind = buffer.get();
+        int flags = buffer.get();
+        EntityStats stats = species[buffer.getShort() & 0xFFFF];
+        int cell = buffer.getInt();
+        int age = buffer.getInt();
+        long seed = buffer.getLong();
+        long gamma = buffer.getLong();
+        int cellState = buffer.getInt();
+        int first = buffer.getInt();
+        int second = buffer.getInt();
+        int third = buffer.getInt();
+
+        Organism organism = rebuild(kind, stats, field, cell, seed, gamma, (flags & IS_MALE) != 0,
+                (flags & IS_PREGNANT) != 0, age, first, second, third);
+        cellStates[index] = (flags & HOLDS_CELL) != 0 ? cellState : -1;
+        return organism;
+    }
+
+    /**
+     * Make an organism from its saved state and put it in the field.
+     *
+     * @param kind the kind of organism, PREDATOR, PREY or PLANT
+     * @param stats the species of the organism
+     * @param field the field to put the organism in
+     * @param cell the packed location of the organism
+     * @param seed the seed of the organism's stream
+     * @param gamma the gamma of the organism's stream
+     * @param isMale is the animal male ? ignored for plants
+     * @param isPregnant is the animal pregnant ? ignored for plants
+     * @param age the age of the organism in steps
+     * @param first the breed counter of an animal, the level of a plant
+     * @param second the food level of an animal, the water level of a plant
+     * @param third the water level of an animal, the sunlight level of a plant
+     * @return the organism
+     */
+    static Organism rebuild(byte kind, EntityStats stats, Field field, int cell, long seed, long gamma, boolean isMale,
+                            boolean isPregnant, int age, int first, int second, int third) {
+        RandomStream rand = new RandomStream(seed, gamma);
+        Location location = new Location(Field.rowOf(cell), Field.colOf(cell));
+        Organism organism;
+        if (kind == PLANT) {
+            Plant plant = new Plant((PlantStats) stats, field, location, rand);
+            plant.restoreState(first, second, third);
+            organism = plant;
+        } else {
+            Animal animal = kind == PREDATOR
+                    ? new Predator((AnimalStats) stats, false, field, location, rand)
+                    : new Prey((AnimalStats) stats, false, field, location, rand);
+            animal.restoreState(isMale, isPregnant, first, second, third);
+            organism = animal;
+        }
+        // creating the organism drew from its stream, start it again from where it was saved
+        rand.setSeed(seed);
+        organism.setAgeInSteps(age);
+        return organism;
+    }
+
+    /**
+     * Write the buffer out if it has less than the given room left.
+     *
+     * @return the buffer, ready for more
+     */
+    private static ByteBuffer flushIfFull(FileChannel channel, ByteBuffer buffer, int room) throws IOException {
+        if (buffer.remaining() < room) {
+            flush(channel, buffer);
+        }
+        return buffer;
+    }
+
+    /**
+     * Write out everything in the buffer and empty it.
+     */
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Make sure the buffer holds at least the given number of unread bytes, reading more of the file if needed.
+     *
+     * @return the buffer, ready to be read
+     */
+    private static ByteBuffer fill(FileChannel channel, ByteBuffer buffer, int needed) throws IOException {
+        if (buffer.remaining() >= needed) {
+            return buffer;
+        }
+        buffer.compact();
+        while (buffer.position() < needed) {
+            if (channel.read(buffer) < 0) {
+                // the last record may be shorter than what was asked for
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -41,6 +41,14 @@ public class Counter {
         count++;
     }
     
+    /**
+     * Increment the current count by a given amount.
+     * @param amount The number to add to the count.
+     */
+    public void increment(int amount) {
+        count += amount;
+    }
+    
     /**
      * Reset the current count to zero.
      */
@@ -0,0 +1,107 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stops a run once the populations repeat themselves: they have stopped changing, a steady
+ * state, or go round a fixed cycle.
+ *
+ * The population of every species after a step is hashed into one number, and a rolling hash
+ * folds the last few of those into the hash of a window of steps. The hash of every window seen
+ * over the longest period looked for is kept with the step it ended at, so finding a window that
+ * was seen before costs one lookup per step. A window found again is compared count by count with
+ * the one before it, so two different windows with the same hash never stop a run.
+ *
+ * @author Syraj Alkhalil and Cosmo Colman
+ * @version 2022.02.27 (2)
+ */
+public class CycleCondition implements TerminationCondition {
+    private static final long BASE = 0x9E3779B97F4A7C15L;  // The odd multiplier of the hashes
+
+    private final int maxPeriod;                // The longest period looked for, in steps
+    private final int window;                   // The number of steps that must repeat
+    private final long basePower;               // BASE to the power of the window, to take the oldest step out of the rolling hash
+    private final int[][] history;              // The recent populations, by observation % its length
+    private final long[] stateHashes;           // The hash of every recent population, as the history
+    private final long[] windowHashes;          // The hash of the recent windows, by observation % (maxPeriod + 1)
+    private final Map<Long, Integer> seen = new HashMap<>();   // The last observation every recent window hash ended at
+    private long rolling;                       // The hash of the current window
+    private int observed;                       // The number of steps looked at
+
+    /**
+     * Create a condition.
+     *
+     * @param maxPeriod the longest period looked for in steps, 1 for a steady state only
+     * @param window the number of steps that must repeat, at least the period to see a cycle go round in full
+     */
+    public CycleCondition(int maxPeriod, int window) {
+        this.maxPeriod = Math.max(1, maxPeriod);
+        this.window = Math.max(1, window);
+        long power = 1;
+        for (int index = 0; index < this.window; index++) {
+            power *= BASE;
+        }
+        basePower = power;
+        history = new int[this.maxPeriod + this.window][];
+        stateHashes = new long[history.length];
+        windowHashes = new long[this.maxPeriod + 1];
+    }
+
+    @Override
+    public Termination check(Simulator simulator, int[] counts) {
+        int now = observed++;
+        int slot = now % history.length;
+        long stateHash = hash(counts);
+        rolling = rolling * BASE + stateHash;
+        if (now >= window) {
+            // take the step that just left the window out
+            rolling -= stateHashes[(now - window) % history.length] * basePower;
+        }
+        history[slot] = counts.clone();
+        stateHashes[slot] = stateHash;
+        if (now < window - 1) {
+            return null;
+        }
+
+        Integer before = seen.get(rolling);
+        if (before != null && now - before <= maxPeriod && matches(before, now)) {
+            int period = now - before;
+            Termination.Reason reason = period == 1 ? Termination.Reason.STEADY_STATE : Termination.Reason.CYCLE;
+            return new Termination(reason, simulator.getStep(), "period of " + period + " steps repeated for " + window + " steps");
+        }
+
+        // forget the window that is now too old to start a period
+        int hashSlot = now % windowHashes.length;
+        int old = now - windowHashes.length;
+        if (old >= window - 1 && Integer.valueOf(old).equals(seen.get(windowHashes[hashSlot]))) {
+            seen.remove(windowHashes[hashSlot]);
+        }
+        windowHashes[hashSlot] = rolling;
+        seen.put(rolling, now);
+        return null;
+    }
+
+    /**
+     * Return whether the windows ending at two observations hold the same populations.
+     */
+    private boolean matches(int before, int now) {
+        for (int offset = 0; offset < window; offset++) {
+            if (!Arrays.equals(history[(before - offset) % history.length], history[(now - offset) % history.length])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hash the population of every species into one number.
+     */
+    private static long hash(int[] counts) {
+        long hash = counts.length;
+        for (int count : counts) {
+            hash = (hash ^ count) * BASE;
+            hash ^= hash >>> 29;
+        }
+        return hash;
+    }
+}
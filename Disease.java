@@ -1,81 +1,59 @@
-import java.util.HashMap;
-import java.util.List;
-import java.util.Random;
-
 /**
- * The disease class which is responsible for infecting the animals and potentially killing them
+ * The disease class describes a disease the epidemic can spread between organisms and how
+ * likely it is to kill them. The state of every infection is kept by the Epidemic in the field,
+ * so a single Disease is shared by all of its hosts.
  *
  * @author Syraj Alkhalil and Cosmo Colman
  * @version 2022.02.27 (2)
  */
 public class Disease {
+    private static final int DEFAULT_INFECTION_PERIOD = 2;         // how long a disease lasts unless told otherwise
+
     private final double spreadRate;                                // the spread rate of the disease
     private final double deadliness;                                // how deadly the disease is
-    private int infectionPeriod = 2;                                // how long the disease will last
-    private final Entity mainHost;                                  // the main host of the disease
-    private final HashMap<Organism, Integer> numOfInteractions;     // the number of infections per animal type this helps in mutations
+    private final int infectionPeriod;                              // how many steps a host stays infected
 
     /**
-     * make a disease that infects a certain type of animal
+     * make a disease with the default infection period
      *
      * @param spreadRate The spread rate (how contagious the disease is).
      * @param deadliness How deadly the disease is
-     * @param mainHost the main type of host that this disease will infect
      */
-    public Disease(double spreadRate, double deadliness, Organism mainHost) {
+    public Disease(double spreadRate, double deadliness) {
+        this(spreadRate, deadliness, DEFAULT_INFECTION_PERIOD);
+    }
+
+    /**
+     * make a disease
+     *
+     * @param spreadRate The spread rate (how contagious the disease is).
+     * @param deadliness How deadly the disease is
+     * @param infectionPeriod How many steps a host stays infected, at least 1
+     */
+    public Disease(double spreadRate, double deadliness, int infectionPeriod) {
         this.spreadRate = spreadRate;
         this.deadliness = deadliness;
-        this.mainHost = mainHost;
-        numOfInteractions = new HashMap<>();
-        numOfInteractions.put(mainHost, 10);
+        this.infectionPeriod = Math.max(1, infectionPeriod);
     }
 
     /**
-     * This method is used to update how many animals the disease comes in contact with
-     * this will be used to mutate the types of animals the disease can infect, for example
-     * if the disease comes in contact with
+     * The chance that an infected host tries to infect its neighbours at all this step.
+     * Rain and snow wash the disease away, so the more downfall the lower the chance.
+     *
+     * @param currentWeather the current weather
+     * @return the chance of the host spreading the disease this step
      */
-    public void updateInteractions() {
-        Field field = mainHost.getField();
-        if(field != null){
-            List<Location> potentialVictim  = field.getNotNullAdjacentLocations(mainHost.getLocation());
-            for(Location victim : potentialVictim){
-                Organism organism = (Organism) field.getObjectAt(victim);
-                if(numOfInteractions.get(organism) == null){
-                    numOfInteractions.put(organism, 0);
-                }else{
-                    numOfInteractions.put(organism, numOfInteractions.get(organism) +1 );
-                }
-
-            }
-        }
+    public double getOutbreakChance(Weather currentWeather) {
+        return spreadRate - (currentWeather.getActualDownfall() * 0.04);
     }
 
     /**
-     * This is essentially the act method for the disease.
-     * the disease will look for not null locations around it and will try to infect these organisms
-     * The disease is also affected by the weather.
+     * A simple getter method that returns the spreadRate field
      *
-     * @param currentWeather the current weather
+     * @return the chance of infecting each neighbour once the host spreads the disease
      */
-    public void infect(Weather currentWeather) {
-        updateInteractions();
-        if((new Random().nextDouble() < (spreadRate - (currentWeather.getActualDownfall()*0.04))) && infectionPeriod > 0){
-            // infect neighbouring squares with a fixed probability.
-            Field field = mainHost.getField();
-            List<Location> adjacent = field.getNotNullAdjacentLocations(mainHost.getLocation());
-            for(Location where : adjacent){
-                Organism organism = (Organism) field.getObjectAt(where);
-                if(canInfect(organism) && !(organism).getIsInfected()){
-                    if(new Random().nextDouble() < spreadRate){
-                        organism.setInfected(true);
-                        organism.addDisease(this);
-                        organism.dieDueToInfection();
-                    }
-                }
-            }
-        }
-        infectionPeriod--;
+    public double getSpreadRate() {
+        return spreadRate;
     }
 
     /**
@@ -88,12 +66,11 @@ public class Disease {
     }
 
     /**
-     * decide if we can infect a given organism
+     * A simple getter method that returns the infectionPeriod field
      *
-     * @param organism the organism we wish to infect
-     * @return true if we can infect the organism
+     * @return how many steps a host stays infected
      */
-    public boolean canInfect(Organism organism) {
-        return numOfInteractions.get(organism) >= 10;
+    public int getInfectionPeriod() {
+        return infectionPeriod;
     }
 }
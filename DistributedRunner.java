@@ -0,0 +1,398 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs one simulation over several processes on the same machine, for fields too large for the
+ * heap of a single one. The coordinator starts a DistributedWorker process per strip of the field
+ * and keeps the clock and the weather, which it sends to every worker at every step. The workers
+ * step their strips as the tiles of a ParallelEngine with the same tile grid, exchanging the rows
+ * along their edges over loopback TCP, and send back their populations, which the coordinator
+ * adds up and prints as the HeadlessRunner does.
+ *
+ * The strips are made of whole tile rows and the tile grid does not depend on the number of
+ * workers, so with a fixed seed a run gives the same result whatever the number of workers, and
+ * the same as a single process using the parallel engine with that tile grid. At the end the
+ * workers hand in a digest of the state of all their organisms, which is printed with the time
+ * taken so runs can be compared. Every process draws the random numbers of the whole field once
+ * when it starts, but only keeps the organisms of its own strip. The diseases spread as they
+ * would in that single process, every worker stepping the epidemic over its own strip.
+ *
+ * Usage: java -Djava.awt.headless=true DistributedRunner [options]
+ *   --workers N     the number of worker processes (default 2)
+ *   --steps N       stop after N steps (default 1000)
+ *   --every N       print the population every N steps (default 1)
+ *   --size D W      the depth and width of the field (default 120 200)
+ *   --seed N        the seed of the run
+ *   --tiles N       an N by N tile grid, at least one tile row per worker (default 8)
+ *   --topology T    bounded (default), toroidal or reflective edges, see Topology
+ *   --threads N     the number of threads of every worker (default 1)
+ *   --worker-heap S the maximum heap of every worker, e.g. 4g (default the JVM's own)
+ *   --stop-extinct  stop once any species dies out
+ *   --stop-not-viable  stop once fewer than two types of entity are left
+ *   --stop-steady N stop once the populations have not changed for N steps
+ *   --stop-cycle P  stop once the populations go round a cycle of at most P steps for a day or a full cycle
+ *
+ * @author Syraj Alkhalil and Cosmo Colman
+ * @version 2022.02.27 (2)
+ */
+public class DistributedRunner {
+    static final byte STEP = 1;                     // The messages from the coordinator to a worker
+    static final byte FINISH = 2;
+    private static final int CONNECT_TIMEOUT = 60_000;  // How long a worker may take to connect, in milliseconds
+
+    private final Simulator simulator;              // Keeps the clock, the weather and the species, it holds no organisms
+    private final int reportEvery;                  // How often the population is printed, in steps
+    private final List<Process> processes = new ArrayList<>();  // The worker processes, from the top of the field down
+    private final List<Socket> sockets = new ArrayList<>();     // The connections to the workers
+    private final List<DataInputStream> inputs = new ArrayList<>();     // The answers of the workers
+    private final List<DataOutputStream> outputs = new ArrayList<>();   // The messages to the workers
+    private TerminationCondition termination;       // Stops the run once its outcome is settled, null to run every step
+    private Termination stopped;                    // Why the last run stopped early, null if it did not
+    private int[] population;                       // The population of every possible entity at the current step
+
+    /**
+     * Create the coordinator of a distributed run. It starts the way a single process would, so
+     * its clock and weather go on exactly as they would there.
+     *
+     * @param depth the depth of the field
+     * @param width the width of the field
+     * @param seed the seed of the run
+     * @param topology what lies beyond the edges of the field
+     * @param reportEvery how often the population is printed, in steps
+     */
+    public DistributedRunner(int depth, int width, long seed, Topology topology, int reportEvery) {
+        this.simulator = new Simulator(depth, width, true, 0, 0);
+        simulator.getRandomizer().setSeed(seed);
+        simulator.setTopology(topology);
+        simulator.reset();
+        this.reportEvery = Math.max(1, reportEvery);
+    }
+
+    /**
+     * A simple setter method to stop the run once a condition says so, the condition is handed
+     * the coordinator's simulator, which has the clock and the species but no organisms
+     *
+     * @param termination the condition, null to run every step
+     */
+    public void setTermination(TerminationCondition termination) {
+        this.termination = termination;
+    }
+
+    /**
+     * A simple getter method to return why the last run stopped early
+     *
+     * @return the termination, null if the run stopped after every step
+     */
+    public Termination getStopped() {
+        return stopped;
+    }
+
+    /**
+     * Start the workers, share the field out between them and wait until they are populated.
+     *
+     * @param workers the number of worker processes
+     * @param tiles the number of tiles down and across the field
+     * @param threads the number of threads of every worker
+     * @param heap the maximum heap of every worker, e.g. "4g", null for the JVM's default
+     * @throws IOException if a worker cannot be started or does not connect
+     */
+    public void start(int workers, int tiles, int threads, String heap) throws IOException {
+        Field field = simulator.getField();
+        int depth = field.getDepth();
+        int tileRows = ParallelEngine.tilesAlong(field, depth, tiles);
+        int tileCols = ParallelEngine.tilesAlong(field, field.getWidth(), tiles);
+        // the last tile rows of a grid that does not divide the depth may be empty
+        int usedTileRows = ParallelEngine.ceilDiv(depth, ParallelEngine.ceilDiv(depth, tileRows));
+        if (workers < 1 || workers > usedTileRows) {
+            throw new IllegalArgumentException("A field with " + usedTileRows + " tile rows takes 1 to "
+                    + usedTileRows + " workers, not " + workers);
+        }
+        boolean wraps = field.getTopology() == Topology.TOROIDAL && workers > 1;
+
+        // workers blocked on a neighbour would outlive a coordinator that is stopped
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> processes.forEach(Process::destroyForcibly)));
+        int[] peerPorts = new int[workers];
+        try (ServerSocket server = new ServerSocket(0, workers, InetAddress.getLoopbackAddress())) {
+            server.setSoTimeout(CONNECT_TIMEOUT);
+            String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+            for (int index = 0; index < workers; index++) {
+                List<String> command = new ArrayList<>(List.of(java, "-Djava.awt.headless=true"));
+                if (heap != null) {
+                    command.add("-Xmx" + heap);
+                }
+                command.addAll(List.of("-cp", System.getProperty("java.class.path"), "DistributedWorker",
+                        Integer.toString(server.getLocalPort()), Integer.toString(index)));
+                processes.add(new ProcessBuilder(command).inheritIO().start());
+                sockets.add(null);
+                inputs.add(null);
+                outputs.add(null);
+            }
+            // the workers connect in any order and say which one they are
+            for (int connected = 0; connected < workers; connected++) {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                int index = in.readInt();
+                peerPorts[index] = in.readInt();
+                sockets.set(index, socket);
+                inputs.set(index, in);
+                outputs.set(index, new DataOutputStream(new BufferedOutputStream(socket.getOutputStream())));
+            }
+        }
+
+        for (int index = 0; index < workers; index++) {
+            DataOutputStream out = outputs.get(index);
+            out.writeInt(depth);
+            out.writeInt(field.getWidth());
+            out.writeInt(field.getTopology().ordinal());
+            out.writeLong(simulator.getRandomizer().getRunSeed());
+            out.writeInt(tileRows);
+            out.writeInt(tileCols);
+            out.writeInt(index * usedTileRows / workers);
+            out.writeInt((index + 1) * usedTileRows / workers);
+            out.writeInt(threads);
+            // every worker connects to the one below it, which accepts
+            out.writeBoolean(index > 0 || wraps);
+            out.writeInt(index < workers - 1 || wraps ? peerPorts[(index + 1) % workers] : -1);
+            out.flush();
+        }
+        population = readPopulation();
+    }
+
+    /**
+     * Run the simulation until the number of steps is reached or the termination condition says
+     * so, printing the population on the way.
+     *
+     * @param maxSteps the number of steps to run
+     * @return the number of steps run
+     * @throws IOException if a worker cannot be reached
+     */
+    public int run(int maxSteps) throws IOException {
+        printHeader();
+        printPopulation();
+        long start = System.nanoTime();
+        int steps = 0;
+        stopped = null;
+        while (steps < maxSteps && stopped == null) {
+            step();
+            steps++;
+            if (termination != null) {
+                stopped = termination.check(simulator, population);
+            }
+            if (simulator.getStep() % reportEvery == 0 || stopped != null) {
+                printPopulation();
+            }
+        }
+        double millis = (System.nanoTime() - start) / 1_000_000.0;
+        System.err.printf("%d steps on %d workers in %.1f ms (%.2f steps/ms)%n", steps, processes.size(),
+                millis, steps / Math.max(millis, 0.001));
+        if (stopped != null) {
+            System.err.println("Stopped early: " + stopped);
+        }
+        return steps;
+    }
+
+    /**
+     * Move the clock on, send it with the weather to every worker and add up their populations.
+     *
+     * @throws IOException if a worker cannot be reached
+     */
+    private void step() throws IOException {
+        simulator.advanceClock();
+        Weather weather = simulator.getWeather();
+        for (DataOutputStream out : outputs) {
+            out.writeByte(STEP);
+            out.writeInt(simulator.getStep());
+            out.writeInt(simulator.getDayCount());
+            out.writeInt(weather.getSeasonIndex());
+            out.writeInt(weather.getActualVisibility());
+            out.writeInt(weather.getActualDownfall());
+            out.writeLong(weather.getRand().getSeed());
+            out.writeLong(weather.getRand().getGamma());
+            out.flush();
+        }
+        population = readPopulation();
+    }
+
+    /**
+     * Read the population of every worker and add them up.
+     *
+     * @return the population of every possible entity
+     * @throws IOException if a worker cannot be reached
+     */
+    private int[] readPopulation() throws IOException {
+        int[] counts = new int[simulator.getPossibleEntities().size()];
+        for (DataInputStream in : inputs) {
+            for (int index = 0; index < counts.length; index++) {
+                counts[index] += in.readInt();
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Tell the workers the run is over and add up the digests of their organisms.
+     *
+     * @return the digest of every organism on the field, the same for runs that ended the same
+     * @throws IOException if a worker cannot be reached
+     */
+    public long finish() throws IOException {
+        for (DataOutputStream out : outputs) {
+            out.writeByte(FINISH);
+            out.flush();
+        }
+        long digest = 0;
+        int organisms = 0;
+        for (DataInputStream in : inputs) {
+            digest += in.readLong();
+            organisms += in.readInt();
+        }
+        System.err.printf("Digest %016x of %d organisms%n", digest, organisms);
+        return digest;
+    }
+
+    /**
+     * Close the connections and wait for the workers to exit, stopping those that do not.
+     */
+    public void close() {
+        for (Socket socket : sockets) {
+            try {
+                if (socket != null) {
+                    socket.close();
+                }
+            } catch (IOException e) {
+                // the worker is gone already
+            }
+        }
+        for (Process process : processes) {
+            try {
+                if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Print the names of the columns.
+     */
+    private void printHeader() {
+        StringBuilder line = new StringBuilder("step,day");
+        for (EntityStats entity : simulator.getPossibleEntities()) {
+            line.append(',').append(entity.getName());
+        }
+        line.append(",total");
+        System.out.println(line);
+    }
+
+    /**
+     * Print the population of every entity at the current step.
+     */
+    private void printPopulation() {
+        StringBuilder line = new StringBuilder();
+        line.append(simulator.getStep()).append(',').append(simulator.getDayCount());
+        int total = 0;
+        for (int count : population) {
+            line.append(',').append(count);
+            total += count;
+        }
+        line.append(',').append(total);
+        System.out.println(line);
+    }
+
+    /**
+     * The main method of a distributed run, see the class comment for the options.
+     *
+     * @param args the command line options
+     * @throws IOException if a worker cannot be started or reached
+     */
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        int workers = 2;
+        int maxSteps = 1000;
+        int every = 1;
+        int depth = 120;
+        int width = 200;
+        int tiles = 8;
+        int threads = 1;
+        String heap = null;
+        Topology topology = Topology.BOUNDED;
+        long seed = new Randomizer().getSeed();
+        List<TerminationCondition> conditions = new ArrayList<>();
+        List<String> options = List.of(args);
+        for (int index = 0; index < options.size(); index++) {
+            switch (options.get(index)) {
+                case "--workers":
+                    workers = Integer.parseInt(options.get(++index));
+                    break;
+                case "--steps":
+                    maxSteps = Integer.parseInt(options.get(++index));
+                    break;
+                case "--every":
+                    every = Integer.parseInt(options.get(++index));
+                    break;
+                case "--size":
+                    depth = Integer.parseInt(options.get(++index));
+                    width = Integer.parseInt(options.get(++index));
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(options.get(++index));
+                    break;
+                case "--tiles":
+                    tiles = Integer.parseInt(options.get(++index));
+                    break;
+                case "--topology":
+                    topology = Topology.valueOf(options.get(++index).toUpperCase(Locale.ROOT));
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(options.get(++index));
+                    break;
+                case "--worker-heap":
+                    heap = options.get(++index);
+                    break;
+                case "--stop-extinct":
+                    conditions.add(new ExtinctionCondition());
+                    break;
+                case "--stop-not-viable":
+                    conditions.add(new ViabilityCondition());
+                    break;
+                case "--stop-steady":
+                    conditions.add(new CycleCondition(1, Integer.parseInt(options.get(++index))));
+                    break;
+                case "--stop-cycle":
+                    int period = Integer.parseInt(options.get(++index));
+                    conditions.add(new CycleCondition(period, Math.max(period, Simulator.STEP_PER_DAY)));
+                    break;
+                default:
+                    System.err.println("Unknown option " + options.get(index));
+                    return;
+            }
+        }
+
+        DistributedRunner runner = new DistributedRunner(depth, width, seed, topology, every);
+        if (!conditions.isEmpty()) {
+            runner.setTermination(TerminationCondition.anyOf(conditions.toArray(new TerminationCondition[0])));
+        }
+        try {
+            runner.start(workers, tiles, threads, heap);
+            runner.run(maxSteps);
+            runner.finish();
+        } finally {
+            runner.close();
+        }
+    }
+}
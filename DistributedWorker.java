@@ -0,0 +1,614 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * One process of a distributed run, started by a DistributedRunner. The worker owns a strip of
+ * whole tile rows of the tile grid of a ParallelEngine and steps its organisms exactly as the
+ * engine would: they are bucketed by the tile they start the step in, act in row-major order
+ * tile by tile in the four colour phases, and the newborns are collected per tile.
+ *
+ * The worker holds a field of the whole size, but only its strip and the row beyond either edge
+ * of it (the halo rows) are ever filled, so it only uses memory for its own chunks. Tiles of
+ * neighbouring strips never act in the same phase, so after every phase the worker whose edge
+ * tiles just acted sends its edge row and the halo row beyond it to its neighbour, with every
+ * organism in them. The neighbour replaces what it had in those rows, takes over the organisms
+ * that moved or were born into its strip, and learns which of its own were eaten or changed.
+ * An organism is known by an id that is the same in every process, and it keeps the order it
+ * would have in the list of a single process, so organisms sharing a cell act in the same order
+ * too. A run therefore does not depend on the number of workers. The organisms are sent in the
+ * format of a Checkpoint.
+ *
+ * Once the organisms have acted, the worker steps the Epidemic over its strip. The infections of
+ * a cell only depend on the cell and its neighbours, all in the strip or its halo rows, so the
+ * strip catches the same diseases as in a single process. The halo rows come out wrong, so the
+ * edge rows are sent again afterwards, with the states and deaths of the epidemic.
+ *
+ * Usage: java -Djava.awt.headless=true DistributedWorker PORT INDEX
+ *   PORT            the port the coordinator listens on, on the loopback address
+ *   INDEX           the index of the worker, from the top of the field down
+ *
+ * @author Syraj Alkhalil and Cosmo Colman
+ * @version 2022.02.27 (2)
+ */
+public class DistributedWorker {
+    private static final int COLOURS = 4;                       // The number of phases of a step, as in ParallelEngine
+    private static final int UP = 0;                            // The sides of the strip
+    private static final int DOWN = 1;
+    private static final int ENTRY_SIZE = 16 + 64;              // The most bytes an organism takes in a message
+    private static final long NEWBORN = 1L << 62;               // Orders the newborns after the survivors, as the parallel engine does
+
+    private final Simulator simulator;                          // Holds the field, the clock and the weather
+    private final Field field;                                  // The whole field, only the strip and its halo rows are filled
+    private final Epidemic epidemic;                            // The diseases spreading between the organisms of the strip
+    private final EntityStats[] species;                        // The possible entities, in the same order in every process
+    private final Map<EntityStats, Integer> speciesIndex;       // The index of every possible entity
+    private final int tileCols;                                 // The number of tiles across the field
+    private final int tileHeight, tileWidth;                    // The size of a tile
+    private final int firstTileRow, endTileRow;                 // The tile rows of the strip
+    private final int firstRow, endRow;                         // The rows of the strip
+    private final Neighbour[] neighbours = new Neighbour[2];    // The workers beyond the top and the bottom of the strip, null where there are none
+    private final ForkJoinPool pool;                            // The threads running the tiles of a phase
+    private final ExecutorService sender;                       // Sends the rows to the neighbours while the worker receives
+    private List<Member> owned = new ArrayList<>();             // The organisms in the strip between steps
+
+    /**
+     * An organism as this worker knows it. When a neighbour sends a row, the organisms in it are
+     * replaced by the ones it sent, and a member keeps pointing at the current one.
+     */
+    private static final class Member {
+        private Organism organism;                              // The organism, null once it left the simulation
+        private final long id;                                  // The id of the organism, the same in every process
+        private long order;                                     // Where the organism comes in the list of a single process
+
+        private Member(Organism organism, long id, long order) {
+            this.organism = organism;
+            this.id = id;
+            this.order = order;
+        }
+    }
+
+    /**
+     * The connection to the worker beyond one edge of the strip.
+     */
+    private static final class Neighbour {
+        private final DataInputStream in;                       // Brings the rows the neighbour sends
+        private final DataOutputStream out;                     // Takes the rows sent to the neighbour
+        private final int edgeRow;                              // The row of the strip on this edge
+        private final int haloRow;                              // The row of the neighbour beyond this edge
+        private final int edgeTileRow;                          // The tile row of the strip on this edge
+        private List<Member> ghosts = new ArrayList<>();        // The organisms in the halo row
+
+        private Neighbour(Socket socket, int edgeRow, int haloRow, int edgeTileRow) throws IOException {
+            socket.setTcpNoDelay(true);
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+            this.edgeRow = edgeRow;
+            this.haloRow = haloRow;
+            this.edgeTileRow = edgeTileRow;
+        }
+    }
+
+    /**
+     * Create a worker from the setup sent by the coordinator, populate its strip and connect to its
+     * neighbours.
+     *
+     * @param setup the connection to the coordinator, positioned at the setup
+     * @param peers the socket the worker above connects to
+     * @throws IOException if the setup cannot be read or a neighbour cannot be reached
+     */
+    private DistributedWorker(DataInputStream setup, ServerSocket peers) throws IOException {
+        int depth = setup.readInt();
+        int width = setup.readInt();
+        Topology topology = Topology.values()[setup.readInt()];
+        long seed = setup.readLong();
+        int tileRows = setup.readInt();
+        this.tileCols = setup.readInt();
+        this.firstTileRow = setup.readInt();
+        this.endTileRow = setup.readInt();
+        int threads = setup.readInt();
+        boolean hasUp = setup.readBoolean();
+        int downPort = setup.readInt();
+
+        this.tileHeight = ParallelEngine.ceilDiv(depth, tileRows);
+        this.tileWidth = ParallelEngine.ceilDiv(width, tileCols);
+        this.firstRow = firstTileRow * tileHeight;
+        this.endRow = Math.min(endTileRow * tileHeight, depth);
+
+        // the simulation starts as it would in a single process, but only the strip is populated
+        this.simulator = new Simulator(depth, width, true, firstRow, endRow);
+        simulator.getRandomizer().setSeed(seed);
+        simulator.setTopology(topology);
+        simulator.reset();
+        this.field = simulator.getField();
+        this.epidemic = simulator.getEpidemic();
+        this.species = simulator.getPossibleEntities().toArray(new EntityStats[0]);
+        this.speciesIndex = new IdentityHashMap<>();
+        for (int index = 0; index < species.length; index++) {
+            speciesIndex.put(species[index], index);
+        }
+        // a fresh field is populated in row-major order, so the cell is both an id and the order
+        for (Organism organism : simulator.getOrganisms()) {
+            long cell = Field.pack(organism.getLocation().getRow(), organism.getLocation().getCol());
+            owned.add(new Member(organism, cell, cell));
+        }
+        simulator.getOrganisms().clear();
+
+        this.pool = new ForkJoinPool(Math.max(1, threads));
+        this.sender = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "halo-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // connecting only waits for the backlog of the worker below, so every worker can connect before it accepts
+        if (downPort >= 0) {
+            neighbours[DOWN] = new Neighbour(new Socket(InetAddress.getLoopbackAddress(), downPort),
+                    endRow - 1, endRow % depth, endTileRow - 1);
+        }
+        if (hasUp) {
+            neighbours[UP] = new Neighbour(peers.accept(), firstRow, (firstRow - 1 + depth) % depth, firstTileRow);
+        }
+    }
+
+    /**
+     * Answer the coordinator until it says the run is over: the population of the strip once set
+     * up and after every step, and a digest of the strip at the end.
+     *
+     * @param in the messages from the coordinator
+     * @param out the answers to the coordinator
+     * @throws IOException if the coordinator or a neighbour cannot be reached
+     */
+    private void serve(DataInputStream in, DataOutputStream out) throws IOException {
+        shareEdges();
+        writeCounts(out, countPopulation());
+        while (true) {
+            byte message = in.readByte();
+            if (message == DistributedRunner.FINISH) {
+                out.writeLong(digest());
+                out.writeInt(owned.size());
+                out.flush();
+                return;
+            }
+            if (message != DistributedRunner.STEP) {
+                throw new IOException("Unknown message " + message + " from the coordinator");
+            }
+            int step = in.readInt();
+            int dayCount = in.readInt();
+            int season = in.readInt();
+            int visibility = in.readInt();
+            int downfall = in.readInt();
+            long weatherSeed = in.readLong();
+            long weatherGamma = in.readLong();
+            simulator.restoreClock(step, dayCount);
+            simulator.getWeather().restoreWeather(season, visibility, downfall, new RandomStream(weatherSeed, weatherGamma));
+            step(step, simulator.isDay(), simulator.getWeather());
+            writeCounts(out, countPopulation());
+        }
+    }
+
+    /**
+     * Run one step of the strip, exchanging the edge rows with the neighbours after every phase,
+     * then step the epidemic and send the edge rows again.
+     *
+     * @param step the current step
+     * @param isDay is it currently day or night
+     * @param weather the current weather
+     * @throws IOException if a neighbour cannot be reached
+     */
+    private void step(int step, boolean isDay, Weather weather) throws IOException {
+        int tileCount = (endTileRow - firstTileRow) * tileCols;
+        List<List<Member>> tiles = new ArrayList<>(tileCount);
+        List<List<Member>> newborns = new ArrayList<>(tileCount);
+        for (int tile = 0; tile < tileCount; tile++) {
+            tiles.add(new ArrayList<>());
+            newborns.add(new ArrayList<>());
+        }
+        for (Member member : owned) {
+            Location location = member.organism.getLocation();
+            tiles.get((location.getRow() / tileHeight - firstTileRow) * tileCols + location.getCol() / tileWidth).add(member);
+        }
+        // row-major within a tile, organisms sharing a cell in the order of a single process
+        Comparator<Member> rowMajor = Comparator.comparingInt((Member member) -> Field.pack(member.organism.getLocation().getRow(),
+                member.organism.getLocation().getCol())).thenComparingLong(member -> member.order);
+        for (int tile = 0; tile < tileCount; tile++) {
+            List<Member> members = tiles.get(tile);
+            members.sort(rowMajor);
+            long globalTile = firstTileRow * (long) tileCols + tile;
+            for (int index = 0; index < members.size(); index++) {
+                members.get(index).order = globalTile << 32 | index;
+            }
+        }
+
+        List<Member> received = new ArrayList<>();
+        List<Future<?>> sending = new ArrayList<>();
+        for (int colour = 0; colour < COLOURS; colour++) {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int tileRow = firstTileRow; tileRow < endTileRow; tileRow++) {
+                if (tileRow % 2 != colour / 2) {
+                    continue;
+                }
+                for (int tileCol = colour % 2; tileCol < tileCols; tileCol += 2) {
+                    int tile = (tileRow - firstTileRow) * tileCols + tileCol;
+                    long globalTile = tileRow * (long) tileCols + tileCol;
+                    List<Member> members = tiles.get(tile);
+                    List<Member> born = newborns.get(tile);
+                    tasks.add(() -> {
+                        actTile(members, born, globalTile, step, isDay, weather);
+                        return null;
+                    });
+                }
+            }
+            runAll(tasks);
+            // send before receiving, the neighbour may be waiting for this worker on its other side
+            for (Neighbour neighbour : neighbours) {
+                if (neighbour != null && neighbour.edgeTileRow % 2 == colour / 2) {
+                    List<Member> candidates = nearEdge(neighbour, tiles, newborns, received);
+                    List<Member> halo = inRow(candidates, neighbour.haloRow);
+                    sending.add(send(neighbour, inRow(candidates, neighbour.edgeRow), halo));
+                    neighbour.ghosts = halo;
+                }
+            }
+            for (Neighbour neighbour : neighbours) {
+                if (neighbour != null && neighbour.edgeTileRow % 2 != colour / 2) {
+                    receive(neighbour, nearEdge(neighbour, tiles, newborns, received), received);
+                }
+            }
+        }
+        for (Future<?> sent : sending) {
+            await(sent);
+        }
+
+        List<Member> next = new ArrayList<>();
+        keepOwned(tiles, next);
+        keepOwned(newborns, next);
+        keepOwned(List.of(received), next);
+        owned = next;
+
+        // the organisms near the edges are new objects, the infected ones are found from the states
+        epidemic.findInfected();
+        epidemic.step(step, weather);
+        owned.removeIf(member -> !isLiving(member));
+        shareEdges();
+        field.releaseEmptyChunks();
+    }
+
+    /**
+     * Let the organisms of a single tile act, this runs on one of the pool's threads.
+     *
+     * @param members the organisms starting the step in this tile
+     * @param born the list collecting this tile's newborns
+     * @param tile the index of the tile in the whole grid
+     * @param step the current step
+     * @param isDay is it currently day or night
+     * @param weather the current weather
+     */
+    private void actTile(List<Member> members, List<Member> born, long tile, int step, boolean isDay, Weather weather) {
+        StepProfiler profiler = field.getProfiler();
+        List<Organism> newborns = new ArrayList<>();
+        for (Member member : members) {
+            Organism organism = member.organism;
+            // an organism may have been eaten by a neighbour before its turn
+            if (organism == null || !organism.getIsAlive()) {
+                continue;
+            }
+            int before = newborns.size();
+            profiler.act(organism, newborns, isDay, weather);
+            for (int birth = before; birth < newborns.size(); birth++) {
+                born.add(new Member(newborns.get(birth), childId(member.id, step, birth - before), NEWBORN | tile << 32 | birth));
+            }
+        }
+    }
+
+    /**
+     * Gather the organisms that may be in the edge row or the halo row on one side. Only the
+     * organisms of the edge tile row can reach either row during a step, those that moved into
+     * the halo row are ghosts as well once they were sent, hence the set.
+     *
+     * @param neighbour the neighbour on that side
+     * @param tiles the organisms of every tile of the strip
+     * @param newborns the newborns of every tile of the strip
+     * @param received the organisms that moved or were born into the strip during the step
+     * @return the organisms, each once
+     */
+    private List<Member> nearEdge(Neighbour neighbour, List<List<Member>> tiles, List<List<Member>> newborns, List<Member> received) {
+        Set<Member> candidates = new LinkedHashSet<>(neighbour.ghosts);
+        candidates.addAll(received);
+        int firstTile = (neighbour.edgeTileRow - firstTileRow) * tileCols;
+        for (int tile = firstTile; tile < firstTile + tileCols; tile++) {
+            candidates.addAll(tiles.get(tile));
+            candidates.addAll(newborns.get(tile));
+        }
+        return new ArrayList<>(candidates);
+    }
+
+    /**
+     * Send the organisms of the edge row and the halo row on one side to the neighbour, on the
+     * sender's thread.
+     *
+     * @param neighbour the neighbour on that side
+     * @param edge the living organisms in the edge row, which is the neighbour's halo row
+     * @param halo the living organisms in the halo row, which is the neighbour's edge row
+     * @return the sending, done once the neighbour has the rows
+     */
+    private Future<?> send(Neighbour neighbour, List<Member> edge, List<Member> halo) {
+        ByteBuffer buffer = ByteBuffer.allocate(8 + (edge.size() + halo.size()) * ENTRY_SIZE);
+        buffer.putInt(halo.size()).putInt(edge.size());
+        for (Member member : halo) {
+            putMember(buffer, member);
+        }
+        for (Member member : edge) {
+            putMember(buffer, member);
+        }
+        return sender.submit(() -> {
+            neighbour.out.writeInt(buffer.position());
+            neighbour.out.write(buffer.array(), 0, buffer.position());
+            neighbour.out.flush();
+            return null;
+        });
+    }
+
+    /**
+     * Fill the halo rows with the edge rows of the neighbours, once every strip is populated and
+     * again at the end of every step.
+     *
+     * @throws IOException if a neighbour cannot be reached
+     */
+    private void shareEdges() throws IOException {
+        List<Future<?>> sending = new ArrayList<>();
+        for (Neighbour neighbour : neighbours) {
+            if (neighbour != null) {
+                sending.add(send(neighbour, inRow(owned, neighbour.edgeRow), List.of()));
+            }
+        }
+        for (Neighbour neighbour : neighbours) {
+            if (neighbour != null) {
+                receive(neighbour, List.of(), new ArrayList<>());
+            }
+        }
+        for (Future<?> sent : sending) {
+            await(sent);
+        }
+    }
+
+    /**
+     * Replace the edge row and the halo row on one side by the ones the neighbour sent.
+     *
+     * @param neighbour the neighbour on that side
+     * @param candidates the organisms that may be in either row
+     * @param received collects the organisms that moved or were born into the strip
+     * @throws IOException if the neighbour cannot be reached
+     */
+    private void receive(Neighbour neighbour, List<Member> candidates, List<Member> received) throws IOException {
+        byte[] message = new byte[neighbour.in.readInt()];
+        neighbour.in.readFully(message);
+        ByteBuffer buffer = ByteBuffer.wrap(message);
+
+        Map<Long, Member> previous = new HashMap<>();
+        for (Member member : inRow(candidates, neighbour.edgeRow)) {
+            previous.put(member.id, member);
+            member.organism.remove();
+        }
+        for (Member ghost : neighbour.ghosts) {
+            ghost.organism.remove();
+        }
+
+        int edgeCount = buffer.getInt();
+        int[] cellStates = new int[edgeCount + buffer.getInt()];
+        List<Organism> rebuilt = new ArrayList<>(cellStates.length);
+        List<Member> ghosts = new ArrayList<>();
+        for (int index = 0; index < cellStates.length; index++) {
+            long id = buffer.getLong();
+            long order = buffer.getLong();
+            Organism organism = Checkpoint.getOrganism(buffer, species, field, cellStates, index);
+            rebuilt.add(organism);
+            Member member = index < edgeCount ? previous.remove(id) : null;
+            if (member != null) {
+                member.organism = organism;
+            } else if (index < edgeCount) {
+                received.add(new Member(organism, id, order));
+            } else {
+                ghosts.add(new Member(organism, id, order));
+            }
+        }
+        // the organisms of the edge row the neighbour did not send were eaten or died
+        for (Member gone : previous.values()) {
+            gone.organism = null;
+        }
+        Checkpoint.settle(field, rebuilt, cellStates);
+        neighbour.ghosts = ghosts;
+    }
+
+    /**
+     * Write an organism with its id and order.
+     */
+    private void putMember(ByteBuffer buffer, Member member) {
+        buffer.putLong(member.id).putLong(member.order);
+        Checkpoint.putOrganism(buffer, member.organism, speciesIndex.get(member.organism.getStats()), field);
+    }
+
+    /**
+     * @return the living organisms of the list in the given row
+     */
+    private static List<Member> inRow(List<Member> members, int row) {
+        List<Member> found = new ArrayList<>();
+        for (Member member : members) {
+            if (isLiving(member) && member.organism.getLocation().getRow() == row) {
+                found.add(member);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Add the living organisms of the lists that are in the strip.
+     */
+    private void keepOwned(List<List<Member>> lists, List<Member> owned) {
+        for (List<Member> members : lists) {
+            for (Member member : members) {
+                if (isLiving(member)) {
+                    int row = member.organism.getLocation().getRow();
+                    if (row >= firstRow && row < endRow) {
+                        owned.add(member);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if the organism of the member is still in the simulation
+     */
+    private static boolean isLiving(Member member) {
+        return member.organism != null && member.organism.getIsAlive() && member.organism.getLocation() != null;
+    }
+
+    /**
+     * Count how many of each possible entity the strip holds, as Simulator.countPopulation() does.
+     */
+    private int[] countPopulation() {
+        int[] counts = new int[species.length];
+        for (Member member : owned) {
+            Integer index = speciesIndex.get(member.organism.getStats());
+            if (index != null && field.getObjectAt(member.organism.getLocation()) == member.organism) {
+                counts[index]++;
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Sum a hash of the saved state of every organism in the strip, which does not depend on
+     * their order, so the digests of the strips add up to the digest of the whole field.
+     */
+    private long digest() {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        long digest = 0;
+        for (Member member : owned) {
+            buffer.clear();
+            Checkpoint.putOrganism(buffer, member.organism, speciesIndex.get(member.organism.getStats()), field);
+            digest += hash(buffer.array(), buffer.position());
+        }
+        return digest;
+    }
+
+    /**
+     * Hash the first bytes of an array, FNV-1a followed by the finaliser of SplitMix64.
+     *
+     * @param bytes the bytes to hash
+     * @param length the number of bytes to hash
+     * @return the hash
+     */
+    static long hash(byte[] bytes, int length) {
+        long hash = 0xCBF29CE484222325L;
+        for (int index = 0; index < length; index++) {
+            hash = (hash ^ (bytes[index] & 0xFF)) * 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * The id of a newborn, from the id of its parent, the step and how many siblings were born before it.
+     */
+    private static long childId(long parent, int step, int birth) {
+        return mix(parent * 0x9E3779B97F4A7C15L + step * 0xC2B2AE3D27D4EB4FL + birth + 1);
+    }
+
+    /**
+     * The finaliser of SplitMix64, spreads every bit of the input over the output.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Write the population of the strip to the coordinator.
+     */
+    private static void writeCounts(DataOutputStream out, int[] counts) throws IOException {
+        for (int count : counts) {
+            out.writeInt(count);
+        }
+        out.flush();
+    }
+
+    /**
+     * Run a phase's tasks on the pool and wait for all of them.
+     *
+     * @param tasks the tile tasks of the phase
+     */
+    private void runAll(List<Callable<Void>> tasks) {
+        for (Future<Void> result : pool.invokeAll(tasks)) {
+            await(result);
+        }
+    }
+
+    /**
+     * Wait for a task of the worker and pass on how it failed.
+     */
+    private static void await(Future<?> result) {
+        try {
+            result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running a step", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A tile or a neighbour failed", e.getCause());
+        }
+    }
+
+    /**
+     * Stop the threads of the worker.
+     */
+    private void shutdown() {
+        pool.shutdown();
+        sender.shutdown();
+    }
+
+    /**
+     * The main method of a worker, see the class comment for the arguments.
+     *
+     * @param args the port of the coordinator and the index of the worker
+     * @throws IOException if the coordinator or a neighbour cannot be reached
+     */
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        int port = Integer.parseInt(args[0]);
+        int index = Integer.parseInt(args[1]);
+        try (ServerSocket peers = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+             Socket coordinator = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            coordinator.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(coordinator.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(coordinator.getOutputStream()));
+            out.writeInt(index);
+            out.writeInt(peers.getLocalPort());
+            out.flush();
+            DistributedWorker worker = new DistributedWorker(in, peers);
+            try {
+                worker.serve(in, out);
+            } finally {
+                worker.shutdown();
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs the same simulation many times with different seeds in one process, e.g. to estimate how
+ * likely a species is to die out.
+ *
+ * Every run is a headless Simulator of its own, stepped by one task of a fixed pool of threads.
+ * The simulators share nothing but the stats of the species, which every run clones, so any
+ * number of runs can go at once. The population of every run is sampled every few steps and at
+ * its last step, and handed back as a PopulationSeries as soon as the run is over, in the order
+ * the runs finish.
+ *
+ * Usage: java -Djava.awt.headless=true Ensemble [options]
+ *   --runs N        the number of runs, with the seeds 1 to N (default 100)
+ *   --steps N       the number of steps of every run (default 1000)
+ *   --every N       sample the population every N steps (default 24)
+ *   --size D W      the depth and width of the field (default 120 200)
+ *   --threads N     the number of runs stepped at once (default one per processor)
+ *
+ * @author Syraj Alkhalil and Cosmo Colman
+ * @version 2022.02.27 (2)
+ */
+public class Ensemble {
+    private final int depth;                    // The depth of the field of every run
+    private final int width;                    // The width of the field of every run
+    private final int steps;                    // The number of steps of every run
+    private final int sampleEvery;              // The number of steps between two samples
+    private final int threads;                  // The number of runs stepped at once
+    private Supplier<TerminationCondition> termination;   // Makes the condition stopping every run early, null to run every step
+
+    /**
+     * Create an ensemble.
+     *
+     * @param depth the depth of the field of every run
+     * @param width the width of the field of every run
+     * @param steps the number of steps of every run
+     * @param sampleEvery the number of steps between two samples of the population
+     * @param threads the number of runs stepped at once
+     */
+    public Ensemble(int depth, int width, int steps, int sampleEvery, int threads) {
+        this.depth = depth;
+        this.width = width;
+        this.steps = steps;
+        this.sampleEvery = Math.max(1, sampleEvery);
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * A simple setter method to stop every run early once a condition says so, the last sample
+     * is then taken at that step. Every run asks for a condition of its own, since a condition
+     * may remember what it saw.
+     *
+     * @param termination makes the condition of a run, e.g. ViabilityCondition::new, null to run every step
+     */
+    public void setTermination(Supplier<TerminationCondition> termination) {
+        this.termination = termination;
+    }
+
+    /**
+     * Run every configuration with every seed and hand back the population of every run.
+     * The results are handed over on the calling thread, one at a time, so the consumer does not
+     * need to be thread safe. If a run fails the runs not finished yet are abandoned.
+     *
+     * @param configurations the species of every configuration, they are cloned by every run
+     * @param seeds the seeds every configuration is run with
+     * @param results what to do with the population of a run once it is over
+     * @throws InterruptedException if the calling thread is interrupted while waiting for the runs
+     * @throws ExecutionException if a run failed
+     */
+    public void run(List<? extends List<EntityStats>> configurations, List<Long> seeds, Consumer<PopulationSeries> results)
+            throws InterruptedException, ExecutionException {
+        AtomicInteger threadCount = new AtomicInteger();
+        // a fixed pool rather than a virtual thread per run: the project targets Java 17, and a
+        // run never blocks, so more threads than processors would not finish the runs any sooner
+        ExecutorService executor = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "ensemble-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            CompletionService<PopulationSeries> runs = new ExecutorCompletionService<>(executor);
+            int submitted = 0;
+            for (int configuration = 0; configuration < configurations.size(); configuration++) {
+                int index = configuration;
+                List<EntityStats> species = configurations.get(configuration);
+                for (long seed : seeds) {
+                    runs.submit(() -> runOnce(index, species, seed));
+                    submitted++;
+                }
+            }
+            for (int finished = 0; finished < submitted; finished++) {
+                results.accept(runs.take().get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Run one configuration with one seed, on the current thread.
+     *
+     * @param configuration the index of the configuration
+     * @param species the species of the configuration, cloned before the run
+     * @param seed the seed of the run
+     * @return the population of the run
+     * @throws CloneNotSupportedException if a species cannot be cloned
+     */
+    public PopulationSeries runOnce(int configuration, List<EntityStats> species, long seed) throws CloneNotSupportedException {
+        Simulator simulator = Simulator.createUnpopulated(depth, width);
+        ArrayList<EntityStats> possibleEntities = new ArrayList<>();
+        String[] names = new String[species.size()];
+        for (int index = 0; index < names.length; index++) {
+            possibleEntities.add(species.get(index).clone());
+            names[index] = species.get(index).getName();
+        }
+        simulator.setPossibleEntities(possibleEntities);
+        simulator.getRandomizer().setSeed(seed);
+        simulator.reset();
+
+        // step 0, every sampleEvery steps and the last step
+        int samples = (steps + sampleEvery - 1) / sampleEvery + 1;
+        int[] sampleSteps = new int[samples];
+        int[][] counts = new int[samples][];
+        counts[0] = simulator.countPopulation();
+        int sample = 1;
+        TerminationCondition condition = termination != null ? termination.get() : null;
+        Termination stopped = null;
+        for (int step = 1; step <= steps && stopped == null; step++) {
+            simulator.simulateOneStep();
+            int[] population = simulator.countPopulation();
+            if (condition != null) {
+                stopped = condition.check(simulator, population);
+            }
+            if (step % sampleEvery == 0 || step == steps || stopped != null) {
+                sampleSteps[sample] = step;
+                counts[sample++] = population;
+            }
+        }
+        return new PopulationSeries(configuration, seed, names, Arrays.copyOf(sampleSteps, sample),
+                Arrays.copyOf(counts, sample), stopped);
+    }
+
+    /**
+     * Run the default species with the seeds 1 to N, print the population of every run at the end
+     * and how often every species died out.
+     *
+     * @param args the options, see the class comment
+     * @throws Exception if a run failed
+     */
+    public static void main(String[] args) throws Exception {
+        int runs = 100;
+        int steps = 1000;
+        int every = 24;
+        int depth = 120;
+        int width = 200;
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> options = List.of(args);
+        for (int index = 0; index < options.size(); index++) {
+            switch (options.get(index)) {
+                case "--runs":
+                    runs = Integer.parseInt(options.get(++index));
+                    break;
+                case "--steps":
+                    steps = Integer.parseInt(options.get(++index));
+                    break;
+                case "--every":
+                    every = Integer.parseInt(options.get(++index));
+                    break;
+                case "--size":
+                    depth = Integer.parseInt(options.get(++index));
+                    width = Integer.parseInt(options.get(++index));
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(options.get(++index));
+                    break;
+                default:
+                    System.err.println("Unknown option " + options.get(index));
+                    return;
+            }
+        }
+
+        List<EntityStats> species = Simulator.createDefaultEntities();
+        List<Long> seeds = new ArrayList<>();
+        for (long seed = 1; seed <= runs; seed++) {
+            seeds.add(seed);
+        }
+        StringBuilder header = new StringBuilder("seed");
+        for (EntityStats stats : species) {
+            header.append(',').append(stats.getName());
+        }
+        System.out.println(header);
+
+        int[] extinctions = new int[species.size()];
+        long start = System.nanoTime();
+        new Ensemble(depth, width, steps, every, threads).run(List.of(species), seeds, series -> {
+            StringBuilder line = new StringBuilder().append(series.getSeed());
+            for (int index = 0; index < series.getSpeciesCount(); index++) {
+                line.append(',').append(series.getPopulation(series.getSampleCount() - 1, index));
+                if (series.getExtinctionStep(index) >= 0) {
+                    extinctions[index]++;
+                }
+            }
+            System.out.println(line);
+        });
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.printf("%d runs of %d steps in %.1f s%n", runs, steps, seconds);
+        for (int index = 0; index < extinctions.length; index++) {
+            System.err.printf("%s died out in %d of %d runs (%.1f%%)%n", species.get(index).getName(),
+                    extinctions[index], runs, 100.0 * extinctions[index] / runs);
+        }
+    }
+}
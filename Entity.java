@@ -1,8 +1,7 @@
-import java.util.Random;
 
 /**
  * An entity is a super class that all entities represented on the simulation share.
- * This includes the disease, animals, plants etc...
+ * This includes the animals, plants etc...
  *
  * @author Syraj Alkhalil and Cosmo Colman
  * @version 2022.02.27 (2)
@@ -12,15 +11,23 @@ public class Entity {
     private Field field;                                        // The field occupied by the entity
     private boolean isAlive;                                    // Is the entity currently alive
     private Location location;                                  // The location of the entity
-    private static final Random rand = Randomizer.getRandom();  // The randomness all entities share
     private final EntityStats entityStats;                      // The entity stats these are subject to change
+    private int fieldHandle;                                    // The handle the field stores for this entity, 0 if not placed
+    private final RandomStream rand;                            // The random stream owned by this entity
+    private static final StepProfiler NO_PROFILER = new StepProfiler(); // Reported to by the entities without a field
 
     /**
      * Constructor for objects of class Entity
+     *
+     * @param stats the statistics of the entity
+     * @param field the field the entity lives in
+     * @param initLocation the location within the field
+     * @param rand the random stream of the entity, split from its parent's or the simulation's
      */
-    public Entity(EntityStats stats ,Field field, Location initLocation) {
+    public Entity(EntityStats stats ,Field field, Location initLocation, RandomStream rand) {
         // initialise instance variables
         this.entityStats = stats;
+        this.rand = rand;
         this.ageInSteps = 0;
         this.isAlive = true;
         this.field = field;
@@ -33,7 +40,17 @@ public class Entity {
      * @return the current age of the entity
      */
     public double getAgeInDays() {
-        double value = getAgeInSteps() / 24.0;
+        return ageInDays(getAgeInSteps());
+    }
+
+    /**
+     * Turn an age in steps into days, rounded down to a hundredth of a day
+     *
+     * @param ageInSteps the age in steps
+     * @return the age in days
+     */
+    static double ageInDays(int ageInSteps) {
+        double value = ageInSteps / 24.0;
         return Math.floor(value * 100) / 100;
     }
 
@@ -65,6 +82,16 @@ public class Entity {
     }
 
 
+    /**
+     * Return the profiler to report the time of the phases of an act to. An entity that died
+     * earlier in the step has no field any more and reports to a profiler that is always off.
+     *
+     * @return the profiler of the field, or one that is off
+     */
+    protected StepProfiler getProfiler() {
+        return field == null ? NO_PROFILER : field.getProfiler();
+    }
+
     /**
      * A simple setter method to set the age of the entity
      *
@@ -89,11 +116,26 @@ public class Entity {
      * @param newLocation The animal's new location.
      */
     protected void setLocation(Location newLocation) {
-        if(location != null) {
-            getField().clear(location);
-        }
+        getField().move(this, location, newLocation);
         location = newLocation;
-        getField().place(this, newLocation);
+    }
+
+    /**
+     * A simple getter method to get the handle the field uses to refer to this entity
+     *
+     * @return the field handle, 0 if the entity is not placed in the field
+     */
+    int getFieldHandle() {
+        return fieldHandle;
+    }
+
+    /**
+     * A simple setter method used by the field when it hands out or releases a handle
+     *
+     * @param fieldHandle the new handle of the entity
+     */
+    void setFieldHandle(int fieldHandle) {
+        this.fieldHandle = fieldHandle;
     }
 
     /**
@@ -106,11 +148,11 @@ public class Entity {
     }
 
     /**
-     * return the rand field which contains a Random object
+     * return the random stream owned by this entity
      *
-     * @return the random object we have
+     * @return the random stream we have
      */
-    public static Random getRand() {
+    public RandomStream getRand() {
         return rand;
     }
 
@@ -127,6 +169,21 @@ public class Entity {
         }
     }
 
+    /**
+     * Take the entity out of the simulation for good, when its whole species is removed.
+     * Unlike setDead, which a plant survives by losing a level, this always kills it.
+     */
+    protected final void remove() {
+        isAlive = false;
+        if(location != null) {
+            if(getField().getObjectAt(location.getRow(), location.getCol()) == this) {
+                getField().clear(location);
+            }
+            location = null;
+            setField(null);
+        }
+    }
+
     /**
      * A simple getter method that returns the EntityStats field
      *
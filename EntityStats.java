@@ -26,6 +26,7 @@ public class EntityStats implements Cloneable{
     public static final double BREEDINGPROBABILITY_MAX = 1.0;
 
     private final EntityStats DEFAULT_STATS;
+    private int speciesId = -1;                     // A number identifying the species in its simulation, shared by its clones and defaults, -1 until it joins one
 
     /**
      * Created a container for the entity's statistics.
@@ -56,6 +57,7 @@ public class EntityStats implements Cloneable{
         this.breedingProbability = clone.breedingProbability;
         this.creationProbability = clone.creationProbability;
         this.isEnabled = clone.isEnabled;
+        this.speciesId = clone.speciesId;
 
         // PREVENTS INFINITE LOOP
         DEFAULT_STATS = this;
@@ -100,6 +102,25 @@ public class EntityStats implements Cloneable{
         return DEFAULT_STATS;
     }
 
+    /**
+     * Returns the id of the species, clones of an EntityStats share it.
+     * @return A small number identifying the species in its simulation, starting from 0, -1 if
+     * the species is not part of a simulation yet.
+     */
+    public int getSpeciesId() {
+        return speciesId;
+    }
+
+    /**
+     * Sets the id of the species and of its defaults, done by the simulation the species joins.
+     * The clones taken afterwards share it.
+     * @param speciesId A small number identifying the species in its simulation.
+     */
+    void setSpeciesId(int speciesId) {
+        this.speciesId = speciesId;
+        getDefaults().speciesId = speciesId;
+    }
+
     /**
      * Returns the name of the Entity
      * @return Name of the Entity
@@ -0,0 +1,709 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Holds the organisms of a simulation as numbers instead of objects and steps them, an engine the
+ * simulator can switch to instead of stepping the Predator, Prey and Plant objects.
+ *
+ * Every organism is a slot: its species, age, food, water, breed counter, plant level and so on
+ * live in one primitive array each, at the index of the slot, and its random stream is kept as
+ * its two longs. A step runs the same rules as the objects over those arrays, in the same order
+ * as the ActivityScheduler: the slots in the order of the list they were loaded from, the sleeping
+ * animals aged at their turn and the newborns added at the end. Started from the same organisms,
+ * the store therefore takes the same steps as the serial engine.
+ *
+ * The field still tells what is where, for the view, the recorder and the counts: every cell
+ * held by an organism of the store holds a marker entity standing for the whole species, and
+ * the store keeps which slot holds every cell on the side. As with the objects, an animal eating
+ * a plant that survives by losing a level overwrites it, and the plant lives on outside the
+ * field until it comes back to its cell.
+ *
+ * The organisms are only objects again when they are unloaded, e.g. to be saved in a checkpoint
+ * or to go back to the other engines. Meanwhile the store hands the Epidemic a handle of a slot
+ * for each infected organism, which stops matching the slot once the organism died.
+ *
+ * @author Syraj Alkhalil and Cosmo Colman
+ * @version 2022.02.27 (2)
+ */
+public class EntityStore implements EpidemicHosts {
+    private static final int EMPTY = -1;                        // A cell no slot holds, or a slot holding no cell
+    private static final byte ALIVE = 1;                        // The bits of the flags of a slot
+    private static final byte MALE = 2;
+    private static final byte PREGNANT = 4;
+
+    private final Field field;                                  // The field the organisms live in
+    private final int width;                                    // The width of the field
+    private final int[] holders;                                // The slot holding every cell, by row * width + col, EMPTY if none
+    private final RandomStream cursor = new RandomStream(0, 1); // Pointed at the stream of the slot drawing
+
+    // the organisms, by slot
+    private int[] speciesIds = new int[0];                      // The species id of the organism
+    private byte[] kinds = new byte[0];                         // Checkpoint.PREDATOR, PREY or PLANT
+    private byte[] flags = new byte[0];                         // ALIVE, MALE and PREGNANT
+    private int[] cells = new int[0];                           // The packed location of the organism, EMPTY once it is dead
+    private int[] ages = new int[0];                            // The age of the organism in steps
+    private int[] foods = new int[0];                           // The food level of an animal
+    private int[] waters = new int[0];                          // The water level of the organism
+    private int[] breedCounters = new int[0];                   // The breed counter of an animal
+    private int[] levels = new int[0];                          // The level of a plant
+    private int[] sunlights = new int[0];                       // The sunlight level of a plant
+    private long[] seeds = new long[0];                         // The seed of the organism's stream
+    private long[] gammas = new long[0];                        // The gamma of the organism's stream
+    private SlotHost[] hosts = new SlotHost[0];                 // The handle the epidemic knows the organism by, null until it needs one
+    private int slotCount;                                      // The number of slots ever used
+    private int[] freeSlots = new int[0];                       // The slots of the organisms dropped from their species
+    private int freeCount;                                      // The number of free slots
+
+    // the species, by species id
+    private EntityStats[] species = new EntityStats[0];         // The stats of the species
+    private Entity[] markers = new Entity[0];                   // What the field holds for the organisms of the species
+    private int[] order = new int[64];                          // The slots in the order they act
+    private int orderCount;                                     // The number of slots in the order
+    private boolean dropOffFieldPlants;                         // Whether the plants outside the field leave at their turn, read at the start of every step
+    private boolean[] nocturnal = new boolean[0];               // The stats of the species, read at the start of every step
+    private int[] maxAges = new int[0];
+    private int[] breedingAges = new int[0];
+    private int[] maxLitters = new int[0];
+    private int[] hungerValues = new int[0];
+    private double[] breedingProbabilities = new double[0];
+    private int[] foodValues = new int[0];
+    private int[] maxLevels = new int[0];
+    private boolean[] diets = new boolean[0];                   // Whether a species eats another, by eater id * species.length + food id
+
+    private int[] newborns = new int[64];                       // The slots born during the current step
+    private int newbornCount;                                   // The number of slots born during the current step
+
+    /**
+     * Create an empty store for a field.
+     *
+     * @param field the field the organisms live in
+     */
+    public EntityStore(Field field) {
+        this.field = field;
+        this.width = field.getWidth();
+        this.holders = new int[field.getDepth() * width];
+        Arrays.fill(holders, EMPTY);
+    }
+
+    /**
+     * Take every living organism of a list into the store, in the order of the list, and empty
+     * the list. The field holds the markers instead of the organisms afterwards.
+     *
+     * @param organisms the organisms of the simulation
+     */
+    public void load(List<Organism> organisms) {
+        for (Organism organism : organisms) {
+            if (organism.getIsAlive() && organism.getLocation() != null) {
+                adopt(organism);
+            }
+        }
+        organisms.clear();
+    }
+
+    /**
+     * Take a living organism into the store, at the end of the order.
+     * If it holds its cell the field holds its marker instead, with the same cell state.
+     *
+     * @param organism the organism, it is of no use once adopted
+     */
+    public void adopt(Organism organism) {
+        int id = register(organism.getStats());
+        int slot = allocate();
+        Location location = organism.getLocation();
+        int cell = Field.pack(location.getRow(), location.getCol());
+        speciesIds[slot] = id;
+        cells[slot] = cell;
+        ages[slot] = organism.getAgeInSteps();
+        seeds[slot] = organism.getRand().getSeed();
+        gammas[slot] = organism.getRand().getGamma();
+        if (organism instanceof Animal) {
+            Animal animal = (Animal) organism;
+            kinds[slot] = organism instanceof Predator ? Checkpoint.PREDATOR : Checkpoint.PREY;
+            flags[slot] = (byte) (ALIVE | (animal.getIsMale() ? MALE : 0) | (animal.getIsPregnant() ? PREGNANT : 0));
+            foods[slot] = animal.getFoodLevel();
+            waters[slot] = animal.getWaterLevel();
+            breedCounters[slot] = animal.getBreedCounter();
+        } else {
+            Plant plant = (Plant) organism;
+            kinds[slot] = Checkpoint.PLANT;
+            flags[slot] = ALIVE;
+            levels[slot] = plant.getCurrentLevel();
+            waters[slot] = plant.getWaterLevel();
+            sunlights[slot] = plant.getSunLightLevel();
+        }
+        if (field.getObjectAt(location) == organism) {
+            int state = field.getCellState(cell);
+            holders[indexOf(cell)] = slot;
+            field.placePacked(markerOf(id, cell), cell);
+            field.setCellState(cell, state);
+        }
+        addToOrder(slot);
+    }
+
+    /**
+     * Turn every living organism back into an object, in the order they act, put the objects in
+     * the field instead of the markers and empty the store.
+     *
+     * @param organisms where the objects are added, it must be empty
+     */
+    public void unload(List<Organism> organisms) {
+        // the states are read before any object is placed, placing one empties the state of its cell
+        List<Integer> states = new ArrayList<>();
+        for (int index = 0; index < orderCount; index++) {
+            int slot = order[index];
+            if (isAlive(slot)) {
+                states.add(holders[indexOf(cells[slot])] == slot ? field.getCellState(cells[slot]) : -1);
+            }
+        }
+        for (int index = 0; index < orderCount; index++) {
+            int slot = order[index];
+            if (isAlive(slot)) {
+                boolean isPlant = kinds[slot] == Checkpoint.PLANT;
+                organisms.add(Checkpoint.rebuild(kinds[slot], species[speciesIds[slot]], field, cells[slot], seeds[slot], gammas[slot],
+                        (flags[slot] & MALE) != 0, (flags[slot] & PREGNANT) != 0, ages[slot],
+                        isPlant ? levels[slot] : breedCounters[slot],
+                        isPlant ? waters[slot] : foods[slot],
+                        isPlant ? sunlights[slot] : waters[slot]));
+            }
+        }
+        int[] cellStates = new int[states.size()];
+        for (int index = 0; index < cellStates.length; index++) {
+            cellStates[index] = states.get(index);
+        }
+        Checkpoint.settle(field, organisms, cellStates);
+        clear();
+    }
+
+    /**
+     * Forget every organism, without touching the field.
+     */
+    public void clear() {
+        Arrays.fill(holders, EMPTY);
+        Arrays.fill(hosts, null);
+        orderCount = 0;
+        slotCount = 0;
+        freeCount = 0;
+        newbornCount = 0;
+    }
+
+    /**
+     * Run one step: let the awake organisms act and the sleeping animals grow older, in their
+     * order, then add the newborns at the end. The slots dead at their turn are dropped.
+     *
+     * @param isDay is it currently day or night ?
+     * @param weather the current weather
+     * @param profiler the profiler measuring the step
+     */
+    public void step(boolean isDay, Weather weather, StepProfiler profiler) {
+        readSpecies();
+        dropOffFieldPlants = field.getDropOffFieldPlants();
+        newbornCount = 0;
+        int downfall = weather.getActualDownfall();
+        int visibility = weather.getActualVisibility();
+        int kept = 0;
+        for (int index = 0; index < orderCount; index++) {
+            int slot = order[index];
+            if (isAlive(slot)) {
+                int id = speciesIds[slot];
+                boolean isPlant = kinds[slot] == Checkpoint.PLANT;
+                if (isPlant ? isDay : nocturnal[id] != isDay) {
+                    int bornBefore = newbornCount;
+                    cursor.setState(seeds[slot], gammas[slot]);
+                    if (isPlant) {
+                        actPlant(slot, id, downfall, visibility, profiler);
+                    } else {
+                        actAnimal(slot, id, downfall, profiler);
+                    }
+                    seeds[slot] = cursor.getSeed();
+                    profiler.countActs(id, 1, newbornCount - bornBefore);
+                } else if (!isPlant) {
+                    long start = profiler.start();
+                    incrementAge(slot, id);
+                    profiler.lap(StepProfiler.Phase.AGING, start);
+                }
+            }
+            if (isAlive(slot)) {
+                order[kept++] = slot;
+            } else {
+                release(slot);
+            }
+        }
+        orderCount = kept;
+        for (int index = 0; index < newbornCount; index++) {
+            addToOrder(newborns[index]);
+        }
+        newbornCount = 0;
+    }
+
+    /**
+     * Take every organism of a species out of the field and the store.
+     *
+     * @param stats the species, or any clone of it
+     */
+    public void removeSpecies(EntityStats stats) {
+        int id = stats.getSpeciesId();
+        int kept = 0;
+        for (int index = 0; index < orderCount; index++) {
+            int slot = order[index];
+            if (speciesIds[slot] != id) {
+                order[kept++] = slot;
+                continue;
+            }
+            if (isAlive(slot) && holders[indexOf(cells[slot])] == slot) {
+                clearCell(cells[slot]);
+            }
+            flags[slot] = 0;
+            cells[slot] = EMPTY;
+            release(slot);
+        }
+        orderCount = kept;
+    }
+
+    /**
+     * Clear a cell of the field. The organism holding it, if any, lives on outside the field
+     * as an organism overwritten by another would.
+     *
+     * @param cell the packed location of the cell
+     */
+    public void clearCell(int cell) {
+        holders[indexOf(cell)] = EMPTY;
+        field.clearPacked(cell);
+    }
+
+    /**
+     * Return the number of organisms in the store, including the ones that died since the last
+     * step and are only dropped at the next.
+     *
+     * @return the number of organisms
+     */
+    public int getOrganismCount() {
+        return orderCount;
+    }
+
+    /**
+     * Copy the stats of every species into the arrays, the user may have changed them.
+     */
+    private void readSpecies() {
+        if (diets.length != species.length * species.length) {
+            diets = new boolean[species.length * species.length];
+        }
+        for (int id = 0; id < species.length; id++) {
+            EntityStats stats = species[id];
+            if (stats == null) {
+                continue;
+            }
+            breedingProbabilities[id] = stats.getBreedingProbability();
+            if (stats instanceof AnimalStats) {
+                AnimalStats animalStats = (AnimalStats) stats;
+                nocturnal[id] = animalStats.isNocturnal();
+                maxAges[id] = animalStats.getMaxAge();
+                breedingAges[id] = animalStats.getBreedingAge();
+                maxLitters[id] = animalStats.getMaxLitterSize();
+                hungerValues[id] = animalStats.getHungerValue();
+                for (int food = 0; food < species.length; food++) {
+                    diets[id * species.length + food] = species[food] != null && animalStats.eats(species[food]);
+                }
+            } else if (stats instanceof PlantStats) {
+                PlantStats plantStats = (PlantStats) stats;
+                foodValues[id] = plantStats.getFoodValue();
+                maxLevels[id] = plantStats.getMaxLevel();
+            }
+        }
+    }
+
+    /**
+     * The act of Predator and Prey: age, get hungry and thirsty, breed when ready, then eat or move.
+     */
+    private void actAnimal(int slot, int id, int downfall, StepProfiler profiler) {
+        long start = profiler.start();
+        incrementAge(slot, id);
+        waters[slot]--;
+        if (waters[slot] <= 0) {
+            kill(slot);
+        }
+        foods[slot]--;
+        if (foods[slot] <= 0) {
+            kill(slot);
+        }
+        breedCounters[slot]--;
+        start = profiler.lap(StepProfiler.Phase.AGING, start);
+        if (!isAlive(slot)) {
+            return;
+        }
+        if (breedCounters[slot] <= 0) {
+            if (findMate(slot)) {
+                giveBirth(slot, id, breedAnimal(slot, id));
+            }
+            start = profiler.lap(StepProfiler.Phase.BREEDING, start);
+        }
+
+        int target = findFood(slot, downfall);
+        start = profiler.lap(StepProfiler.Phase.FEEDING, start);
+        if (target == Field.NO_LOCATION) {
+            target = field.freeAdjacentCell(Field.rowOf(cells[slot]), Field.colOf(cells[slot]), cursor);
+        }
+        if (target != Field.NO_LOCATION) {
+            moveTo(slot, cells[slot], target);
+        } else {
+            // overcrowding
+            kill(slot);
+        }
+        profiler.lap(StepProfiler.Phase.MOVEMENT, start);
+    }
+
+    /**
+     * The act of Plant during the day: take in sunlight and water, grow a level when there is
+     * enough of both and spread once big enough.
+     */
+    private void actPlant(int slot, int id, int downfall, int visibility, StepProfiler profiler) {
+        if (dropOffFieldPlants && holders[indexOf(cells[slot])] != slot) {
+            flags[slot] &= ~ALIVE;
+            cells[slot] = EMPTY;
+            return;
+        }
+        long start = profiler.start();
+        sunlights[slot] += visibility < 10 ? -1 : 1;
+        if (sunlights[slot] <= 0) {
+            killPlant(slot);
+        }
+        waters[slot] += downfall < 10 ? -1 : 1;
+        if (waters[slot] <= 0) {
+            killPlant(slot);
+        }
+        if (sunlights[slot] > 10 && waters[slot] > 12 && levels[slot] < maxLevels[id]) {
+            levels[slot]++;
+            waters[slot] = 3;
+            sunlights[slot] = 2;
+        }
+        start = profiler.lap(StepProfiler.Phase.GROWTH, start);
+        if (levels[slot] > 2) {
+            int births = 0;
+            if (cursor.nextDouble() <= breedingProbabilities[id]) {
+                births = cursor.nextInt(4) + 1;
+            }
+            giveBirth(slot, id, births);
+            profiler.lap(StepProfiler.Phase.BREEDING, start);
+        }
+    }
+
+    /**
+     * Age an animal by a step, it dies once older than the maximum age of its species.
+     */
+    private void incrementAge(int slot, int id) {
+        ages[slot]++;
+        if (Entity.ageInDays(ages[slot]) > maxAges[id]) {
+            kill(slot);
+        }
+    }
+
+    /**
+     * Look for a mate among the neighbours, of the same species name, old enough and of the
+     * other sex. The female of the two becomes pregnant unless she already is.
+     *
+     * @return true if one of the two became pregnant
+     */
+    private boolean findMate(int slot) {
+        int row = Field.rowOf(cells[slot]);
+        int col = Field.colOf(cells[slot]);
+        String name = species[speciesIds[slot]].getName();
+        for (int direction : field.randomNeighbourOrder(cursor)) {
+            int where = field.neighbour(row, col, direction);
+            if (where == Field.NO_LOCATION) {
+                continue;
+            }
+            int mate = holders[indexOf(where)];
+            if (mate == EMPTY || kinds[mate] == Checkpoint.PLANT || !name.equals(species[speciesIds[mate]].getName())) {
+                continue;
+            }
+            if (Entity.ageInDays(ages[mate]) >= breedingAges[speciesIds[mate]]
+                    && (flags[mate] & MALE) != (flags[slot] & MALE)) {
+                if ((flags[mate] & (MALE | PREGNANT)) == 0) {
+                    flags[mate] |= PREGNANT;
+                    breedCounters[mate] = 10;
+                    return true;
+                } else if ((flags[slot] & PREGNANT) == 0) {
+                    flags[slot] |= PREGNANT;
+                    breedCounters[slot] = 10;
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return the size of a litter, 0 if the animal is too young or out of luck.
+     */
+    private int breedAnimal(int slot, int id) {
+        if (Entity.ageInDays(ages[slot]) >= breedingAges[id] && cursor.nextDouble() <= breedingProbabilities[id]) {
+            return cursor.nextInt(maxLitters[id]) + 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Put newborns of the same species in the free neighbouring cells.
+     */
+    private void giveBirth(int parent, int id, int births) {
+        int row = Field.rowOf(cells[parent]);
+        int col = Field.colOf(cells[parent]);
+        for (int direction : field.randomNeighbourOrder(cursor)) {
+            if (births == 0) {
+                break;
+            }
+            int where = field.neighbour(row, col, direction);
+            if (where != Field.NO_LOCATION && holders[indexOf(where)] == EMPTY) {
+                bear(parent, id, where);
+                births--;
+            }
+        }
+    }
+
+    /**
+     * Make a newborn of the parent's species in a cell, with a stream split from the parent's.
+     */
+    private void bear(int parent, int id, int cell) {
+        RandomStream stream = cursor.split();
+        int slot = allocate();
+        speciesIds[slot] = id;
+        kinds[slot] = kinds[parent];
+        cells[slot] = EMPTY;
+        ages[slot] = 0;
+        flags[slot] = ALIVE;
+        if (kinds[slot] == Checkpoint.PLANT) {
+            levels[slot] = 1;
+            waters[slot] = 1;
+            sunlights[slot] = 1;
+        } else {
+            foods[slot] = Math.min(hungerValues[id], 1000);
+            waters[slot] = 500;
+            breedCounters[slot] = 10;
+        }
+        // the sex of an animal is the first thing it draws from its stream
+        if (kinds[slot] != Checkpoint.PLANT && stream.nextDouble() < 0.5) {
+            flags[slot] |= MALE;
+        }
+        seeds[slot] = stream.getSeed();
+        gammas[slot] = stream.getGamma();
+        moveTo(slot, EMPTY, cell);
+        if (newbornCount == newborns.length) {
+            newborns = Arrays.copyOf(newborns, newbornCount * 2);
+        }
+        newborns[newbornCount++] = slot;
+    }
+
+    /**
+     * Look for something to eat among the neighbours after drinking, whatever is in the diet of
+     * the species. A plant eaten survives by losing a level as long as it has one.
+     *
+     * @return the cell of the meal, Field.NO_LOCATION if there was none
+     */
+    private int findFood(int slot, int downfall) {
+        waters[slot] = Math.min(waters[slot] + downfall, 1000);
+        int diet = speciesIds[slot] * species.length;
+        int row = Field.rowOf(cells[slot]);
+        int col = Field.colOf(cells[slot]);
+        for (int direction : field.randomNeighbourOrder(cursor)) {
+            int where = field.neighbour(row, col, direction);
+            if (where == Field.NO_LOCATION) {
+                continue;
+            }
+            int prey = holders[indexOf(where)];
+            if (prey != EMPTY && diets[diet + speciesIds[prey]]) {
+                if (kinds[prey] == Checkpoint.PLANT) {
+                    killPlant(prey);
+                    foods[slot] = Math.min(foods[slot] + foodValues[speciesIds[prey]], 1000);
+                } else {
+                    kill(prey);
+                    foods[slot] = Math.min(foods[slot] + foods[prey], 1000);
+                }
+                return where;
+            }
+        }
+        return Field.NO_LOCATION;
+    }
+
+    /**
+     * Move a slot to a cell, taking the state of its old cell if it held it. Whatever held the
+     * new cell is overwritten, and the old cell is emptied whoever held it, as Field.move does.
+     */
+    private void moveTo(int slot, int from, int to) {
+        int state = 0;
+        if (from != EMPTY) {
+            int index = indexOf(from);
+            if (holders[index] == slot) {
+                state = field.getCellState(from);
+            }
+            clearCell(from);
+        }
+        holders[indexOf(to)] = slot;
+        field.placePacked(markerOf(speciesIds[slot], to), to);
+        field.setCellState(to, state);
+        cells[slot] = to;
+    }
+
+    /**
+     * Kill a slot, emptying its cell whoever holds it, as Entity.setDead does.
+     */
+    private void kill(int slot) {
+        flags[slot] &= ~ALIVE;
+        if (cells[slot] != EMPTY) {
+            clearCell(cells[slot]);
+            cells[slot] = EMPTY;
+        }
+    }
+
+    /**
+     * Kill a plant, which only dies once it has no level left. Until then it loses a level and
+     * takes its cell back.
+     */
+    private void killPlant(int slot) {
+        if (levels[slot] <= 0) {
+            kill(slot);
+        } else {
+            levels[slot]--;
+            moveTo(slot, cells[slot], cells[slot]);
+        }
+    }
+
+    /**
+     * Return whether a slot holds a living organism.
+     */
+    private boolean isAlive(int slot) {
+        return (flags[slot] & ALIVE) != 0;
+    }
+
+    /**
+     * Turn a packed location into an index of holders.
+     */
+    private int indexOf(int cell) {
+        return Field.rowOf(cell) * width + Field.colOf(cell);
+    }
+
+    /**
+     * Return the marker of a species, making it in the given cell the first time it is needed.
+     */
+    private Entity markerOf(int id, int cell) {
+        if (markers[id] == null) {
+            markers[id] = new Entity(species[id], field, new Location(Field.rowOf(cell), Field.colOf(cell)), null);
+        }
+        return markers[id];
+    }
+
+    /**
+     * Return the id of a species, growing the tables of the species to hold it.
+     */
+    private int register(EntityStats stats) {
+        int id = stats.getSpeciesId();
+        if (id >= species.length) {
+            int length = Math.max(id + 1, species.length * 2);
+            species = Arrays.copyOf(species, length);
+            markers = Arrays.copyOf(markers, length);
+            nocturnal = Arrays.copyOf(nocturnal, length);
+            maxAges = Arrays.copyOf(maxAges, length);
+            breedingAges = Arrays.copyOf(breedingAges, length);
+            maxLitters = Arrays.copyOf(maxLitters, length);
+            hungerValues = Arrays.copyOf(hungerValues, length);
+            breedingProbabilities = Arrays.copyOf(breedingProbabilities, length);
+            foodValues = Arrays.copyOf(foodValues, length);
+            maxLevels = Arrays.copyOf(maxLevels, length);
+        }
+        if (species[id] == null) {
+            species[id] = stats;
+        }
+        return id;
+    }
+
+    /**
+     * Add a slot at the end of the order.
+     */
+    private void addToOrder(int slot) {
+        if (orderCount == order.length) {
+            order = Arrays.copyOf(order, orderCount * 2);
+        }
+        order[orderCount++] = slot;
+    }
+
+    /**
+     * Return a free slot, growing the arrays if there is none.
+     */
+    private int allocate() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (slotCount == speciesIds.length) {
+            int length = Math.max(1024, slotCount * 2);
+            speciesIds = Arrays.copyOf(speciesIds, length);
+            kinds = Arrays.copyOf(kinds, length);
+            flags = Arrays.copyOf(flags, length);
+            cells = Arrays.copyOf(cells, length);
+            ages = Arrays.copyOf(ages, length);
+            foods = Arrays.copyOf(foods, length);
+            waters = Arrays.copyOf(waters, length);
+            breedCounters = Arrays.copyOf(breedCounters, length);
+            levels = Arrays.copyOf(levels, length);
+            sunlights = Arrays.copyOf(sunlights, length);
+            seeds = Arrays.copyOf(seeds, length);
+            gammas = Arrays.copyOf(gammas, length);
+            hosts = Arrays.copyOf(hosts, length);
+            freeSlots = Arrays.copyOf(freeSlots, length);
+        }
+        return slotCount++;
+    }
+
+    /**
+     * Give a slot dropped from its species back for reuse.
+     */
+    private void release(int slot) {
+        hosts[slot] = null;
+        freeSlots[freeCount++] = slot;
+    }
+
+    @Override
+    public boolean hasHostAt(int cell) {
+        return holders[indexOf(cell)] != EMPTY;
+    }
+
+    @Override
+    public Host hostAt(int cell) {
+        int slot = holders[indexOf(cell)];
+        if (slot == EMPTY) {
+            return null;
+        }
+        if (hosts[slot] == null) {
+            hosts[slot] = new SlotHost(slot);
+        }
+        return hosts[slot];
+    }
+
+    @Override
+    public int cellOf(Host host) {
+        int slot = ((SlotHost) host).slot;
+        if (hosts[slot] != host || !isAlive(slot) || cells[slot] == EMPTY || holders[indexOf(cells[slot])] != slot) {
+            return Field.NO_LOCATION;
+        }
+        return cells[slot];
+    }
+
+    @Override
+    public void kill(Host host) {
+        int slot = ((SlotHost) host).slot;
+        if (kinds[slot] == Checkpoint.PLANT) {
+            killPlant(slot);
+        } else {
+            kill(slot);
+        }
+    }
+
+    /**
+     * The handle of a slot given to the epidemic, only the slot's current handle stands for it.
+     */
+    private static final class SlotHost implements Host {
+        private final int slot;                                 // The slot the handle was made for
+
+        private SlotHost(int slot) {
+            this.slot = slot;
+        }
+    }
+}
@@ -0,0 +1,416 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The epidemic spreads diseases between neighbouring organisms, following a susceptible,
+ * infected, recovered model. The state of every organism is an int kept in the field next to
+ * the organism itself, so it moves with the organism and is dropped when the organism dies:
+ *
+ *   bits 0-1   SUSCEPTIBLE, INFECTED or RECOVERED
+ *   bits 2-9   the id of the disease, 0 if the organism never caught one
+ *   bits 10-31 the number of steps the organism stays infected
+ *
+ * Once per step, after the organisms have acted, every infected organism gets a chance to infect
+ * its neighbours. Only infected organisms are visited, so the cost of a step is proportional to the
+ * number of infected cells. The organisms are reached through EpidemicHosts, so the epidemic runs
+ * the same whether the organism objects or an EntityStore hold them. Organisms infected during a
+ * step only spread the disease from the next one on and every random number is keyed on the step
+ * and the cell it is drawn for, so the result does not depend on the order the infected organisms
+ * are visited in.
+ *
+ * @author Syraj Alkhalil and Cosmo Colman
+ * @version 2022.02.27 (2)
+ */
+public class Epidemic {
+    public static final int SUSCEPTIBLE = 0;                    // Has never been infected
+    public static final int INFECTED = 1;                       // Carries a disease and spreads it
+    public static final int RECOVERED = 2;                      // Has had a disease and is immune
+    private static final int EXPOSED = 3;                       // Infected during the current step, only seen inside step()
+
+    private static final int STATUS_MASK = 0x3;                 // The bits of the status
+    private static final int DISEASE_SHIFT = 2;                 // Where the disease id starts
+    private static final int DISEASE_MASK = 0xFF;               // The bits of the disease id once shifted
+    private static final int REMAINING_SHIFT = 10;              // Where the remaining steps start
+    private static final int MAX_DISEASES = DISEASE_MASK;       // Disease ids go from 1 to this
+
+    private static final long OUTBREAK = 0;                     // Salts telling apart the draws made for one cell
+    private static final long SPREAD = 1;
+    private static final long DEATH = 1 + Field.NEIGHBOURS;
+    private static final long SEED_CELL = DEATH + 1;
+    private static final long SEED_DISEASE = SEED_CELL + 1;
+    private static final int CELLS_PER_NEW_CASE = 10_000;       // One new case appears every step for this many cells
+
+    private final Field field;                                  // The field holding the states
+    private final EpidemicHosts organismObjects;                // The organism objects in the field as hosts
+    private EpidemicHosts hosts;                                // The engine holding the organisms
+    private final List<Disease> diseases;                       // The known diseases, the id of a disease is its index + 1
+    private final List<EpidemicHosts.Host> infected;            // The hosts infected at the end of the last step
+    private int[] exposed = new int[16];                        // The cells infected during the current step, in the first exposedCount entries
+    private int exposedCount;                                   // The number of cells infected during the current step
+    private long seed;                                          // The seed of the random numbers of the epidemic
+
+    /**
+     * Create an epidemic on a field, with no diseases yet.
+     *
+     * @param field the field holding the organisms
+     */
+    public Epidemic(Field field) {
+        this.field = field;
+        this.organismObjects = new OrganismHosts(field);
+        this.hosts = organismObjects;
+        this.diseases = new ArrayList<>();
+        this.infected = new ArrayList<>();
+    }
+
+    /**
+     * Make a disease known to the epidemic so it can be caught.
+     *
+     * @param disease the disease
+     * @return the id of the disease
+     */
+    public int addDisease(Disease disease) {
+        if (diseases.size() == MAX_DISEASES) {
+            throw new IllegalStateException("Too many diseases");
+        }
+        diseases.add(disease);
+        return diseases.size();
+    }
+
+    /**
+     * Return a disease from its id.
+     *
+     * @param id the id of the disease, as returned by addDisease
+     * @return the disease
+     */
+    public Disease getDisease(int id) {
+        return diseases.get(id - 1);
+    }
+
+    /**
+     * A simple getter method to return the number of diseases
+     *
+     * @return the number of known diseases, the highest disease id
+     */
+    public int getDiseaseCount() {
+        return diseases.size();
+    }
+
+    /**
+     * A simple getter method to return the seed field
+     *
+     * @return the seed of the random numbers of the epidemic
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Put back a saved epidemic, used when a checkpoint is restored. The states of the
+     * organisms must already be back in the field, the infected ones are found from them.
+     *
+     * @param seed the seed of the random numbers
+     * @param savedDiseases the known diseases, in the order of their ids
+     */
+    public void restore(long seed, List<Disease> savedDiseases) {
+        reset(seed);
+        diseases.clear();
+        diseases.addAll(savedDiseases);
+        findInfected();
+    }
+
+    /**
+     * Reach the organisms through another engine from now on, once it took them over. The
+     * infected ones are found again from the states in the field.
+     *
+     * @param hosts the engine holding the organisms, null for the organism objects in the field
+     */
+    public void setHosts(EpidemicHosts hosts) {
+        this.hosts = hosts == null ? organismObjects : hosts;
+        findInfected();
+    }
+
+    /**
+     * Find the infected hosts again from the states in the field, looking only at the chunks
+     * holding organisms. Needed once the organisms were replaced by other objects, as those a
+     * DistributedWorker rebuilds from the rows its neighbours send.
+     */
+    public void findInfected() {
+        infected.clear();
+        field.forEachLiveChunk(chunk -> {
+            int bottom = Math.min(field.getChunkRow(chunk) + Field.CHUNK_SIZE, field.getDepth());
+            int right = Math.min(field.getChunkCol(chunk) + Field.CHUNK_SIZE, field.getWidth());
+            for (int row = field.getChunkRow(chunk); row < bottom; row++) {
+                for (int col = field.getChunkCol(chunk); col < right; col++) {
+                    int cell = Field.pack(row, col);
+                    if (statusOf(field.getCellState(cell)) == INFECTED && hosts.hasHostAt(cell)) {
+                        infected.add(hosts.hostAt(cell));
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Forget every infection, the states in the field are expected to have been cleared already.
+     *
+     * @param seed the seed of the random numbers from now on
+     */
+    public void reset(long seed) {
+        this.seed = seed;
+        infected.clear();
+    }
+
+    /**
+     * Advance the epidemic by one step: spread the diseases, let the infected organisms recover
+     * and let a few organisms catch a disease out of nowhere.
+     *
+     * @param step the current step
+     * @param currentWeather the current weather
+     */
+    public void step(int step, Weather currentWeather) {
+        dropLostHosts();
+        for (EpidemicHosts.Host host : infected) {
+            spreadFrom(host, step, currentWeather);
+        }
+        recover();
+        infectExposed(step);
+        seedNewCases(step);
+    }
+
+    /**
+     * Infect an organism with a disease, unless it has already had one.
+     *
+     * @param organism the organism to infect, it must be in the field
+     * @param diseaseId the id of the disease
+     * @return true if the organism was infected
+     */
+    public boolean infect(Organism organism, int diseaseId) {
+        return infectAt(Field.pack(organism.getLocation().getRow(), organism.getLocation().getCol()), diseaseId);
+    }
+
+    /**
+     * Infect the organism holding a cell with a disease, unless it has already had one.
+     *
+     * @param cell the packed location of a cell holding an organism
+     * @param diseaseId the id of the disease
+     * @return true if the organism was infected
+     */
+    private boolean infectAt(int cell, int diseaseId) {
+        if (statusOf(field.getCellState(cell)) != SUSCEPTIBLE) {
+            return false;
+        }
+        field.setCellState(cell, stateOf(INFECTED, diseaseId, getDisease(diseaseId).getInfectionPeriod()));
+        infected.add(hosts.hostAt(cell));
+        return true;
+    }
+
+    /**
+     * A simple getter method to return the number of infected organisms
+     *
+     * @return the number of organisms that were infected at the end of the last step
+     */
+    public int getInfectedCount() {
+        return infected.size();
+    }
+
+    /**
+     * Return the status of an organism.
+     *
+     * @param organism the organism, it must be in the field
+     * @return SUSCEPTIBLE, INFECTED or RECOVERED
+     */
+    public int getStatus(Organism organism) {
+        Location location = organism.getLocation();
+        return statusOf(field.getCellState(Field.pack(location.getRow(), location.getCol())));
+    }
+
+    /**
+     * Drop the hosts that died, were eaten or recovered since the last step.
+     */
+    private void dropLostHosts() {
+        infected.removeIf(host -> {
+            int cell = hosts.cellOf(host);
+            return cell == Field.NO_LOCATION || statusOf(field.getCellState(cell)) != INFECTED;
+        });
+    }
+
+    /**
+     * Let an infected organism try to infect its neighbours.
+     *
+     * @param host the infected host
+     * @param step the current step
+     * @param currentWeather the current weather
+     */
+    private void spreadFrom(EpidemicHosts.Host host, int step, Weather currentWeather) {
+        int source = hosts.cellOf(host);
+        int row = Field.rowOf(source);
+        int col = Field.colOf(source);
+        int diseaseId = diseaseOf(field.getCellState(source));
+        Disease disease = getDisease(diseaseId);
+        if (random(step, source, OUTBREAK) >= disease.getOutbreakChance(currentWeather)) {
+            return;
+        }
+        for (int direction = 0; direction < Field.NEIGHBOURS; direction++) {
+            int target = field.neighbour(row, col, direction);
+            if (target == Field.NO_LOCATION || !hosts.hasHostAt(target)) {
+                continue;
+            }
+            int targetState = field.getCellState(target);
+            int status = statusOf(targetState);
+            // when two diseases reach the same organism the one with the lowest id wins, whoever comes first
+            boolean catches = status == SUSCEPTIBLE || (status == EXPOSED && diseaseOf(targetState) > diseaseId);
+            if (catches && random(step, target, SPREAD + direction) < disease.getSpreadRate()) {
+                if (status == SUSCEPTIBLE) {
+                    if (exposedCount == exposed.length) {
+                        exposed = Arrays.copyOf(exposed, exposedCount * 2);
+                    }
+                    exposed[exposedCount++] = target;
+                }
+                field.setCellState(target, stateOf(EXPOSED, diseaseId, disease.getInfectionPeriod()));
+            }
+        }
+    }
+
+    /**
+     * Count down the infections of the organisms that were infected at the start of the step.
+     */
+    private void recover() {
+        infected.removeIf(host -> {
+            int cell = hosts.cellOf(host);
+            int state = field.getCellState(cell);
+            int remaining = remainingOf(state) - 1;
+            if (remaining > 0) {
+                field.setCellState(cell, stateOf(INFECTED, diseaseOf(state), remaining));
+                return false;
+            }
+            field.setCellState(cell, stateOf(RECOVERED, diseaseOf(state), 0));
+            return true;
+        });
+    }
+
+    /**
+     * Turn the organisms infected during this step into infected hosts, some of them die of it.
+     *
+     * @param step the current step
+     */
+    private void infectExposed(int step) {
+        for (int index = 0; index < exposedCount; index++) {
+            int cell = exposed[index];
+            EpidemicHosts.Host host = hosts.hostAt(cell);
+            int state = field.getCellState(cell);
+            Disease disease = getDisease(diseaseOf(state));
+            field.setCellState(cell, stateOf(INFECTED, diseaseOf(state), remainingOf(state)));
+            if (random(step, cell, DEATH) < disease.getDeadliness()) {
+                hosts.kill(host);
+            }
+            // a plant that loses a level survives, still infected
+            if (hosts.cellOf(host) != Field.NO_LOCATION) {
+                infected.add(host);
+            }
+        }
+        exposedCount = 0;
+    }
+
+    /**
+     * Infect the organisms in a few random cells with a random disease.
+     *
+     * @param step the current step
+     */
+    private void seedNewCases(int step) {
+        if (diseases.isEmpty()) {
+            return;
+        }
+        // a large field has more cells than an int can count
+        long cells = (long) field.getDepth() * field.getWidth();
+        int newCases = (int) Math.max(1, cells / CELLS_PER_NEW_CASE);
+        for (int index = 0; index < newCases; index++) {
+            long cell = (long) (random(step, index, SEED_CELL) * cells);
+            int diseaseId = 1 + (int) (random(step, (int) cell, SEED_DISEASE) * diseases.size());
+            int packed = Field.pack((int) (cell / field.getWidth()), (int) (cell % field.getWidth()));
+            if (hosts.hasHostAt(packed)) {
+                infectAt(packed, diseaseId);
+            }
+        }
+    }
+
+    /**
+     * A random double for a given step, cell and purpose.
+     *
+     * @param step the current step
+     * @param cell the packed cell the number is drawn for
+     * @param salt what the number is drawn for
+     * @return a random double between 0 (inclusive) and 1 (exclusive)
+     */
+    private double random(int step, int cell, long salt) {
+        return RandomStream.keyedDouble(seed + salt, ((long) step << 32) | (cell & 0xFFFFFFFFL));
+    }
+
+    /**
+     * Build a cell state.
+     */
+    private static int stateOf(int status, int diseaseId, int remaining) {
+        return status | diseaseId << DISEASE_SHIFT | remaining << REMAINING_SHIFT;
+    }
+
+    /**
+     * @param state a cell state
+     * @return SUSCEPTIBLE, INFECTED or RECOVERED
+     */
+    public static int statusOf(int state) {
+        return state & STATUS_MASK;
+    }
+
+    /**
+     * @param state a cell state
+     * @return the id of the disease, 0 if there is none
+     */
+    public static int diseaseOf(int state) {
+        return (state >>> DISEASE_SHIFT) & DISEASE_MASK;
+    }
+
+    /**
+     * @param state a cell state
+     * @return the number of steps the organism stays infected
+     */
+    public static int remainingOf(int state) {
+        return state >>> REMAINING_SHIFT;
+    }
+
+    /**
+     * The organism objects in the field as hosts, each standing for itself.
+     */
+    private static final class OrganismHosts implements EpidemicHosts {
+        private final Field field;                              // The field holding the organisms
+
+        private OrganismHosts(Field field) {
+            this.field = field;
+        }
+
+        @Override
+        public boolean hasHostAt(int cell) {
+            return field.getObjectAtPacked(cell) instanceof Organism;
+        }
+
+        @Override
+        public Host hostAt(int cell) {
+            Object occupant = field.getObjectAtPacked(cell);
+            return occupant instanceof Organism ? (Organism) occupant : null;
+        }
+
+        @Override
+        public int cellOf(Host host) {
+            Organism organism = (Organism) host;
+            Location location = organism.getLocation();
+            if (!organism.getIsAlive() || location == null || field.getObjectAt(location) != organism) {
+                return Field.NO_LOCATION;
+            }
+            return Field.pack(location.getRow(), location.getCol());
+        }
+
+        @Override
+        public void kill(Host host) {
+            ((Organism) host).setDead();
+        }
+    }
+}
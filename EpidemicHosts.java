@@ -0,0 +1,52 @@
+/**
+ * The organisms an Epidemic spreads its diseases between, whichever engine holds them: the
+ * organism objects in the field, or the slots of an EntityStore. The epidemic keeps the state of
+ * every infection in the field, so all it needs from the engine is to tell which cells hold an
+ * organism, to follow an infected organism from one step to the next and to kill it.
+ *
+ * A host is known by an object standing for it, a Host: the organism itself, or a handle of the
+ * slot holding it. The object stands for the same organism as long as it lives and for none once
+ * it died, even if the engine reuses whatever held the organism.
+ *
+ * @author Syraj Alkhalil and Cosmo Colman
+ * @version 2022.02.27 (2)
+ */
+public interface EpidemicHosts {
+    /**
+     * An object standing for an organism, as handed out by hostAt.
+     */
+    interface Host {
+    }
+
+    /**
+     * Tell whether an organism holds a cell.
+     *
+     * @param cell the packed location of the cell
+     * @return true if an organism holds the cell
+     */
+    boolean hasHostAt(int cell);
+
+    /**
+     * Return the organism holding a cell.
+     *
+     * @param cell the packed location of the cell
+     * @return the object standing for the organism, null if no organism holds the cell
+     */
+    Host hostAt(int cell);
+
+    /**
+     * Return the cell an organism holds now, it may have moved since it was infected.
+     *
+     * @param host an object returned by hostAt
+     * @return the packed location of the cell, Field.NO_LOCATION if the organism died or no
+     * longer holds a cell
+     */
+    int cellOf(Host host);
+
+    /**
+     * Kill an organism as Entity.setDead does: a plant with a level left loses it and lives on.
+     *
+     * @param host an object returned by hostAt, for an organism holding its cell
+     */
+    void kill(Host host);
+}
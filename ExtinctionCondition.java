@@ -0,0 +1,60 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Stops a run once any species that was on the field dies out.
+ *
+ * An animal that is gone never comes back, so an animal species has died out as soon as its
+ * population is 0. Plants can be eaten down to nothing and grow back days later, so a plant
+ * species has only died out once it has been gone for a number of steps, and the run is then
+ * stopped at the step it was last seen gone from.
+ *
+ * @author Syraj Alkhalil and Cosmo Colman
+ * @version 2022.02.27 (2)
+ */
+public class ExtinctionCondition implements TerminationCondition {
+    private final int plantGrace;           // How many steps a plant species must be gone for
+    private int[] goneSince = new int[0];   // The step every species was last seen gone from, 0 while it is there, -1 before it was seen
+
+    /**
+     * Create a condition waiting a week for the plants to grow back.
+     */
+    public ExtinctionCondition() {
+        this(7 * Simulator.STEP_PER_DAY);
+    }
+
+    /**
+     * Create a condition.
+     *
+     * @param plantGrace how many steps a plant species must be gone for to have died out
+     */
+    public ExtinctionCondition(int plantGrace) {
+        this.plantGrace = Math.max(1, plantGrace);
+    }
+
+    @Override
+    public Termination check(Simulator simulator, int[] counts) {
+        if (goneSince.length != counts.length) {
+            // the species changed, start over
+            goneSince = new int[counts.length];
+            Arrays.fill(goneSince, -1);
+        }
+        List<EntityStats> entities = simulator.getPossibleEntities();
+        int step = simulator.getStep();
+        for (int index = 0; index < counts.length; index++) {
+            if (counts[index] > 0) {
+                goneSince[index] = 0;
+            } else if (goneSince[index] == 0) {
+                goneSince[index] = step;
+            }
+            if (goneSince[index] > 0) {
+                boolean isPlant = entities.get(index).getEntityType() == EntityStats.EntityType.PLANT;
+                if (!isPlant || step - goneSince[index] + 1 >= plantGrace) {
+                    return new Termination(Termination.Reason.EXTINCTION, step, entities.get(index).getName()
+                            + " died out at step " + goneSince[index]);
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -1,19 +1,72 @@
-import java.util.Collections;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
+import java.util.function.IntConsumer;
 
 /**
  * Represent a rectangular grid of field positions.
  * Each position is able to store a single animal.
+ * The grid is cut into chunks of CHUNK_SIZE by CHUNK_SIZE cells. A chunk is a flat array of ints,
+ * each cell holding a handle into a side table of occupants (0 meaning the cell is empty), so
+ * scanning a chunk walks contiguous memory. The row of chunks is padded to a power of two so
+ * finding the chunk of a cell only takes shifts. A chunk is only allocated once something is placed in
+ * it and is freed again by releaseEmptyChunks() once it is empty, so a mostly empty field of any
+ * size up to 65535 by 65535 only costs memory for the chunks holding entities. The chunks holding
+ * entities can be visited with forEachLiveChunk().
+ * Every thread placing and clearing entities keeps a few free handles of its own and counts the
+ * cells its species gain and lose on its own, so the tiles of the parallel engine place and clear
+ * entities at the same time without taking turns. The lock of the field is only taken when a
+ * thread runs out of free handles, or has too many, and hands them over in batches. The side
+ * table is kept in pages that are never copied once made, so a thread writing to its page while
+ * another one adds a page loses nothing.
+ * Observers such as the renderer can ask for a ChangeTracker, which is told about every cell
+ * that is emptied or given a new occupant.
+ * The number of cells held by every species is kept up to date as entities are placed and
+ * cleared, so reading the population never needs a scan of the field.
+ * What lies beyond the edges is set by a Topology. The neighbour of every row and of every column
+ * in every direction is worked out once, so finding a neighbour is two table lookups and no
+ * bounds check whatever the topology.
+ * Behind the handles every chunk holds an int of state for each of its cells, used by the epidemic. The state follows
+ * its occupant when it moves and goes back to 0 whenever the cell is emptied or taken over.
  *
  * @author David J. Barnes and Michael Kölling, Syraj Alkhalil and Cosmo Colman
  * @version 2022.02.27 (2)
  */
 public class Field {
-    private static final Random rand = Randomizer.getRandom();      // A random number generator for providing random locations.
+    public static final int NEIGHBOURS = 8;                         // The number of cells around a cell.
+    public static final int NO_LOCATION = -1;                       // Returned when there is no such packed location.
+    public static final int CHUNK_BITS = 6;                         // The log2 of the side of a chunk.
+    public static final int CHUNK_SIZE = 1 << CHUNK_BITS;           // The number of rows and columns of a chunk.
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;           // Masks the row or column within a chunk.
+    private static final int CHUNK_CELLS = CHUNK_SIZE * CHUNK_SIZE; // The number of cells of a chunk, where its states start.
+    private static final int NEIGHBOUR_ORDER_COUNT = 4096;          // The number of precomputed neighbour orders.
+    private static final int[] ROW_OFFSETS = {-1, -1, -1, 0, 0, 1, 1, 1};   // Row offset of each direction.
+    private static final int[] COL_OFFSETS = {-1, 0, 1, -1, 1, -1, 0, 1};   // Column offset of each direction.
+    private static final int[][] NEIGHBOUR_ORDERS = buildNeighbourOrders(); // Random permutations of the directions.
+    private static final int PAGE_BITS = 12;                        // The log2 of the number of handles of a page of the side table.
+    private static final int PAGE_MASK = (1 << PAGE_BITS) - 1;      // Masks the handle within its page.
+    private static final int HANDLE_BATCH = 64;                     // The number of handles a thread takes from or gives back to the field at once.
+
     private final int depth, width;                                 // The depth and width of the field.
-    private final Object[][] field;                                 // Storage for the animals.
+    private Topology topology;                                      // What lies beyond the edges of the field.
+    private boolean dropOffFieldPlants;                             // Whether a plant that lost its cell leaves the simulation at its next turn.
+    private int[] rowSteps;                                         // The row of every neighbour shifted into a packed location, by direction * depth + row, -1 off the field.
+    private int[] colSteps;                                         // The column of every neighbour, by direction * width + col, -1 off the field.
+    private final int chunkColBits;                                 // The log2 of the padded number of chunks across the field.
+    private final int[][] chunks;                                   // By chunk, the handle of the occupant of each cell then its state, null for an empty chunk.
+    private int[] liveChunks = new int[16];                         // The index of every allocated chunk, in the order they were allocated.
+    private int liveCount;                                          // The number of chunks in liveChunks.
+    private Entity[][] occupants;                                   // Side table of the occupants indexed by their handle, by page.
+    private int[][] references;                                     // The number of cells referencing each handle, by page.
+    private int[] freeHandles;                                      // Handles that have been released and can be reused, under the lock.
+    private int freeCount;                                          // The number of handles in freeHandles.
+    private int nextHandle = 1;                                     // The next never used handle, 0 is reserved for empty.
+    private final ThreadLocal<HandleCache> caches = ThreadLocal.withInitial(this::newCache); // The handles and counts of the current thread.
+    private HandleCache[] allCaches = new HandleCache[0];           // The cache of every thread that used the field, under the lock.
+    private HandleCache firstCache;                                 // The cache of the first thread that used the field, found without the ThreadLocal.
+    private volatile ChangeTracker[] trackers = new ChangeTracker[0];   // Told about every cell that changes occupant.
+    private final StepProfiler profiler = new StepProfiler();      // Measures the steps of the simulation on this field.
 
 
     /**
@@ -22,20 +75,50 @@ public class Field {
      * @param width The width of the field.
      */
     public Field(int depth, int width) {
+        if(depth >= 1 << 16 || width >= 1 << 16) {
+            // the last cell of a 65536 by 65536 field would pack into NO_LOCATION
+            throw new IllegalArgumentException("A field is at most 65535 by 65535, not " + depth + " by " + width);
+        }
         this.depth = depth;
         this.width = width;
-        field = new Object[depth][width];
+        int chunkRows = (depth + CHUNK_MASK) >> CHUNK_BITS;
+        int chunkCols = (width + CHUNK_MASK) >> CHUNK_BITS;
+        chunkColBits = 32 - Integer.numberOfLeadingZeros(Math.max(chunkCols - 1, 0));
+        chunks = new int[chunkRows << chunkColBits][];
+        setTopology(Topology.BOUNDED);
+        occupants = new Entity[][] {new Entity[1 << PAGE_BITS]};
+        references = new int[][] {new int[1 << PAGE_BITS]};
+        freeHandles = new int[64];
     }
 
     /**
      * Empty the field.
      */
     public void clear() {
-        for(int row = 0; row < depth; row++) {
-            for(int col = 0; col < width; col++) {
-                field[row][col] = null;
+        for(Entity[] page : occupants) {
+            for(Entity occupant : page) {
+                if(occupant != null) {
+                    occupant.setFieldHandle(0);
+                }
             }
         }
+        for(int live = 0; live < liveCount; live++) {
+            int chunk = liveChunks[live];
+            chunks[chunk] = null;
+        }
+        liveCount = 0;
+        for(int page = 0; page < occupants.length; page++) {
+            Arrays.fill(occupants[page], null);
+            Arrays.fill(references[page], 0);
+        }
+        for(HandleCache cache : allCaches) {
+            cache.clear();
+        }
+        for(ChangeTracker tracker : trackers) {
+            tracker.markAll();
+        }
+        freeCount = 0;
+        nextHandle = 1;
     }
 
     /**
@@ -43,13 +126,19 @@ public class Field {
      * @param entity the object to remove.
      */
     public void removeAllObjectsOf(EntityStats entity) {
-        for(int row = 0; row < depth; row++) {
-            for(int col = 0; col < width; col++) {
-                if((field[row][col] != null) && ((Entity)field[row][col]).getStats().equals(entity)){
-                    field[row][col] = null;
+        if(getPopulation(entity) == 0) {
+            // nothing to look for, e.g. the simulator already removed the species
+            return;
+        }
+        forEachLiveChunk(chunk -> {
+            int[] cells = chunks[chunk];
+            for(int offset = 0; offset < CHUNK_CELLS; offset++) {
+                int handle = cells[offset];
+                if(handle != 0 && occupant(handle).getStats().equals(entity)){
+                    setCell(rowIn(chunk, offset), colIn(chunk, offset), 0);
                 }
             }
-        }
+        });
     }
 
     /**
@@ -57,7 +146,24 @@ public class Field {
      * @param location The location to clear.
      */
     public void clear(Location location) {
-        field[location.getRow()][location.getCol()] = null;
+        setCell(location.getRow(), location.getCol(), 0);
+    }
+
+    /**
+     * Clear a packed location.
+     * @param packed A location packed with pack(), it must lie within the field.
+     */
+    public void clearPacked(int packed) {
+        setCell(rowOf(packed), colOf(packed), 0);
+    }
+
+    /**
+     * Place an entity at a packed location, whatever was there is lost as with place().
+     * @param entity The entity to be placed.
+     * @param packed A location packed with pack(), it must lie within the field.
+     */
+    public void placePacked(Entity entity, int packed) {
+        setCell(rowOf(packed), colOf(packed), acquireHandle(entity));
     }
 
     /**
@@ -68,7 +174,7 @@ public class Field {
      * @param row Row coordinate of the location.
      * @param col Column coordinate of the location.
      */
-    public void place(Object animal, int row, int col) {
+    public void place(Entity animal, int row, int col) {
         place(animal, new Location(row, col));
     }
 
@@ -79,8 +185,81 @@ public class Field {
      * @param animal The animal to be placed.
      * @param location Where to place the animal.
      */
-    public void place(Object animal, Location location) {
-        field[location.getRow()][location.getCol()] = animal;
+    public void place(Entity animal, Location location) {
+        setCell(location.getRow(), location.getCol(), acquireHandle(animal));
+    }
+
+    /**
+     * Move an entity from one location to another, taking the state of its cell with it.
+     * Whatever was at the new location is lost, as with place().
+     * @param entity The entity being moved.
+     * @param from Where the entity is now, null if it is not in the field yet.
+     * @param to Where the entity goes, it may be the same as from.
+     */
+    public void move(Entity entity, Location from, Location to) {
+        int state = 0;
+        if(from != null) {
+            int[] cells = chunks[chunkOf(from.getRow(), from.getCol())];
+            int fromOffset = offsetOf(from.getRow(), from.getCol());
+            if(cells != null && occupant(cells[fromOffset]) == entity) {
+                state = cells[CHUNK_CELLS + fromOffset];
+            }
+            setCell(from.getRow(), from.getCol(), 0);
+        }
+        setCell(to.getRow(), to.getCol(), acquireHandle(entity));
+        chunks[chunkOf(to.getRow(), to.getCol())][CHUNK_CELLS + offsetOf(to.getRow(), to.getCol())] = state;
+    }
+
+    /**
+     * Return the state of the occupant of a cell.
+     * @param packed A location packed with pack(), it must lie within the field.
+     * @return The state of the cell, 0 if it was never set or the cell is empty.
+     */
+    public int getCellState(int packed) {
+        int[] cells = chunks[chunkOf(rowOf(packed), colOf(packed))];
+        return cells == null ? 0 : cells[CHUNK_CELLS + offsetOf(rowOf(packed), colOf(packed))];
+    }
+
+    /**
+     * Set the state of the occupant of a cell, it is kept until the occupant moves away or dies.
+     * An empty cell has no state, so setting it is ignored.
+     * @param packed A location packed with pack(), it must lie within the field.
+     * @param state The new state.
+     */
+    public void setCellState(int packed, int state) {
+        int offset = offsetOf(rowOf(packed), colOf(packed));
+        int[] cells = chunks[chunkOf(rowOf(packed), colOf(packed))];
+        if(cells != null && cells[offset] != 0) {
+            cells[CHUNK_CELLS + offset] = state;
+        }
+    }
+
+    /**
+     * Start tracking the cells that change occupant. Every caller gets a tracker of its own
+     * that starts with every cell marked as changed.
+     * @return The new tracker.
+     */
+    public synchronized ChangeTracker trackChanges() {
+        ChangeTracker tracker = new ChangeTracker(depth, width);
+        ChangeTracker[] more = Arrays.copyOf(trackers, trackers.length + 1);
+        more[trackers.length] = tracker;
+        trackers = more;
+        return tracker;
+    }
+
+    /**
+     * Stop telling a tracker about changes.
+     * @param tracker A tracker returned by trackChanges().
+     */
+    public synchronized void stopTracking(ChangeTracker tracker) {
+        ChangeTracker[] fewer = new ChangeTracker[trackers.length];
+        int count = 0;
+        for(ChangeTracker other : trackers) {
+            if(other != tracker) {
+                fewer[count++] = other;
+            }
+        }
+        trackers = Arrays.copyOf(fewer, count);
     }
 
     /**
@@ -99,52 +278,525 @@ public class Field {
      * @return The animal at the given location, or null if there is none.
      */
     public Object getObjectAt(int row, int col) {
-        if (row > depth - 1 || col > width - 1){
+        if (row > depth - 1 || col > width - 1 || row < 0 || col < 0){
             return null;
         }
-        return field[row][col];
+        int[] cells = chunks[chunkOf(row, col)];
+        return cells == null ? null : occupant(cells[offsetOf(row, col)]);
+    }
+
+    /**
+     * Store a handle in a cell, releasing whatever handle was stored there before.
+     * The state of the cell is reset as it no longer belongs to the same occupant.
+     * The chunk of the cell is allocated if needed, an emptied chunk is kept until
+     * releaseEmptyChunks() is called, as another thread may be placing something in it.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @param handle The handle of the new occupant, 0 to empty the cell.
+     */
+    private void setCell(int row, int col, int handle) {
+        int chunk = chunkOf(row, col);
+        int[] cells = chunks[chunk];
+        if(cells == null) {
+            if(handle == 0) {
+                // already empty, only the trackers hear about it
+                markChanged(row, col);
+                return;
+            }
+            cells = allocateChunk(chunk);
+        }
+        int offset = offsetOf(row, col);
+        int previous = cells[offset];
+        cells[offset] = handle;
+        cells[CHUNK_CELLS + offset] = 0;
+        markChanged(row, col);
+        if(previous != 0) {
+            releaseHandle(previous);
+        }
+    }
+
+    /**
+     * Tell every tracker a cell changed.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     */
+    private void markChanged(int row, int col) {
+        for(ChangeTracker tracker : trackers) {
+            tracker.markChanged(row, col);
+        }
+    }
+
+    /**
+     * Allocate a chunk unless another thread just did.
+     * @param chunk The index of the chunk.
+     * @return The cells of the chunk.
+     */
+    private synchronized int[] allocateChunk(int chunk) {
+        if(chunks[chunk] == null) {
+            chunks[chunk] = new int[2 * CHUNK_CELLS];
+            if(liveCount == liveChunks.length) {
+                liveChunks = Arrays.copyOf(liveChunks, liveCount * 2);
+            }
+            liveChunks[liveCount++] = chunk;
+        }
+        return chunks[chunk];
+    }
+
+    /**
+     * Free the chunks that no longer hold anything. The simulator calls this between steps, when
+     * no other thread is placing entities. Chunks are not counted as they fill and empty, which
+     * would cost every move, instead every chunk is looked at up to its first occupied cell.
+     */
+    public synchronized void releaseEmptyChunks() {
+        int kept = 0;
+        for(int live = 0; live < liveCount; live++) {
+            int chunk = liveChunks[live];
+            if(isEmpty(chunks[chunk])) {
+                // every state of an empty cell is 0, nothing is lost
+                chunks[chunk] = null;
+            }
+            else {
+                liveChunks[kept++] = chunk;
+            }
+        }
+        liveCount = kept;
+    }
+
+    /**
+     * Return whether no cell of a chunk is occupied.
+     */
+    private static boolean isEmpty(int[] cells) {
+        for(int offset = 0; offset < CHUNK_CELLS; offset++) {
+            if(cells[offset] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Visit every allocated chunk, e.g. to scan only the parts of the field holding entities.
+     * A chunk may have been emptied since it was allocated, until releaseEmptyChunks() is called.
+     * @param visitor Called with the index of every allocated chunk, in the order they were allocated.
+     */
+    public void forEachLiveChunk(IntConsumer visitor) {
+        int[] chunks = Arrays.copyOf(liveChunks, liveCount);
+        for(int chunk : chunks) {
+            visitor.accept(chunk);
+        }
+    }
+
+    /**
+     * Return the number of allocated chunks.
+     * @return The number of chunks holding memory.
+     */
+    public int getLiveChunkCount() {
+        return liveCount;
+    }
+
+    /**
+     * Return the first row of a chunk.
+     * @param chunk The index of the chunk.
+     * @return The row of the top left cell of the chunk.
+     */
+    public int getChunkRow(int chunk) {
+        return (chunk >> chunkColBits) << CHUNK_BITS;
+    }
+
+    /**
+     * Return the first column of a chunk.
+     * @param chunk The index of the chunk.
+     * @return The column of the top left cell of the chunk.
+     */
+    public int getChunkCol(int chunk) {
+        return (chunk & ((1 << chunkColBits) - 1)) << CHUNK_BITS;
+    }
+
+    /**
+     * Return the index of the chunk holding a cell.
+     */
+    private int chunkOf(int row, int col) {
+        return ((row >> CHUNK_BITS) << chunkColBits) | (col >> CHUNK_BITS);
+    }
+
+    /**
+     * Return the index of a cell within its chunk.
+     */
+    private static int offsetOf(int row, int col) {
+        return ((row & CHUNK_MASK) << CHUNK_BITS) | (col & CHUNK_MASK);
+    }
+
+    /**
+     * Return the row of a cell of a chunk.
+     */
+    private int rowIn(int chunk, int offset) {
+        return getChunkRow(chunk) + (offset >> CHUNK_BITS);
+    }
+
+    /**
+     * Return the column of a cell of a chunk.
+     */
+    private int colIn(int chunk, int offset) {
+        return getChunkCol(chunk) + (offset & CHUNK_MASK);
+    }
+
+    /**
+     * Return the occupant of a handle.
+     * @param handle The handle, 0 for an empty cell.
+     * @return The occupant, null for handle 0.
+     */
+    private Entity occupant(int handle) {
+        return occupants[handle >>> PAGE_BITS][handle & PAGE_MASK];
+    }
+
+    /**
+     * Get the handle of an entity, taking one from the free handles of the current thread if it
+     * has none. Every call counts as one more cell referencing the entity.
+     * @param entity The entity being placed.
+     * @return The handle of the entity.
+     */
+    private int acquireHandle(Entity entity) {
+        HandleCache cache = cache();
+        int handle = entity.getFieldHandle();
+        if(handle == 0 || handle >>> PAGE_BITS >= occupants.length || occupant(handle) != entity) {
+            if(cache.freeCount == 0) {
+                takeHandles(cache);
+            }
+            handle = cache.freeHandles[--cache.freeCount];
+            occupants[handle >>> PAGE_BITS][handle & PAGE_MASK] = entity;
+            entity.setFieldHandle(handle);
+        }
+        references[handle >>> PAGE_BITS][handle & PAGE_MASK]++;
+        cache.countSpecies(entity.getStats(), 1);
+        return handle;
+    }
+
+    /**
+     * Drop one cell reference to a handle, giving the handle to the free handles of the current
+     * thread once no cell refers to it.
+     * @param handle The handle to release.
+     */
+    private void releaseHandle(int handle) {
+        HandleCache cache = cache();
+        Entity[] page = occupants[handle >>> PAGE_BITS];
+        int index = handle & PAGE_MASK;
+        cache.countSpecies(page[index].getStats(), -1);
+        if(--references[handle >>> PAGE_BITS][index] == 0) {
+            page[index].setFieldHandle(0);
+            page[index] = null;
+            if(cache.freeCount == cache.freeHandles.length) {
+                giveHandles(cache);
+            }
+            cache.freeHandles[cache.freeCount++] = handle;
+        }
+    }
+
+    /**
+     * Return the cache of the current thread. The thread stepping the simulation on its own is
+     * usually the first one to use the field, and finds its cache without a ThreadLocal lookup.
+     * @return The cache of the current thread.
+     */
+    private HandleCache cache() {
+        HandleCache cache = firstCache;
+        return cache != null && cache.owner == Thread.currentThread() ? cache : caches.get();
+    }
+
+    /**
+     * Move a batch of handles into the empty free handles of a thread, released ones first and
+     * never used ones after, adding pages to the side table as needed.
+     * @param cache The cache of the current thread.
+     */
+    private synchronized void takeHandles(HandleCache cache) {
+        while(cache.freeCount < HANDLE_BATCH && freeCount > 0) {
+            cache.freeHandles[cache.freeCount++] = freeHandles[--freeCount];
+        }
+        while(cache.freeCount < HANDLE_BATCH) {
+            int handle = nextHandle++;
+            if(handle >>> PAGE_BITS == occupants.length) {
+                // the pages themselves are shared, only the tables of pages are copied
+                occupants = Arrays.copyOf(occupants, occupants.length + 1);
+                occupants[occupants.length - 1] = new Entity[1 << PAGE_BITS];
+                references = Arrays.copyOf(references, references.length + 1);
+                references[references.length - 1] = new int[1 << PAGE_BITS];
+            }
+            cache.freeHandles[cache.freeCount++] = handle;
+        }
+    }
+
+    /**
+     * Move a batch of handles from the full free handles of a thread back to the field.
+     * @param cache The cache of the current thread.
+     */
+    private synchronized void giveHandles(HandleCache cache) {
+        if(freeCount + HANDLE_BATCH > freeHandles.length) {
+            freeHandles = Arrays.copyOf(freeHandles, Math.max(freeHandles.length * 2, freeCount + HANDLE_BATCH));
+        }
+        cache.freeCount -= HANDLE_BATCH;
+        System.arraycopy(cache.freeHandles, cache.freeCount, freeHandles, freeCount, HANDLE_BATCH);
+        freeCount += HANDLE_BATCH;
+    }
+
+    /**
+     * Make the cache of a thread that uses the field for the first time.
+     * @return The cache of the current thread.
+     */
+    private synchronized HandleCache newCache() {
+        HandleCache cache = new HandleCache(Thread.currentThread());
+        if(firstCache == null) {
+            firstCache = cache;
+        }
+        allCaches = Arrays.copyOf(allCaches, allCaches.length + 1);
+        allCaches[allCaches.length - 1] = cache;
+        return cache;
+    }
+
+    /**
+     * Return the number of cells held by a species.
+     * Like the rest of the field this should be read between steps.
+     * @param stats The stats of the species, or any clone of them.
+     * @return The number of cells the species holds.
+     */
+    public int getPopulation(EntityStats stats) {
+        int id = stats.getSpeciesId();
+        int total = 0;
+        for(HandleCache cache : allCaches) {
+            total += id < cache.speciesCounts.length ? cache.speciesCounts[id] : 0;
+        }
+        return total;
+    }
+
+    /**
+     * Return the number of cells held by all the species of a type.
+     * @param type The type of entity.
+     * @return The number of cells held by entities of that type.
+     */
+    public int getPopulation(EntityStats.EntityType type) {
+        int total = 0;
+        for(HandleCache cache : allCaches) {
+            for(int id = 0; id < cache.species.length; id++) {
+                if(cache.species[id] != null && cache.species[id].getEntityType() == type) {
+                    total += cache.speciesCounts[id];
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Return the number of occupied cells.
+     * @return The number of cells holding an entity.
+     */
+    public int getTotalPopulation() {
+        int total = 0;
+        for(HandleCache cache : allCaches) {
+            total += cache.totalCount;
+        }
+        return total;
+    }
+
+    /**
+     * Pack a row and column into a single int, the row in the top 16 bits and
+     * the column in the bottom 16 bits (the same layout as Location.hashCode).
+     * @param row The row.
+     * @param col The column.
+     * @return The packed location.
+     */
+    public static int pack(int row, int col) {
+        return (row << 16) | col;
+    }
+
+    /**
+     * @param packed A location packed with pack().
+     * @return The row of the packed location.
+     */
+    public static int rowOf(int packed) {
+        return packed >>> 16;
+    }
+
+    /**
+     * @param packed A location packed with pack().
+     * @return The column of the packed location.
+     */
+    public static int colOf(int packed) {
+        return packed & 0xFFFF;
+    }
+
+    /**
+     * Return the animal at a packed location, if any.
+     * @param packed A location packed with pack(), it must lie within the field.
+     * @return The animal at the given location, or null if there is none.
+     */
+    public Object getObjectAtPacked(int packed) {
+        int row = rowOf(packed);
+        int col = colOf(packed);
+        int[] cells = chunks[chunkOf(row, col)];
+        return cells == null ? null : occupant(cells[offsetOf(row, col)]);
+    }
+
+    /**
+     * Pick one of the precomputed orders in which to visit the neighbours of a cell.
+     * This replaces shuffling a list of neighbours, walk it like this:
+     * <pre>
+     *     for(int direction : field.randomNeighbourOrder(getRand())) {
+     *         int where = field.neighbour(row, col, direction);
+     *         if(where != Field.NO_LOCATION) { ... }
+     *     }
+     * </pre>
+     * The returned array is shared and must not be modified.
+     * @param rand The random stream of whoever is looking around.
+     * @return A random permutation of the NEIGHBOURS directions.
+     */
+    public int[] randomNeighbourOrder(RandomStream rand) {
+        return NEIGHBOUR_ORDERS[rand.nextInt(NEIGHBOUR_ORDERS.length)];
+    }
+
+    /**
+     * Return the neighbour of a cell in a given direction.
+     * A row or column off the field is -1 in its table, and -1 or'ed with anything is
+     * NO_LOCATION, so there is nothing to check.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @param direction One of the NEIGHBOURS directions, as handed out by randomNeighbourOrder().
+     * @return The packed location of the neighbour, or NO_LOCATION if it lies outside a bounded field.
+     */
+    public int neighbour(int row, int col, int direction) {
+        return rowSteps[direction * depth + row] | colSteps[direction * width + col];
+    }
+
+    /**
+     * Choose what lies beyond the edges of the field. This should be done between steps.
+     * @param topology The new topology.
+     */
+    public void setTopology(Topology topology) {
+        int[] rows = new int[NEIGHBOURS * depth];
+        int[] cols = new int[NEIGHBOURS * width];
+        for(int direction = 0; direction < NEIGHBOURS; direction++) {
+            for(int row = 0; row < depth; row++) {
+                int next = topology.wrap(row + ROW_OFFSETS[direction], depth);
+                rows[direction * depth + row] = next < 0 ? NO_LOCATION : pack(next, 0);
+            }
+            for(int col = 0; col < width; col++) {
+                int next = topology.wrap(col + COL_OFFSETS[direction], width);
+                cols[direction * width + col] = next < 0 ? NO_LOCATION : next;
+            }
+        }
+        this.rowSteps = rows;
+        this.colSteps = cols;
+        this.topology = topology;
+    }
+
+    /**
+     * Return what lies beyond the edges of the field.
+     * @return The topology of the field.
+     */
+    public Topology getTopology() {
+        return topology;
+    }
+
+    /**
+     * Choose whether a plant that lost its cell to another organism leaves the simulation at its
+     * next turn, instead of living on outside the field until it takes its cell back.
+     * @param dropOffFieldPlants true to take the plants outside the field out of the simulation.
+     */
+    public void setDropOffFieldPlants(boolean dropOffFieldPlants) {
+        this.dropOffFieldPlants = dropOffFieldPlants;
+    }
+
+    /**
+     * A simple getter method to return the dropOffFieldPlants field
+     * @return true if the plants outside the field leave the simulation.
+     */
+    public boolean getDropOffFieldPlants() {
+        return dropOffFieldPlants;
+    }
+
+    /**
+     * Try to find a free cell adjacent to the given one without allocating anything.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @param rand The random stream used to pick the neighbour.
+     * @return The packed location of a random free neighbour, or NO_LOCATION if there is none.
+     */
+    public int freeAdjacentCell(int row, int col, RandomStream rand) {
+        for(int direction : randomNeighbourOrder(rand)) {
+            int where = neighbour(row, col, direction);
+            if(where != NO_LOCATION && getObjectAtPacked(where) == null) {
+                return where;
+            }
+        }
+        return NO_LOCATION;
+    }
+
+    /**
+     * Build the table of neighbour orders, every entry being a shuffle of the directions.
+     * A fixed seed is used so the table is identical between runs.
+     * @return The table of neighbour orders.
+     */
+    private static int[][] buildNeighbourOrders() {
+        Random shuffler = new Random(NEIGHBOURS);
+        int[][] orders = new int[NEIGHBOUR_ORDER_COUNT][NEIGHBOURS];
+        for(int[] order : orders) {
+            for(int direction = 0; direction < NEIGHBOURS; direction++) {
+                order[direction] = direction;
+            }
+            for(int index = NEIGHBOURS - 1; index > 0; index--) {
+                int swap = shuffler.nextInt(index + 1);
+                int temp = order[index];
+                order[index] = order[swap];
+                order[swap] = temp;
+            }
+        }
+        return orders;
     }
 
     /**
      * Generate a random location that is adjacent to the
      * given location, or is the same location.
      * The returned location will be within the valid bounds
-     * of the field.
+     * of the field, across the edges if the topology allows.
      * @param location The location from which to generate an adjacency.
+     * @param rand The random stream used to pick the location.
      * @return A valid location within the grid area.
      */
-    public Location randomAdjacentLocation(Location location) {
-        List<Location> adjacent = adjacentLocations(location);
-        return adjacent.get(0);
+    public Location randomAdjacentLocation(Location location, RandomStream rand) {
+        for(int direction : randomNeighbourOrder(rand)) {
+            int where = neighbour(location.getRow(), location.getCol(), direction);
+            if(where != NO_LOCATION) {
+                return new Location(rowOf(where), colOf(where));
+            }
+        }
+        return location;
     }
 
     /**
      * Get a shuffled list of the free adjacent locations.
      * @param location Get locations adjacent to this.
+     * @param rand The random stream used to shuffle the list.
      * @return A list of free adjacent locations.
      */
-    public List<Location> getFreeAdjacentLocations(Location location) {
-        List<Location> free = new LinkedList<>();
-        List<Location> adjacent = adjacentLocations(location);
-        for(Location next : adjacent) {
-            if(getObjectAt(next) == null) {
-                free.add(next);
+    public List<Location> getFreeAdjacentLocations(Location location, RandomStream rand) {
+        List<Location> free = new ArrayList<>(NEIGHBOURS);
+        for(int direction : randomNeighbourOrder(rand)) {
+            int where = neighbour(location.getRow(), location.getCol(), direction);
+            if(where != NO_LOCATION && getObjectAtPacked(where) == null) {
+                free.add(new Location(rowOf(where), colOf(where)));
             }
         }
         return free;
     }
 
     /**
-     * Get a shuffled list of the free adjacent locations.
+     * Get a shuffled list of the occupied adjacent locations.
      * @param location Get locations adjacent to this.
-     * @return A list of free adjacent locations.
+     * @param rand The random stream used to shuffle the list.
+     * @return A list of occupied adjacent locations.
      */
-    public List<Location> getNotNullAdjacentLocations(Location location) {
-        List<Location> occupied = new LinkedList<>();
-        List<Location> adjacent = adjacentLocations(location);
-        for(Location next : adjacent) {
-            if(getObjectAt(next) != null) {
-                occupied.add(next);
+    public List<Location> getNotNullAdjacentLocations(Location location, RandomStream rand) {
+        List<Location> occupied = new ArrayList<>(NEIGHBOURS);
+        for(int direction : randomNeighbourOrder(rand)) {
+            int where = neighbour(location.getRow(), location.getCol(), direction);
+            if(where != NO_LOCATION && getObjectAtPacked(where) != null) {
+                occupied.add(new Location(rowOf(where), colOf(where)));
             }
         }
         return occupied;
@@ -156,13 +808,13 @@ public class Field {
      * The returned location will be within the valid bounds
      * of the field.
      * @param location The location from which to generate an adjacency.
+     * @param rand The random stream used to pick the location.
      * @return A valid location within the grid area.
      */
-    public Location freeAdjacentLocation(Location location) {
-        // The available free ones.
-        List<Location> free = getFreeAdjacentLocations(location);
-        if(free.size() > 0) {
-            return free.get(0);
+    public Location freeAdjacentLocation(Location location, RandomStream rand) {
+        int free = freeAdjacentCell(location.getRow(), location.getCol(), rand);
+        if(free != NO_LOCATION) {
+            return new Location(rowOf(free), colOf(free));
         }
         else {
             return null;
@@ -173,36 +825,36 @@ public class Field {
      * Return a shuffled list of locations adjacent to the given one.
      * The list will not include the location itself.
      * All locations will lie within the grid.
+     * The simulation itself walks neighbours with randomNeighbourOrder() and neighbour()
+     * instead, which allocate nothing.
      * @param location The location from which to generate adjacency.
+     * @param rand The random stream used to shuffle the list.
      * @return A list of locations adjacent to that given.
      */
-    public List<Location> adjacentLocations(Location location) {
+    public List<Location> adjacentLocations(Location location, RandomStream rand) {
         assert location != null : "Null location passed to adjacentLocations";
         // The list of locations to be returned.
-        List<Location> locations = new LinkedList<>();
+        List<Location> locations = new ArrayList<>(NEIGHBOURS);
         if(location != null) {
-            int row = location.getRow();
-            int col = location.getCol();
-            for(int rOffset = -1; rOffset <= 1; rOffset++) {
-                int nextRow = row + rOffset;
-                if(nextRow >= 0 && nextRow < depth) {
-                    for(int cOffset = -1; cOffset <= 1; cOffset++) {
-                        int nextCol = col + cOffset;
-                        // Exclude invalid locations and the original location.
-                        if(nextCol >= 0 && nextCol < width && (rOffset != 0 || cOffset != 0)) {
-                            locations.add(new Location(nextRow, nextCol));
-                        }
-                    }
+            for(int direction : randomNeighbourOrder(rand)) {
+                int where = neighbour(location.getRow(), location.getCol(), direction);
+                if(where != NO_LOCATION) {
+                    locations.add(new Location(rowOf(where), colOf(where)));
                 }
             }
-
-            // Shuffle the list. Several other methods rely on the list
-            // being in a random order.
-            Collections.shuffle(locations, rand);
         }
         return locations;
     }
 
+    /**
+     * Return the profiler of the simulation on this field, which the entities on the field
+     * report the time of their phases to.
+     * @return The profiler, off unless switched on.
+     */
+    public StepProfiler getProfiler() {
+        return profiler;
+    }
+
     /**
      * Return the depth of the field.
      * @return The depth of the field.
@@ -218,4 +870,53 @@ public class Field {
     public int getWidth() {
         return width;
     }
+
+    /**
+     * What one thread placing and clearing entities keeps to itself: a few free handles, and the
+     * number of cells every species gained and lost through that thread. A species may lose more
+     * cells through one thread than it gained through it, only the sum over the threads is its
+     * population.
+     */
+    private static final class HandleCache {
+        private final Thread owner;                                     // The thread the cache belongs to.
+        private final int[] freeHandles = new int[2 * HANDLE_BATCH];    // Handles the thread can hand out without the lock.
+        private int freeCount;                                          // The number of handles in freeHandles.
+        private int[] speciesCounts = new int[8];                       // The cells gained less the cells lost by each species, by species id.
+        private EntityStats[] species = new EntityStats[8];             // The stats last seen for each species id.
+        private int totalCount;                                         // The cells gained less the cells lost by all species.
+
+        /**
+         * Create the cache of a thread.
+         * @param owner The thread the cache belongs to.
+         */
+        private HandleCache(Thread owner) {
+            this.owner = owner;
+        }
+
+        /**
+         * Add to the number of cells held by a species.
+         * @param stats The stats of the species.
+         * @param change The number of cells gained, negative when cells are lost.
+         */
+        private void countSpecies(EntityStats stats, int change) {
+            int id = stats.getSpeciesId();
+            if(id >= speciesCounts.length) {
+                int length = Math.max(id + 1, speciesCounts.length * 2);
+                speciesCounts = Arrays.copyOf(speciesCounts, length);
+                species = Arrays.copyOf(species, length);
+            }
+            species[id] = stats;
+            speciesCounts[id] += change;
+            totalCount += change;
+        }
+
+        /**
+         * Forget the handles and the counts, when the field is emptied.
+         */
+        private void clear() {
+            freeCount = 0;
+            Arrays.fill(speciesCounts, 0);
+            totalCount = 0;
+        }
+    }
 }
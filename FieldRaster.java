@@ -0,0 +1,183 @@
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An image of a field with one pixel per cell, coloured like the entity in the cell.
+ * The pixels are written straight into the int array behind the image and only the cells the
+ * field reports as changed are redrawn, so keeping the image up to date costs next to nothing
+ * when little moves. The view then draws the image scaled up in one go.
+ * A field larger than MAX_IMAGE_SIZE down or across is drawn scaled down: every pixel stands for
+ * a square of cells and shows the cell at its top left corner. The image never grows beyond
+ * MAX_IMAGE_SIZE by MAX_IMAGE_SIZE, and redrawing all of it only visits the chunks of the field
+ * holding entities, so the memory and the time the raster takes do not grow with the area of
+ * the field.
+ * This class does not touch Swing, so it can be used by a headless run too.
+ *
+ * @author Syraj Alkhalil and Cosmo Colman
+ * @version 2022.02.27 (2)
+ */
+public class FieldRaster {
+    public static final int MAX_IMAGE_SIZE = 1024;  // The most pixels down or across the image
+
+    private final Field field;                      // The field being drawn
+    private final ChangeTracker changes;            // The cells that changed since the last update
+    private final int scale;                        // The number of cells down and across a pixel stands for
+    private final BufferedImage image;              // The image, one pixel per scale by scale cells
+    private final int[] pixels;                     // The pixels of the image, row * image width + col
+    private final int emptyColour;                  // The colour of an empty cell, as an RGB int
+    private int[] speciesColours = new int[0];      // The colour each species was drawn with, by species id
+
+    /**
+     * Create a raster of a field.
+     *
+     * @param field the field to draw
+     * @param emptyColour the colour of empty cells
+     */
+    public FieldRaster(Field field, Color emptyColour) {
+        this.field = field;
+        this.changes = field.trackChanges();
+        int longestSide = Math.max(field.getDepth(), field.getWidth());
+        this.scale = (longestSide + MAX_IMAGE_SIZE - 1) / MAX_IMAGE_SIZE;
+        this.image = new BufferedImage((field.getWidth() + scale - 1) / scale, (field.getDepth() + scale - 1) / scale,
+                BufferedImage.TYPE_INT_RGB);
+        this.pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        this.emptyColour = emptyColour.getRGB();
+    }
+
+    /**
+     * Bring the image up to date with the field. If the colour of a species changed or the whole
+     * field did, e.g. it was cleared, every pixel is redrawn, otherwise only the pixels of the
+     * cells that changed occupant.
+     *
+     * @param species the species that may be on the field, with their current colours
+     */
+    public void update(List<EntityStats> species) {
+        boolean coloursChanged = coloursChanged(species);
+        if (coloursChanged || changes.isAllChanged()) {
+            changes.clear();
+            drawAll();
+        } else {
+            changes.drain(this::drawCell);
+        }
+    }
+
+    /**
+     * Redraw every pixel, visiting only the chunks of the field holding entities.
+     */
+    private void drawAll() {
+        Arrays.fill(pixels, emptyColour);
+        field.forEachLiveChunk(chunk -> {
+            int top = field.getChunkRow(chunk);
+            int left = field.getChunkCol(chunk);
+            int bottom = Math.min(top + Field.CHUNK_SIZE, field.getDepth());
+            int right = Math.min(left + Field.CHUNK_SIZE, field.getWidth());
+            // the first row and column of the chunk a pixel shows
+            for (int row = (top + scale - 1) / scale * scale; row < bottom; row += scale) {
+                for (int col = (left + scale - 1) / scale * scale; col < right; col += scale) {
+                    drawPixel(row, col);
+                }
+            }
+        });
+    }
+
+    /**
+     * Colour the pixel of a cell after its occupant, unless the pixel shows another cell.
+     *
+     * @param cell the index of the cell, row * width + col
+     */
+    private void drawCell(long cell) {
+        int row = (int) (cell / field.getWidth());
+        int col = (int) (cell % field.getWidth());
+        if (row % scale == 0 && col % scale == 0) {
+            drawPixel(row, col);
+        }
+    }
+
+    /**
+     * Colour a pixel after the occupant of the cell it shows.
+     *
+     * @param row the row of the cell, a multiple of the scale
+     * @param col the column of the cell, a multiple of the scale
+     */
+    private void drawPixel(int row, int col) {
+        Entity occupant = (Entity) field.getObjectAt(row, col);
+        pixels[row / scale * image.getWidth() + col / scale] = occupant == null ? emptyColour : rgbOf(occupant.getStats().getColor());
+    }
+
+    /**
+     * Check the colours of the species against the ones they were drawn with, and remember the new ones.
+     *
+     * @param species the species that may be on the field
+     * @return true if a colour changed since the last update
+     */
+    private boolean coloursChanged(List<EntityStats> species) {
+        boolean changed = false;
+        for (EntityStats stats : species) {
+            int id = stats.getSpeciesId();
+            if (id >= speciesColours.length) {
+                speciesColours = Arrays.copyOf(speciesColours, id + 1);
+            }
+            int colour = rgbOf(stats.getColor());
+            if (speciesColours[id] != colour) {
+                speciesColours[id] = colour;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @param colour a colour, possibly not chosen yet
+     * @return the colour as an RGB int, the empty colour if there is none
+     */
+    private int rgbOf(Color colour) {
+        return colour == null ? emptyColour : colour.getRGB();
+    }
+
+    /**
+     * A simple getter method to return the image field
+     *
+     * @return the image, one pixel per scale by scale cells
+     */
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    /**
+     * A simple getter method to return the scale field
+     *
+     * @return the number of cells down and across a pixel stands for, 1 unless the field is large
+     */
+    public int getScale() {
+        return scale;
+    }
+
+    /**
+     * Create an empty image the size of the raster, to copy it into.
+     *
+     * @return the new image
+     */
+    public BufferedImage createCompatibleImage() {
+        return new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+    }
+
+    /**
+     * Copy the pixels of the raster into another image.
+     *
+     * @param target an image made by createCompatibleImage()
+     */
+    public void copyTo(BufferedImage target) {
+        int[] targetPixels = ((DataBufferInt) target.getRaster().getDataBuffer()).getData();
+        System.arraycopy(pixels, 0, targetPixels, 0, pixels.length);
+    }
+
+    /**
+     * Stop following the changes of the field, once the raster is no longer needed.
+     */
+    public void dispose() {
+        field.stopTracking(changes);
+    }
+}
@@ -1,25 +1,28 @@
-import java.util.HashMap;
+import java.util.List;
 
 /**
  * This class collects and provides some statistical data on the state 
- * of a field. It is flexible: it will create and maintain a counter 
- * for any class of object that is found within the field.
+ * of a field. It keeps a counter for every type of entity (predators, prey
+ * and plants), filled from the populations the field keeps up to date, so
+ * reading the statistics costs one step per species rather than a scan of the field.
  * 
  * @author David J. Barnes, Michael Kölling, Syraj Alkhalil and Cosmo Colman
  * @version 2022.02.27 (2)
  */
 public class FieldStats {
-    private final HashMap<Class, Counter> counters;   // Counters for each type of entity (fox, rabbit, etc.) in the simulation.
-    private boolean countsValid;                      // Whether the counters are currently up-to-date.
+    private static final EntityStats.EntityType[] TYPES = {EntityStats.EntityType.PREDATOR, EntityStats.EntityType.PREY, EntityStats.EntityType.PLANT};
+    private final Counter[] counters;                 // Counters for each type of entity (predator, prey, plant) in the simulation.
 
     /**
      * Construct a FieldStats object.
      */
     public FieldStats() {
-        // Set up a collection for counters for each type of animal that
-        // we might find
-        counters = new HashMap<>();
-        countsValid = true;
+        // Set up a counter for each type of entity we might find
+        counters = new Counter[TYPES.length];
+        for(int index = 0; index < TYPES.length; index++) {
+            String name = TYPES[index].name();
+            counters[index] = new Counter(name.charAt(0) + name.substring(1).toLowerCase());
+        }
     }
 
     /**
@@ -29,19 +32,33 @@ public class FieldStats {
      * @return A string describing what is in the field.
      */
     public String getPopulationDetails(Field field) {
-        StringBuffer buffer = new StringBuffer();
-        if(!countsValid) {
-            generateCounts(field);
+        StringBuilder buffer = new StringBuilder();
+        generateCounts(field);
+        for(Counter info : counters) {
+            buffer.append(info.getName());
+            buffer.append(": ");
+            buffer.append(info.getCount());
+            buffer.append("    ");
         }
-        for(Class key : counters.keySet()) {
-            Counter info = counters.get(key);
+        return buffer.toString();
+    }
+
+    /**
+     * Get details of the given populations, for when the field is not at hand, e.g. when it is
+     * shared out between the processes of a distributed run.
+     *
+     * @param species the species counted
+     * @param counts the number of each species on the field, in the same order
+     * @return A string describing what is in the field.
+     */
+    public String getPopulationDetails(List<EntityStats> species, int[] counts) {
+        StringBuilder buffer = new StringBuilder();
+        generateCounts(species, counts);
+        for(Counter info : counters) {
             buffer.append(info.getName());
             buffer.append(": ");
             buffer.append(info.getCount());
-            buffer.append(' ');
-            buffer.append(' ');
-            buffer.append(' ');
-            buffer.append(' ');
+            buffer.append("    ");
         }
         return buffer.toString();
     }
@@ -51,64 +68,28 @@ public class FieldStats {
      * @return The total amount of entities.
      */
     public int getTotalCount(Field field) {
-        int total = 0;
-        if(!countsValid) {
-            generateCounts(field);
-        }
-        for(Class key : counters.keySet()) {
-            Counter info = counters.get(key);
-            total += info.getCount();
-        }
-        return total;
+        return field.getTotalPopulation();
     }
 
     /**
-     * Invalidate the current set of statistics; reset all 
-     * counts to zero.
+     * Reset all counts to zero.
      */
     public void reset() {
-        countsValid = false;
-        for(Class key : counters.keySet()) {
-            Counter count = counters.get(key);
+        for(Counter count : counters) {
             count.reset();
         }
     }
 
-    /**
-     * Increment the count for one class of animal.
-     * @param animalClass The class of animal to increment.
-     */
-    public void incrementCount(Class animalClass) {
-        Counter count = counters.get(animalClass);
-        if(count == null) {
-            // We do not have a counter for this species yet.
-            // Create one.
-            count = new Counter(animalClass.getName());
-            counters.put(animalClass, count);
-        }
-        count.increment();
-    }
-
-    /**
-     * Indicate that an animal count has been completed.
-     */
-    public void countFinished() {
-        countsValid = true;
-    }
-
     /**
      * Determine whether the simulation is still viable.
      * I.e., should it continue to run.
-     * @return true If there is more than one species alive.
+     * @return true If there is more than one type of entity alive.
      */
     public boolean isViable(Field field) {
         // How many counts are non-zero.
         int nonZero = 0;
-        if(!countsValid) {
-            generateCounts(field);
-        }
-        for(Class key : counters.keySet()) {
-            Counter info = counters.get(key);
+        generateCounts(field);
+        for(Counter info : counters) {
             if(info.getCount() > 0) {
                 nonZero++;
             }
@@ -117,23 +98,52 @@ public class FieldStats {
     }
     
     /**
-     * Generate counts of the number of foxes and rabbits.
-     * These are not kept up to date as foxes and rabbits
-     * are placed in the field, but only when a request
-     * is made for the information.
+     * Determine whether the given populations are still viable.
+     *
+     * @param species the species counted
+     * @param counts the number of each species on the field, in the same order
+     * @return true If there is more than one type of entity alive.
+     */
+    public boolean isViable(List<EntityStats> species, int[] counts) {
+        int nonZero = 0;
+        generateCounts(species, counts);
+        for(Counter info : counters) {
+            if(info.getCount() > 0) {
+                nonZero++;
+            }
+        }
+        return nonZero > 1;
+    }
+
+    /**
+     * Copy the number of entities of every type from the field.
+     * The field keeps its populations up to date as entities are
+     * placed and cleared, so this does not scan the field.
      *
      * @param field The field to generate the stats for.
      */
     private void generateCounts(Field field) {
+        for(int index = 0; index < TYPES.length; index++) {
+            counters[index].reset();
+            counters[index].increment(field.getPopulation(TYPES[index]));
+        }
+    }
+
+    /**
+     * Add up the number of entities of every type from the populations of the species.
+     *
+     * @param species the species counted
+     * @param counts the number of each species, in the same order
+     */
+    private void generateCounts(List<EntityStats> species, int[] counts) {
         reset();
-        for(int row = 0; row < field.getDepth(); row++) {
-            for(int col = 0; col < field.getWidth(); col++) {
-                Object animal = field.getObjectAt(row, col);
-                if(animal != null) {
-                    incrementCount(animal.getClass());
+        for(int index = 0; index < counts.length; index++) {
+            EntityStats.EntityType type = species.get(index).getEntityType();
+            for(int typeIndex = 0; typeIndex < TYPES.length; typeIndex++) {
+                if(TYPES[typeIndex] == type) {
+                    counters[typeIndex].increment(counts[index]);
                 }
             }
         }
-        countsValid = true;
     }
 }
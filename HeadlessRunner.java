@@ -0,0 +1,292 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Runs the simulation without any window, for batch jobs.
+ * The run stops after a number of steps or once a wall-clock budget is used up, whichever comes
+ * first, or as soon as its outcome is settled if asked to, and prints the population of every
+ * entity as comma separated values every few steps.
+ *
+ * On the default 120 by 200 field a step takes milliseconds, not the fraction of one the runner
+ * was meant for. The cost of a step follows the organisms, not the cells. By default a plant that
+ * is eaten or displaced by another survives by losing a level and lives on outside the field,
+ * still growing and seeding, so with seed 7 about 42000 organisms act on 24000 cells by step 1000
+ * and 125000 by step 3000, and the first 1000 steps run at 0.45 steps/ms on one core, with the
+ * serial engine or the store. With --drop-off-field-plants those plants leave the simulation at
+ * their next turn instead: about 1100 organisms are left by step 1000, the first 1000 steps run
+ * at 0.77 steps/ms with the serial engine and 0.45 with the store, and the first 3000 at 1.00
+ * steps/ms. Most of that time goes to the 10000 animals of the first steps. The plants do not
+ * last long under that rule, so it changes the outcome of the simulation and is not the default.
+ * The summary at the end of a run gives the number of organisms as well.
+ *
+ * Usage: java -Djava.awt.headless=true HeadlessRunner [options]
+ *   --steps N       stop after N steps (default 1000)
+ *   --millis N      stop after N milliseconds of wall-clock time
+ *   --every N       print the population every N steps (default 1)
+ *   --size D W      the depth and width of the field (default 120 200)
+ *   --seed N        the seed of the run
+ *   --parallel N    use the parallel engine with an N by N tile grid
+ *   --topology T    bounded (default), toroidal or reflective edges, see Topology
+ *   --store         hold the organisms as arrays in an EntityStore, not with --parallel
+ *   --drop-off-field-plants  take the plants that lost their cell out of the simulation, see
+ *                   Simulator.setDropOffFieldPlants; not saved in a checkpoint
+ *   --resume FILE   continue from a checkpoint instead of a fresh field
+ *   --checkpoint FILE  save a checkpoint once the run is over
+ *   --record DIR    record every step into DIR, to be replayed with a StepLog
+ *   --profile       measure every step and print where the time went once the run is over
+ *   --metrics-port N  serve the metrics on http://127.0.0.1:N/metrics during the run
+ *   --stop-extinct  stop once any species dies out
+ *   --stop-not-viable  stop once fewer than two types of entity are left
+ *   --stop-steady N stop once the populations have not changed for N steps
+ *   --stop-cycle P  stop once the populations go round a cycle of at most P steps for a day or a full cycle
+ *
+ * @author Syraj Alkhalil and Cosmo Colman
+ * @version 2022.02.27 (2)
+ */
+public class HeadlessRunner {
+    private final Simulator simulator;          // The simulator being run
+    private final int reportEvery;              // How often the population is printed, in steps
+    private TerminationCondition termination;   // Stops the run once its outcome is settled, null to run every step
+    private Termination stopped;                // Why the last run stopped early, null if it did not
+
+    /**
+     * Create a headless runner around a fresh headless simulator.
+     *
+     * @param depth the depth of the field
+     * @param width the width of the field
+     * @param reportEvery how often the population is printed, in steps
+     */
+    public HeadlessRunner(int depth, int width, int reportEvery) {
+        this.simulator = new Simulator(depth, width, true);
+        this.reportEvery = Math.max(1, reportEvery);
+    }
+
+    /**
+     * A simple getter method to return the simulator being run
+     *
+     * @return the simulator
+     */
+    public Simulator getSimulator() {
+        return simulator;
+    }
+
+    /**
+     * A simple setter method to stop the run once a condition says so
+     *
+     * @param termination the condition, null to run every step
+     */
+    public void setTermination(TerminationCondition termination) {
+        this.termination = termination;
+    }
+
+    /**
+     * A simple getter method to return why the last run stopped early
+     *
+     * @return the termination, null if the run stopped at one of its limits
+     */
+    public Termination getStopped() {
+        return stopped;
+    }
+
+    /**
+     * Run the simulation until either limit is reached or the termination condition says so,
+     * printing the population on the way.
+     *
+     * @param maxSteps the number of steps to run
+     * @param maxMillis the wall-clock budget in milliseconds
+     * @return the number of steps run
+     */
+    public int run(int maxSteps, long maxMillis) {
+        printHeader();
+        printPopulation();
+        long start = System.nanoTime();
+        long budget = maxMillis * 1_000_000L;
+        int steps = 0;
+        stopped = null;
+        while (steps < maxSteps && stopped == null && System.nanoTime() - start < budget) {
+            simulator.simulateOneStep();
+            steps++;
+            if (termination != null) {
+                stopped = termination.check(simulator, simulator.countPopulation());
+            }
+            if (simulator.getStep() % reportEvery == 0 || stopped != null) {
+                printPopulation();
+            }
+        }
+        double millis = (System.nanoTime() - start) / 1_000_000.0;
+        System.err.printf("%d steps in %.1f ms (%.2f steps/ms), %d organisms%n", steps, millis,
+                steps / Math.max(millis, 0.001), simulator.getOrganismCount());
+        if (stopped != null) {
+            System.err.println("Stopped early: " + stopped);
+        }
+        return steps;
+    }
+
+    /**
+     * Print the names of the columns.
+     */
+    private void printHeader() {
+        StringBuilder line = new StringBuilder("step,day");
+        for (EntityStats entity : simulator.getPossibleEntities()) {
+            line.append(',').append(entity.getName());
+        }
+        line.append(",total");
+        System.out.println(line);
+    }
+
+    /**
+     * Print the population of every entity at the current step.
+     */
+    private void printPopulation() {
+        StringBuilder line = new StringBuilder();
+        line.append(simulator.getStep()).append(',').append(simulator.getDayCount());
+        int total = 0;
+        for (int count : simulator.countPopulation()) {
+            line.append(',').append(count);
+            total += count;
+        }
+        line.append(',').append(total);
+        System.out.println(line);
+    }
+
+    /**
+     * The main method of a headless run, see the class comment for the options.
+     *
+     * @param args the command line options
+     * @throws IOException if a checkpoint cannot be read or written or the recording cannot be created
+     */
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        int maxSteps = 1000;
+        long maxMillis = Long.MAX_VALUE / 1_000_000L;
+        int every = 1;
+        int depth = 120;
+        int width = 200;
+        int tiles = 0;
+        Path resume = null;
+        Path checkpoint = null;
+        Path record = null;
+        boolean profile = false;
+        boolean useStore = false;
+        Topology topology = Topology.BOUNDED;
+        Long seed = null;
+        boolean dropOffFieldPlants = false;
+        int metricsPort = -1;
+        List<TerminationCondition> conditions = new ArrayList<>();
+        List<String> options = List.of(args);
+        for (int index = 0; index < options.size(); index++) {
+            switch (options.get(index)) {
+                case "--steps":
+                    maxSteps = Integer.parseInt(options.get(++index));
+                    break;
+                case "--millis":
+                    maxMillis = Long.parseLong(options.get(++index));
+                    break;
+                case "--every":
+                    every = Integer.parseInt(options.get(++index));
+                    break;
+                case "--size":
+                    depth = Integer.parseInt(options.get(++index));
+                    width = Integer.parseInt(options.get(++index));
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(options.get(++index));
+                    break;
+                case "--parallel":
+                    tiles = Integer.parseInt(options.get(++index));
+                    break;
+                case "--topology":
+                    topology = Topology.valueOf(options.get(++index).toUpperCase(Locale.ROOT));
+                    break;
+                case "--store":
+                    useStore = true;
+                    break;
+                case "--drop-off-field-plants":
+                    dropOffFieldPlants = true;
+                    break;
+                case "--resume":
+                    resume = Paths.get(options.get(++index));
+                    break;
+                case "--checkpoint":
+                    checkpoint = Paths.get(options.get(++index));
+                    break;
+                case "--record":
+                    record = Paths.get(options.get(++index));
+                    break;
+                case "--profile":
+                    profile = true;
+                    break;
+                case "--metrics-port":
+                    metricsPort = Integer.parseInt(options.get(++index));
+                    break;
+                case "--stop-extinct":
+                    conditions.add(new ExtinctionCondition());
+                    break;
+                case "--stop-not-viable":
+                    conditions.add(new ViabilityCondition());
+                    break;
+                case "--stop-steady":
+                    conditions.add(new CycleCondition(1, Integer.parseInt(options.get(++index))));
+                    break;
+                case "--stop-cycle":
+                    int period = Integer.parseInt(options.get(++index));
+                    conditions.add(new CycleCondition(period, Math.max(period, Simulator.STEP_PER_DAY)));
+                    break;
+                default:
+                    System.err.println("Unknown option " + options.get(index));
+                    return;
+            }
+        }
+
+        if (tiles > 0 && useStore) {
+            System.err.println("--store steps on one thread and cannot be used with --parallel");
+            return;
+        }
+
+        HeadlessRunner runner = new HeadlessRunner(depth, width, every);
+        runner.getSimulator().setTopology(topology);
+        runner.getSimulator().setDropOffFieldPlants(dropOffFieldPlants);
+        if (!conditions.isEmpty()) {
+            runner.setTermination(TerminationCondition.anyOf(conditions.toArray(new TerminationCondition[0])));
+        }
+        if (seed != null) {
+            runner.getSimulator().getRandomizer().setSeed(seed);
+        }
+        if (tiles > 0) {
+            runner.getSimulator().useParallelEngine(tiles, tiles, Runtime.getRuntime().availableProcessors());
+        }
+        if (useStore) {
+            runner.getSimulator().useEntityStore();
+        }
+        if (resume != null) {
+            runner.getSimulator().restoreCheckpoint(resume);
+        } else {
+            // the simulator was populated with the default seed when it was created
+            runner.getSimulator().reset();
+        }
+        if (record != null) {
+            runner.getSimulator().startRecording(record);
+        }
+        if (profile) {
+            runner.getSimulator().getProfiler().setEnabled(true);
+        }
+        if (metricsPort >= 0) {
+            int port = runner.getSimulator().startMetrics(metricsPort);
+            System.err.println("Serving metrics on http://127.0.0.1:" + port + MetricsServer.PATH);
+        }
+        runner.run(maxSteps, maxMillis);
+        runner.getSimulator().stopRecording();
+        runner.getSimulator().stopMetrics();
+        if (runner.getSimulator().getProfiler().isEnabled()) {
+            System.err.print(runner.getSimulator().getProfiler().getSummary());
+        }
+        if (checkpoint != null) {
+            runner.getSimulator().saveCheckpoint(checkpoint);
+        }
+        runner.getSimulator().useSerialEngine();
+    }
+}
@@ -0,0 +1,300 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Serves the state of a running simulation on http://127.0.0.1:port/metrics in the Prometheus
+ * text exposition format, so long headless runs can be scraped.
+ *
+ * The simulation thread only ever publishes: after every step it writes the step's duration and
+ * end time into two rings of atomics and adds it to the running totals of the steps. Every few
+ * steps, and whenever the simulation is reset or restored, it also replaces a small immutable
+ * reading with the populations and the clock, so the populations served may be a few steps old
+ * but the steps do not allocate. The server answers scrapes on its own thread from whatever was
+ * last published, so a scrape, however slow, never holds up a step and a step never waits for a
+ * scrape.
+ *
+ * The step latency is served as a summary whose sum and count cover every step since the metrics
+ * were started, so rates can be taken from them, and the percentiles of the recent steps as a
+ * gauge of their own.
+ *
+ * @author Syraj Alkhalil and Cosmo Colman
+ * @version 2022.02.27 (2)
+ */
+public class MetricsServer {
+    public static final String PATH = "/metrics";                   // Where the metrics are served
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final int WINDOW = 1024;                         // The number of recent steps the rates and percentiles cover
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 1.0};
+    private static final int READING_EVERY = 16;                    // The number of steps between two readings
+
+    private final HttpServer server;                                // The JDK server answering the scrapes
+    private final ExecutorService executor;                         // The thread answering the scrapes
+    private final AtomicLongArray durations = new AtomicLongArray(WINDOW);  // The duration of the recent steps in ns, by step count % WINDOW
+    private final AtomicLongArray endTimes = new AtomicLongArray(WINDOW);   // The nanoTime at the end of the recent steps, by step count % WINDOW
+    private volatile Reading reading;                               // What the simulation published last, null before the first publish
+    private volatile long published;                                // The number of steps published, only written by the simulation thread
+    private volatile long publishedNanos;                           // The total duration of the steps published in ns, only written by the simulation thread
+
+    /**
+     * Start serving on the loopback interface.
+     *
+     * @param port the port to listen on, 0 to pick a free one
+     * @throws IOException if the port cannot be bound
+     */
+    public MetricsServer(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        executor = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "metrics-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext(PATH, this::handle);
+        server.start();
+    }
+
+    /**
+     * Publish the state of the simulation after a step, called on the simulation thread.
+     *
+     * @param simulator the simulation
+     * @param durationNanos how long the step took, -1 if it was not a step, e.g. after a reset
+     */
+    public void publish(Simulator simulator, long durationNanos) {
+        if (durationNanos >= 0) {
+            int slot = (int) (published % WINDOW);
+            durations.lazySet(slot, durationNanos);
+            endTimes.lazySet(slot, System.nanoTime());
+            publishedNanos += durationNanos;
+            published++;
+            if (reading != null && published % READING_EVERY != 0) {
+                return;
+            }
+        }
+        Field field = simulator.getField();
+        List<EntityStats> entities = simulator.getPossibleEntities();
+        String[] names = new String[entities.size()];
+        int[] counts = new int[entities.size()];
+        for (int index = 0; index < names.length; index++) {
+            names[index] = entities.get(index).getName();
+            counts[index] = field.getPopulation(entities.get(index));
+        }
+        EntityStats.EntityType[] types = EntityStats.EntityType.values();
+        int[] typeCounts = new int[types.length];
+        for (EntityStats.EntityType type : types) {
+            typeCounts[type.ordinal()] = field.getPopulation(type);
+        }
+        reading = new Reading(simulator.getStep(), simulator.getDayCount(),
+                Seasons.values()[simulator.getWeather().getSeasonIndex()].name(),
+                names, counts, typeCounts, field.getTotalPopulation(),
+                simulator.getEpidemic().getInfectedCount());
+    }
+
+    /**
+     * Answer a scrape, on the server thread.
+     *
+     * @param exchange the request and its response
+     * @throws IOException if the response cannot be sent
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod()) && !"HEAD".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = render().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Write out the metrics from the last reading.
+     *
+     * @return the metrics in the text exposition format
+     */
+    String render() {
+        StringBuilder text = new StringBuilder();
+        Reading last = reading;
+        if (last != null) {
+            long steps = published;
+            long stepNanos = publishedNanos;
+            gauge(text, "simulator_step", "The current step of the simulation.", last.step);
+            gauge(text, "simulator_day", "The number of days that have passed.", last.dayCount);
+            counter(text, "simulator_steps_total", "The steps run since the metrics were started.", steps);
+
+            header(text, "simulator_season", "The current season, 1 for the current one.", "gauge");
+            for (Seasons season : Seasons.values()) {
+                sample(text, "simulator_season", "season", season.name().toLowerCase(Locale.ROOT),
+                        season.name().equals(last.season) ? 1 : 0);
+            }
+
+            header(text, "simulator_population", "The number of entities of every species on the field.", "gauge");
+            for (int index = 0; index < last.names.length; index++) {
+                sample(text, "simulator_population", "species", last.names[index], last.counts[index]);
+            }
+            header(text, "simulator_population_by_type", "The number of entities of every type on the field.", "gauge");
+            for (EntityStats.EntityType type : EntityStats.EntityType.values()) {
+                sample(text, "simulator_population_by_type", "type", type.name().toLowerCase(Locale.ROOT),
+                        last.typeCounts[type.ordinal()]);
+            }
+            gauge(text, "simulator_population_total", "The number of entities on the field.", last.total);
+            gauge(text, "simulator_infected", "The number of infected cells.", last.infected);
+            writeLatency(text, steps, stepNanos);
+        }
+
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        header(text, "jvm_memory_heap_bytes", "The heap of the JVM.", "gauge");
+        sample(text, "jvm_memory_heap_bytes", "area", "used", heap.getUsed());
+        sample(text, "jvm_memory_heap_bytes", "area", "committed", heap.getCommitted());
+        sample(text, "jvm_memory_heap_bytes", "area", "max", heap.getMax());
+        return text.toString();
+    }
+
+    /**
+     * Write out the step latency since the metrics were started, and the steps per second and
+     * the step latency percentiles over the recent steps. A step published while the totals and
+     * the rings are being read may show up in some and not the others, which only moves the
+     * figures by one step.
+     *
+     * @param text where to write
+     * @param published the number of steps published
+     * @param publishedNanos the total duration of those steps in ns
+     */
+    private void writeLatency(StringBuilder text, long published, long publishedNanos) {
+        header(text, "simulator_step_latency_seconds", "The time taken by the steps since the metrics were started.", "summary");
+        text.append("simulator_step_latency_seconds_sum ").append(publishedNanos / 1e9).append('\n');
+        text.append("simulator_step_latency_seconds_count ").append(published).append('\n');
+
+        int window = (int) Math.min(published, WINDOW);
+        if (window == 0) {
+            return;
+        }
+        long[] recent = new long[window];
+        long newest = Long.MIN_VALUE;
+        long oldest = Long.MAX_VALUE;
+        for (int index = 0; index < window; index++) {
+            recent[index] = durations.get(index);
+            long end = endTimes.get(index);
+            newest = Math.max(newest, end);
+            oldest = Math.min(oldest, end);
+        }
+        if (newest > oldest) {
+            gauge(text, "simulator_steps_per_second", "The steps run per second over the recent steps.",
+                    (window - 1) * 1e9 / (newest - oldest));
+        }
+
+        Arrays.sort(recent);
+        header(text, "simulator_recent_step_latency_seconds", "The percentiles of the time taken by the recent steps.", "gauge");
+        for (double quantile : QUANTILES) {
+            int rank = (int) Math.ceil(quantile * window) - 1;
+            sample(text, "simulator_recent_step_latency_seconds", "quantile", Double.toString(quantile),
+                    recent[Math.max(rank, 0)] / 1e9);
+        }
+    }
+
+    /**
+     * Write the HELP and TYPE lines of a metric.
+     */
+    private static void header(StringBuilder text, String name, String help, String type) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * Write a gauge with a single value.
+     */
+    private static void gauge(StringBuilder text, String name, String help, double value) {
+        header(text, name, help, "gauge");
+        text.append(name).append(' ').append(format(value)).append('\n');
+    }
+
+    /**
+     * Write a counter with a single value.
+     */
+    private static void counter(StringBuilder text, String name, String help, double value) {
+        header(text, name, help, "counter");
+        text.append(name).append(' ').append(format(value)).append('\n');
+    }
+
+    /**
+     * Write one labelled value of a metric.
+     */
+    private static void sample(StringBuilder text, String name, String label, String labelValue, double value) {
+        text.append(name).append('{').append(label).append("=\"")
+            .append(labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+            .append("\"} ").append(format(value)).append('\n');
+    }
+
+    /**
+     * Write a value without a fraction when it has none.
+     */
+    private static String format(double value) {
+        return value == Math.rint(value) && !Double.isInfinite(value) ? Long.toString((long) value) : Double.toString(value);
+    }
+
+    /**
+     * A simple getter method to return the port the server listens on
+     *
+     * @return the port, useful when the server was started on port 0
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stop serving. Scrapes being answered are given a moment to finish.
+     */
+    public void stop() {
+        server.stop(1);
+        executor.shutdownNow();
+    }
+
+    /**
+     * The populations and the clock of the simulation after a step, never changed once published.
+     */
+    private static final class Reading {
+        private final int step;                 // The current step
+        private final int dayCount;             // The number of days that have passed
+        private final String season;            // The name of the current season
+        private final String[] names;           // The name of every possible entity
+        private final int[] counts;             // The population of every possible entity
+        private final int[] typeCounts;         // The population of every entity type, by ordinal
+        private final int total;                // The number of entities on the field
+        private final int infected;             // The number of infected cells
+
+        private Reading(int step, int dayCount, String season, String[] names, int[] counts, int[] typeCounts,
+                        int total, int infected) {
+            this.step = step;
+            this.dayCount = dayCount;
+            this.season = season;
+            this.names = names;
+            this.counts = counts;
+            this.typeCounts = typeCounts;
+            this.total = total;
+            this.infected = infected;
+        }
+    }
+}
@@ -1,15 +1,13 @@
-import java.util.ArrayList;
 import java.util.List;
 
 /**
- * The Organism class is responsible for distinguishing what can and can't be infected
+ * The Organism class is responsible for distinguishing what can and can't be infected,
+ * only organisms catch the diseases spread by the Epidemic.
  *
  * @author Syraj Alkhalil and Cosmo Colman
  * @version 2022.02.27 (2)
  */
-public abstract class Organism extends Entity {
-    private boolean isInfected;                                 // Is this organism infected
-    private final ArrayList<Disease> diseases;                  // the list of disease this organism has
+public abstract class Organism extends Entity implements EpidemicHosts.Host {
 
     /**
      * Create an Organism. An organism can be created with a field and
@@ -17,11 +15,10 @@ public abstract class Organism extends Entity {
      * @param stats the statistics of the organism
      * @param field The field currently occupied.
      * @param initLocation The location within the field.
+     * @param rand The random stream of the organism.
      */
-    public Organism(EntityStats stats, Field field, Location initLocation) {
-        super(stats, field, initLocation);
-        diseases = new ArrayList<>();
-        this.isInfected = false;
+    public Organism(EntityStats stats, Field field, Location initLocation, RandomStream rand) {
+        super(stats, field, initLocation, rand);
     }
 
     /**
@@ -30,47 +27,4 @@ public abstract class Organism extends Entity {
      * @param currentWeather the current weather
      */
     abstract public void act(List<Organism> newOrganisms, boolean isDay, Weather currentWeather);
-
-    /**
-     * make this organism infected with the disease
-     *
-     * @param disease the disease we wish this organism to be infected by
-     */
-    public void addDisease(Disease disease) {
-        this.diseases.add(disease);
-    }
-
-    public ArrayList<Disease> getDiseases(){
-        return diseases;
-    }
-
-    /**
-     * A simple getter method that return isInfected field
-     *
-     * @return is this organism infected
-     */
-    public boolean getIsInfected() {
-        return isInfected;
-    }
-
-    /**
-     * A simple setter field that sets the isInfected field
-     *
-     * @param infection true if this organism is infected false otherwise
-     */
-    public void setInfected(boolean infection) {
-        this.isInfected = infection;
-    }
-
-    /**
-     * let the current organism die due to infection
-     * balancing this is a nightmare
-     */
-    protected void dieDueToInfection() {
-        for(Disease disease : this.diseases){
-            if(isInfected && getRand().nextDouble() < disease.getDeadliness()){
-                setDead();
-            }
-        }
-    }
 }
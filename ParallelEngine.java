@@ -0,0 +1,223 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * A step engine that lets organisms act on several threads at once.
+ * The field is split into a grid of tiles which are coloured like a checkerboard with four colours
+ * (even/odd tile row times even/odd tile column). A step runs in four phases, one per colour, and
+ * all the tiles of a colour act concurrently. An organism only ever reads or writes the cells around
+ * it, and tiles of the same colour are always separated by a whole tile of at least two cells, so no
+ * two threads can touch the same 3x3 neighbourhood during a phase. On a toroidal field the first and
+ * last tiles touch across the edge, so the number of tiles across and down it is kept even and the
+ * last tile, which may be cut short, at least two cells.
+ *
+ * Every organism draws from its own RandomStream, organisms in a tile act in row-major order of the
+ * cell they started the step in, and newborns are collected per tile. With a fixed seed and a fixed
+ * tile count a run is therefore identical however many threads there are and however they are scheduled.
+ *
+ * @author Syraj Alkhalil and Cosmo Colman
+ * @version 2022.02.27 (2)
+ */
+public class ParallelEngine {
+    private static final int MIN_TILE_SIZE = 2;                 // The smallest tile side that keeps same coloured tiles apart
+    private static final int COLOURS = 4;                       // The number of checkerboard colours, i.e. phases per step
+
+    private final int requestedTileRows, requestedTileCols;     // The tile grid asked for, it is shrunk for small fields
+    private final ForkJoinPool pool;                            // The threads running the tiles
+
+    /**
+     * Create a parallel engine.
+     *
+     * @param tileRows the number of tiles down the field
+     * @param tileCols the number of tiles across the field
+     * @param threads the number of threads to use
+     */
+    public ParallelEngine(int tileRows, int tileCols, int threads) {
+        this.requestedTileRows = Math.max(1, tileRows);
+        this.requestedTileCols = Math.max(1, tileCols);
+        this.pool = new ForkJoinPool(Math.max(1, threads));
+    }
+
+    /**
+     * Create a parallel engine using every available processor with a tile grid of the given size.
+     *
+     * @param tileRows the number of tiles down the field
+     * @param tileCols the number of tiles across the field
+     */
+    public ParallelEngine(int tileRows, int tileCols) {
+        this(tileRows, tileCols, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Run one step: let every organism act and add the newborns.
+     * On return the list holds the survivors followed by the newborns, tile by tile.
+     *
+     * @param organisms the organisms of the simulation, updated in place
+     * @param field the field the organisms live in
+     * @param step the current step
+     * @param isDay is it currently day or night
+     * @param weather the current weather
+     */
+    public void step(List<Organism> organisms, Field field, int step, boolean isDay, Weather weather) {
+        int tileRows = getTileRows(field);
+        int tileCols = getTileCols(field);
+        int tileHeight = ceilDiv(field.getDepth(), tileRows);
+        int tileWidth = ceilDiv(field.getWidth(), tileCols);
+
+        // bucket the organisms by the tile they start the step in
+        List<List<Organism>> tiles = new ArrayList<>(tileRows * tileCols);
+        List<List<Organism>> newborns = new ArrayList<>(tileRows * tileCols);
+        for (int tile = 0; tile < tileRows * tileCols; tile++) {
+            tiles.add(new ArrayList<>());
+            newborns.add(new ArrayList<>());
+        }
+        for (Organism organism : organisms) {
+            Location location = organism.getLocation();
+            if (organism.getIsAlive() && location != null) {
+                int tile = (location.getRow() / tileHeight) * tileCols + location.getCol() / tileWidth;
+                tiles.get(tile).add(organism);
+            }
+        }
+        Comparator<Organism> rowMajor = Comparator.comparingInt(organism -> Field.pack(organism.getLocation().getRow(), organism.getLocation().getCol()));
+        for (List<Organism> tile : tiles) {
+            tile.sort(rowMajor);
+        }
+
+        for (int colour = 0; colour < COLOURS; colour++) {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int tileRow = colour / 2; tileRow < tileRows; tileRow += 2) {
+                for (int tileCol = colour % 2; tileCol < tileCols; tileCol += 2) {
+                    int tile = tileRow * tileCols + tileCol;
+                    List<Organism> members = tiles.get(tile);
+                    List<Organism> born = newborns.get(tile);
+                    tasks.add(() -> {
+                        actTile(members, born, isDay, weather, field.getProfiler());
+                        return null;
+                    });
+                }
+            }
+            runAll(tasks);
+        }
+
+        organisms.clear();
+        for (List<Organism> tile : tiles) {
+            for (Organism organism : tile) {
+                if (organism.getIsAlive()) {
+                    organisms.add(organism);
+                }
+            }
+        }
+        for (List<Organism> born : newborns) {
+            organisms.addAll(born);
+        }
+    }
+
+    /**
+     * Let the organisms of a single tile act, this runs on one of the pool's threads.
+     *
+     * @param members the organisms starting the step in this tile
+     * @param born the list collecting this tile's newborns
+     * @param isDay is it currently day or night
+     * @param weather the current weather
+     * @param profiler the profiler counting the acts
+     */
+    private void actTile(List<Organism> members, List<Organism> born, boolean isDay, Weather weather, StepProfiler profiler) {
+        for (Organism organism : members) {
+            // an organism may have been eaten by a neighbour before its turn
+            if (!organism.getIsAlive()) {
+                continue;
+            }
+            profiler.act(organism, born, isDay, weather);
+        }
+    }
+
+    /**
+     * Run a phase's tasks on the pool and wait for all of them.
+     *
+     * @param tasks the tile tasks of the phase
+     */
+    private void runAll(List<Callable<Void>> tasks) {
+        for (Future<Void> result : pool.invokeAll(tasks)) {
+            try {
+                result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while running a step", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("An organism failed to act", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * The number of tile rows actually used on a field, tiles must be at least MIN_TILE_SIZE high.
+     *
+     * @param field the field being simulated
+     * @return the number of tile rows
+     */
+    public int getTileRows(Field field) {
+        return tilesAlong(field, field.getDepth(), requestedTileRows);
+    }
+
+    /**
+     * The number of tile columns actually used on a field, tiles must be at least MIN_TILE_SIZE wide.
+     *
+     * @param field the field being simulated
+     * @return the number of tile columns
+     */
+    public int getTileCols(Field field) {
+        return tilesAlong(field, field.getWidth(), requestedTileCols);
+    }
+
+    /**
+     * The number of tiles actually used down or across a field when some are asked for, shared
+     * with DistributedWorker so a distributed run uses the same tiles.
+     *
+     * @param field the field being simulated
+     * @param size the depth or width of the field
+     * @param requested the number of tiles asked for
+     * @return the number of tiles to use
+     */
+    static int tilesAlong(Field field, int size, int requested) {
+        return keepApartAcrossEdges(field, size, Math.max(1, Math.min(requested, size / MIN_TILE_SIZE)));
+    }
+
+    /**
+     * Use fewer tiles on a toroidal field until the tiles of a colour are kept apart across the
+     * edge too: there must be an even number of them and the last one must not be cut shorter
+     * than MIN_TILE_SIZE. A single tile only touches itself.
+     *
+     * @param field the field being simulated
+     * @param size the depth or width of the field
+     * @param tiles the number of tiles down or across the field
+     * @return the number of tiles to use
+     */
+    private static int keepApartAcrossEdges(Field field, int size, int tiles) {
+        if (field.getTopology() != Topology.TOROIDAL) {
+            return tiles;
+        }
+        while (tiles > 1 && (tiles % 2 == 1 || size - (tiles - 1) * ceilDiv(size, tiles) < MIN_TILE_SIZE)) {
+            tiles--;
+        }
+        return tiles;
+    }
+
+    /**
+     * Stop the threads of the engine.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * @return a / b rounded up
+     */
+    static int ceilDiv(int a, int b) {
+        return (a + b - 1) / b;
+    }
+}
@@ -0,0 +1,419 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Runs the simulation over a grid of values of the stats of the species, e.g. to find the litter
+ * sizes a predator can live with, and writes a table of how every run went.
+ *
+ * Every axis of the grid is one parameter of one species with a list of values, and every point
+ * of the grid is run with every seed by an Ensemble, one run per thread. A run stops as soon as
+ * FieldStats.isViable turns false, see ViabilityCondition. Every run becomes one row of the table, in the order the runs
+ * finish, with the values of the point, how long every species lived side by side, the final
+ * population of every species and the period the prey oscillate with.
+ *
+ * Usage: java -Djava.awt.headless=true ParameterSweep [options]
+ *   --sweep S.P=A:B[:STEP]  sweep the parameter P of the species S from A to B (default step 1)
+ *   --sweep S.P=A,B,C       sweep the parameter P of the species S over a list of values
+ *   --seeds N               run every point with the seeds 1 to N (default 1)
+ *   --steps N               the maximum number of steps of every run (default 1000)
+ *   --every N               sample the population every N steps (default 1)
+ *   --size D W              the depth and width of the field (default 120 200)
+ *   --threads N             the number of runs stepped at once (default one per processor)
+ *   --out FILE              write the table to a file rather than the standard output
+ *
+ * @author Syraj Alkhalil and Cosmo Colman
+ * @version 2022.02.27 (2)
+ */
+public class ParameterSweep {
+    /**
+     * The parameters of a species that can be swept.
+     */
+    public enum Parameter {
+        BREEDING_PROBABILITY("breedingProbability"),
+        CREATION_PROBABILITY("creationProbability"),
+        BREEDING_AGE("breedingAge"),
+        MAX_AGE("maxAge"),
+        MAX_LITTER_SIZE("maxLitterSize"),
+        HUNGER_VALUE("hungerValue"),
+        FOOD_VALUE("foodValue"),
+        MAX_LEVEL("maxLevel");
+
+        private final String key;       // The name of the parameter on the command line
+
+        Parameter(String key) {
+            this.key = key;
+        }
+
+        /**
+         * A simple getter method to return the key field
+         *
+         * @return the name of the parameter on the command line
+         */
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * Return whether the parameter only takes whole numbers.
+         *
+         * @return false for the probabilities, true for the rest
+         */
+        public boolean isWhole() {
+            return this != BREEDING_PROBABILITY && this != CREATION_PROBABILITY;
+        }
+
+        /**
+         * Find a parameter by its name on the command line.
+         *
+         * @param key the name of the parameter
+         * @return the parameter
+         * @throws IllegalArgumentException if there is no such parameter
+         */
+        public static Parameter fromKey(String key) {
+            for (Parameter parameter : values()) {
+                if (parameter.key.equals(key)) {
+                    return parameter;
+                }
+            }
+            throw new IllegalArgumentException("Unknown parameter " + key);
+        }
+
+        /**
+         * Return whether a species has the parameter.
+         *
+         * @param stats the species
+         * @return true if the parameter can be set on the species
+         */
+        public boolean appliesTo(EntityStats stats) {
+            switch (this) {
+                case BREEDING_PROBABILITY:
+                case CREATION_PROBABILITY:
+                    return true;
+                case FOOD_VALUE:
+                case MAX_LEVEL:
+                    return stats instanceof PlantStats;
+                default:
+                    return stats instanceof AnimalStats;
+            }
+        }
+
+        /**
+         * Set the parameter of a species.
+         *
+         * @param stats the species
+         * @param value the value, rounded for the whole parameters
+         * @throws IllegalArgumentException if the species does not have the parameter
+         */
+        public void apply(EntityStats stats, double value) {
+            if (!appliesTo(stats)) {
+                throw new IllegalArgumentException(stats.getName() + " has no " + key);
+            }
+            int whole = (int) Math.round(value);
+            switch (this) {
+                case BREEDING_PROBABILITY:
+                    stats.setBreedingProbability(value);
+                    break;
+                case CREATION_PROBABILITY:
+                    stats.setCreationProbability(value);
+                    break;
+                case BREEDING_AGE:
+                    ((AnimalStats) stats).setBreedingAge(whole);
+                    break;
+                case MAX_AGE:
+                    ((AnimalStats) stats).setMaxAge(whole);
+                    break;
+                case MAX_LITTER_SIZE:
+                    ((AnimalStats) stats).setMaxLitterSize(whole);
+                    break;
+                case HUNGER_VALUE:
+                    ((AnimalStats) stats).setHungerValue(whole);
+                    break;
+                case FOOD_VALUE:
+                    ((PlantStats) stats).setFoodValue(whole);
+                    break;
+                case MAX_LEVEL:
+                    ((PlantStats) stats).setMaxLevel(whole);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * One parameter of one species and the values it is swept over.
+     */
+    private static final class Axis {
+        private final int species;          // The index of the species
+        private final Parameter parameter;  // The parameter swept
+        private final double[] values;      // The values the parameter takes
+
+        private Axis(int species, Parameter parameter, double[] values) {
+            this.species = species;
+            this.parameter = parameter;
+            this.values = values;
+        }
+    }
+
+    private final List<EntityStats> species;                // The species every point starts from
+    private final List<Axis> axes = new ArrayList<>();      // The axes of the grid, the last one changing fastest
+
+    /**
+     * Create a sweep with a single point, the species as they are.
+     *
+     * @param species the species every point starts from, they are cloned
+     */
+    public ParameterSweep(List<EntityStats> species) {
+        this.species = species;
+    }
+
+    /**
+     * Add an axis to the grid, multiplying the number of points by the number of values.
+     *
+     * @param name the name of the species
+     * @param parameter the parameter swept
+     * @param values the values the parameter takes
+     * @throws IllegalArgumentException if there is no such species, it does not have the
+     * parameter or there are no values
+     */
+    public void addAxis(String name, Parameter parameter, double... values) {
+        for (int index = 0; index < species.size(); index++) {
+            if (species.get(index).getName().equals(name)) {
+                if (!parameter.appliesTo(species.get(index))) {
+                    throw new IllegalArgumentException(name + " has no " + parameter.getKey());
+                }
+                if (values.length == 0) {
+                    throw new IllegalArgumentException("No values for " + name + "." + parameter.getKey());
+                }
+                axes.add(new Axis(index, parameter, values.clone()));
+                return;
+            }
+        }
+        throw new IllegalArgumentException("Unknown species " + name);
+    }
+
+    /**
+     * Return the number of points of the grid.
+     *
+     * @return the product of the number of values of every axis
+     */
+    public int getPointCount() {
+        int points = 1;
+        for (Axis axis : axes) {
+            points *= axis.values.length;
+        }
+        return points;
+    }
+
+    /**
+     * Return the value every axis takes at a point of the grid.
+     *
+     * @param point the index of the point
+     * @return the value of every axis, in the order they were added
+     */
+    public double[] getPoint(int point) {
+        double[] values = new double[axes.size()];
+        for (int index = axes.size() - 1; index >= 0; index--) {
+            Axis axis = axes.get(index);
+            values[index] = axis.values[point % axis.values.length];
+            point /= axis.values.length;
+        }
+        return values;
+    }
+
+    /**
+     * Return the species at a point of the grid.
+     *
+     * @param point the index of the point
+     * @return clones of the species with the parameters of the point
+     * @throws CloneNotSupportedException if a species cannot be cloned
+     */
+    public List<EntityStats> configure(int point) throws CloneNotSupportedException {
+        List<EntityStats> configuration = new ArrayList<>();
+        for (EntityStats stats : species) {
+            configuration.add(stats.clone());
+        }
+        double[] values = getPoint(point);
+        for (int index = 0; index < values.length; index++) {
+            Axis axis = axes.get(index);
+            axis.parameter.apply(configuration.get(axis.species), values[index]);
+        }
+        return configuration;
+    }
+
+    /**
+     * Run every point of the grid with every seed and write one row per run, with a header.
+     *
+     * @param ensemble what runs the points, it is told to stop the runs once they are not viable
+     * @param seeds the seeds every point is run with
+     * @param out where to write the table as comma separated values
+     * @throws Exception if a species cannot be cloned, a run failed or the table cannot be written
+     */
+    public void run(Ensemble ensemble, List<Long> seeds, Writer out) throws Exception {
+        List<List<EntityStats>> configurations = new ArrayList<>();
+        for (int point = 0; point < getPointCount(); point++) {
+            configurations.add(configure(point));
+        }
+        List<Integer> prey = new ArrayList<>();
+        for (int index = 0; index < species.size(); index++) {
+            if (species.get(index).getEntityType() == EntityStats.EntityType.PREY) {
+                prey.add(index);
+            }
+        }
+        int[] preyIndices = prey.stream().mapToInt(Integer::intValue).toArray();
+
+        PrintWriter table = new PrintWriter(out);
+        StringBuilder header = new StringBuilder("point,seed");
+        for (Axis axis : axes) {
+            header.append(',').append(species.get(axis.species).getName()).append('.').append(axis.parameter.getKey());
+        }
+        header.append(",steps,coexistence");
+        for (EntityStats stats : species) {
+            header.append(',').append(stats.getName());
+        }
+        table.println(header.append(",period,stopped"));
+
+        ensemble.setTermination(ViabilityCondition::new);
+        try {
+            ensemble.run(configurations, seeds, series -> {
+                StringBuilder row = new StringBuilder().append(series.getConfiguration()).append(',').append(series.getSeed());
+                double[] values = getPoint(series.getConfiguration());
+                for (int index = 0; index < values.length; index++) {
+                    row.append(',').append(format(values[index], axes.get(index).parameter));
+                }
+                int last = series.getSampleCount() - 1;
+                row.append(',').append(series.getStep(last)).append(',').append(series.getCoexistenceStep());
+                for (int index = 0; index < series.getSpeciesCount(); index++) {
+                    row.append(',').append(series.getPopulation(last, index));
+                }
+                row.append(',').append(series.getOscillationPeriod(preyIndices));
+                table.println(row.append(',').append(series.getTermination() != null ? series.getTermination().getReason() : ""));
+                table.flush();
+                if (table.checkError()) {
+                    throw new UncheckedIOException(new IOException("Cannot write the table"));
+                }
+            });
+        } finally {
+            table.flush();
+        }
+    }
+
+    /**
+     * Write a value of a parameter without a fraction when it only takes whole numbers.
+     */
+    private static String format(double value, Parameter parameter) {
+        return parameter.isWhole() ? Long.toString(Math.round(value)) : Double.toString(value);
+    }
+
+    /**
+     * Parse the values of an axis: a list separated by commas, or a range from:to[:step].
+     *
+     * @param text the values
+     * @return the values of the axis
+     * @throws IllegalArgumentException if the values cannot be parsed or the range is empty
+     */
+    static double[] parseValues(String text) {
+        if (!text.contains(":")) {
+            String[] parts = text.split(",");
+            double[] values = new double[parts.length];
+            for (int index = 0; index < parts.length; index++) {
+                values[index] = Double.parseDouble(parts[index].trim());
+            }
+            return values;
+        }
+        String[] parts = text.split(":");
+        double from = Double.parseDouble(parts[0].trim());
+        double to = Double.parseDouble(parts[1].trim());
+        double step = parts.length > 2 ? Double.parseDouble(parts[2].trim()) : 1;
+        if (step <= 0 || to < from) {
+            throw new IllegalArgumentException("Empty range " + text);
+        }
+        // count the values first so the last one is not lost to rounding, e.g. 0.1:0.3:0.1
+        int count = (int) Math.floor((to - from) / step + 1e-9) + 1;
+        double[] values = new double[count];
+        for (int index = 0; index < count; index++) {
+            values[index] = from + index * step;
+        }
+        return values;
+    }
+
+    /**
+     * Run a sweep over the default species and write the table.
+     *
+     * @param args the options, see the class comment
+     * @throws Exception if a run failed or the table cannot be written
+     */
+    public static void main(String[] args) throws Exception {
+        int seedCount = 1;
+        int steps = 1000;
+        int every = 1;
+        int depth = 120;
+        int width = 200;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String outFile = null;
+        List<String> sweeps = new ArrayList<>();
+        List<String> options = List.of(args);
+        for (int index = 0; index < options.size(); index++) {
+            switch (options.get(index)) {
+                case "--sweep":
+                    sweeps.add(options.get(++index));
+                    break;
+                case "--seeds":
+                    seedCount = Integer.parseInt(options.get(++index));
+                    break;
+                case "--steps":
+                    steps = Integer.parseInt(options.get(++index));
+                    break;
+                case "--every":
+                    every = Integer.parseInt(options.get(++index));
+                    break;
+                case "--size":
+                    depth = Integer.parseInt(options.get(++index));
+                    width = Integer.parseInt(options.get(++index));
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(options.get(++index));
+                    break;
+                case "--out":
+                    outFile = options.get(++index);
+                    break;
+                default:
+                    System.err.println("Unknown option " + options.get(index));
+                    return;
+            }
+        }
+
+        ParameterSweep sweep = new ParameterSweep(Simulator.createDefaultEntities());
+        for (String text : sweeps) {
+            int equals = text.indexOf('=');
+            int dot = text.lastIndexOf('.', equals);
+            if (equals < 0 || dot < 0) {
+                System.err.println("Expected Species.parameter=values but got " + text);
+                return;
+            }
+            sweep.addAxis(text.substring(0, dot), Parameter.fromKey(text.substring(dot + 1, equals)),
+                    parseValues(text.substring(equals + 1)));
+        }
+        List<Long> seeds = new ArrayList<>();
+        for (long seed = 1; seed <= seedCount; seed++) {
+            seeds.add(seed);
+        }
+
+        long start = System.nanoTime();
+        Ensemble ensemble = new Ensemble(depth, width, steps, every, threads);
+        if (outFile == null) {
+            Writer out = new PrintWriter(System.out);
+            sweep.run(ensemble, seeds, out);
+        } else {
+            try (Writer out = new FileWriter(outFile)) {
+                sweep.run(ensemble, seeds, out);
+            }
+        }
+        System.err.printf(Locale.ROOT, "%d points, %d runs in %.1f s%n", sweep.getPointCount(),
+                sweep.getPointCount() * seedCount, (System.nanoTime() - start) / 1e9);
+    }
+}
@@ -24,9 +24,10 @@ public class Plant extends Organism{
      * @param stats the statistics of the plant
      * @param field The field currently occupied.
      * @param initLocation The location within the field.
+     * @param rand The random stream of the plant.
      */
-    public Plant(PlantStats stats, Field field,  Location initLocation) {
-        super(stats, field, initLocation);
+    public Plant(PlantStats stats, Field field,  Location initLocation, RandomStream rand) {
+        super(stats, field, initLocation, rand);
         this.plantStats = stats;
         this.currentLevel = 1;
         this.waterLevel = 1;
@@ -76,6 +77,7 @@ public class Plant extends Organism{
 
     /**
      * This is what the plant does most of the time: 'breed', photosynthesise, and grow.
+     * A plant that lost its cell leaves the simulation instead if the field says so.
      *
      * @param newPlants A list to return newly born plants.
      * @param isDay is it currently day or night ?
@@ -84,9 +86,17 @@ public class Plant extends Organism{
     @Override
     public void act(List<Organism> newPlants, boolean isDay, Weather currentWeather) {
         if(isDay){
+            if(getField().getDropOffFieldPlants() && getField().getObjectAt(getLocation()) != this){
+                remove();
+                return;
+            }
+            StepProfiler profiler = getProfiler();
+            long start = profiler.start();
             grow(currentWeather);
+            start = profiler.lap(StepProfiler.Phase.GROWTH, start);
             if(this.currentLevel > 2){
                 giveBirth(newPlants);
+                profiler.lap(StepProfiler.Phase.BREEDING, start);
             }
         }
     }
@@ -161,15 +171,22 @@ public class Plant extends Organism{
      * @param newPlants A list to return newly born plants.
      */
     private void giveBirth(List<Organism> newPlants) {
-        // New plants are born into adjacent locations.
-        // Get a list of adjacent free locations.
+        // New plants are born into free adjacent locations.
         Field field = getField();
-        List<Location> free = field.getFreeAdjacentLocations(getLocation());
         int births = breed();
-        for(int b = 0; b < births && free.size() > 0; b++) {
-            Location loc = free.remove(0);
-            Plant young = new Plant(plantStats, field, loc);
-            newPlants.add(young);
+        int row = getLocation().getRow();
+        int col = getLocation().getCol();
+        for(int direction : field.randomNeighbourOrder(getRand())) {
+            if(births == 0) {
+                break;
+            }
+            int where = field.neighbour(row, col, direction);
+            if(where != Field.NO_LOCATION && field.getObjectAtPacked(where) == null) {
+                Location loc = new Location(Field.rowOf(where), Field.colOf(where));
+                Plant young = new Plant(plantStats, field, loc, getRand().split());
+                newPlants.add(young);
+                births--;
+            }
         }
     }
 
@@ -197,11 +214,33 @@ public class Plant extends Organism{
     }
 
     /**
-     * A simple getter method that returns the plantStats field
+     * A simple getter method that returns the waterLevel field
+     *
+     * @return the water level of the plant
+     */
+    public int getWaterLevel() {
+        return waterLevel;
+    }
+
+    /**
+     * A simple getter method that returns the sunLightLevel field
+     *
+     * @return the sunlight level of the plant
+     */
+    public int getSunLightLevel() {
+        return sunLightLevel;
+    }
+
+    /**
+     * Put back the state of a saved plant, used when a checkpoint is restored.
      *
-     * @return the stats of the plant
+     * @param currentLevel the level of the plant
+     * @param waterLevel the water level of the plant
+     * @param sunLightLevel the sunlight level of the plant
      */
-    public EntityStats getStats() {
-        return plantStats;
+    void restoreState(int currentLevel, int waterLevel, int sunLightLevel) {
+        this.currentLevel = currentLevel;
+        this.waterLevel = waterLevel;
+        this.sunLightLevel = sunLightLevel;
     }
 }
@@ -0,0 +1,218 @@
+/**
+ * The population of every species over one run of an Ensemble, sampled every few steps.
+ * A series is never changed once the run is over.
+ *
+ * @author Syraj Alkhalil and Cosmo Colman
+ * @version 2022.02.27 (2)
+ */
+public class PopulationSeries {
+    private final int configuration;                // The index of the configuration the run used
+    private final long seed;                        // The seed of the run
+    private final String[] names;                   // The name of every species, in the order of the counts
+    private final int[] steps;                      // The step every sample was taken at
+    private final int[][] counts;                   // The population of every species, by sample then species
+    private final Termination termination;          // Why the run stopped early, null if it ran every step
+
+    /**
+     * Create a series.
+     *
+     * @param configuration the index of the configuration the run used
+     * @param seed the seed of the run
+     * @param names the name of every species, in the order of the counts
+     * @param steps the step every sample was taken at
+     * @param counts the population of every species, by sample then species
+     * @param termination why the run stopped early, null if it ran every step
+     */
+    public PopulationSeries(int configuration, long seed, String[] names, int[] steps, int[][] counts, Termination termination) {
+        this.configuration = configuration;
+        this.seed = seed;
+        this.names = names;
+        this.steps = steps;
+        this.counts = counts;
+        this.termination = termination;
+    }
+
+    /**
+     * A simple getter method to return the configuration field
+     *
+     * @return the index of the configuration the run used
+     */
+    public int getConfiguration() {
+        return configuration;
+    }
+
+    /**
+     * A simple getter method to return the seed field
+     *
+     * @return the seed of the run
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * A simple getter method to return the termination field
+     *
+     * @return why the run stopped early, null if it ran every step
+     */
+    public Termination getTermination() {
+        return termination;
+    }
+
+    /**
+     * A simple getter method to return the number of species
+     *
+     * @return the number of species counted
+     */
+    public int getSpeciesCount() {
+        return names.length;
+    }
+
+    /**
+     * A simple getter method to return the name of a species
+     *
+     * @param species the index of the species
+     * @return the name of the species
+     */
+    public String getName(int species) {
+        return names[species];
+    }
+
+    /**
+     * A simple getter method to return the number of samples
+     *
+     * @return the number of samples
+     */
+    public int getSampleCount() {
+        return counts.length;
+    }
+
+    /**
+     * Return the step a sample was taken at.
+     *
+     * @param sample the index of the sample
+     * @return the step of the sample
+     */
+    public int getStep(int sample) {
+        return steps[sample];
+    }
+
+    /**
+     * Return the population of a species at a sample.
+     *
+     * @param sample the index of the sample
+     * @param species the index of the species
+     * @return the number of organisms of the species on the field
+     */
+    public int getPopulation(int sample, int species) {
+        return counts[sample][species];
+    }
+
+    /**
+     * Return the step a species died out at. A plant may be eaten down to nothing during the
+     * night and grow back, so the species only died out at the first sample it never came back from.
+     *
+     * @param species the index of the species
+     * @return the step of the first sample from which on the species is gone, -1 if it survived
+     * the whole run
+     */
+    public int getExtinctionStep(int species) {
+        int sample = getExtinctionSample(species);
+        return sample < 0 ? -1 : getStep(sample);
+    }
+
+    /**
+     * Return how long every species the run started with lived side by side.
+     *
+     * @return the step a species that was there at step 0 died out at, the last step of the run
+     * if none died out
+     */
+    public int getCoexistenceStep() {
+        return getStep(getCoexistenceSample());
+    }
+
+    /**
+     * Estimate the period the summed population of some species oscillates with, from the first
+     * peak of its autocorrelation after it first turns negative. Only the evenly spaced samples
+     * while every species coexisted are used, leaving out the first quarter of them as the
+     * population settles.
+     *
+     * @param species the indices of the species to sum
+     * @return the period in steps, -1 if the population does not oscillate or the run was too short
+     */
+    public int getOscillationPeriod(int... species) {
+        int end = getCoexistenceSample() + 1;
+        if (end > 2 && steps[end - 1] - steps[end - 2] != steps[1] - steps[0]) {
+            end--;                                  // the last sample of a run may be closer than the others
+        }
+        int start = end / 4;
+        int length = end - start;
+        if (length < 8) {
+            return -1;
+        }
+        double[] values = new double[length];
+        double mean = 0;
+        for (int sample = 0; sample < length; sample++) {
+            for (int index : species) {
+                values[sample] += counts[start + sample][index];
+            }
+            mean += values[sample];
+        }
+        mean /= length;
+        double variance = 0;
+        for (int sample = 0; sample < length; sample++) {
+            values[sample] -= mean;
+            variance += values[sample] * values[sample];
+        }
+        if (variance == 0) {
+            return -1;
+        }
+
+        boolean turnedNegative = false;
+        double previous = 1;
+        for (int lag = 1; lag <= length / 2; lag++) {
+            double correlation = 0;
+            for (int sample = 0; sample + lag < length; sample++) {
+                correlation += values[sample] * values[sample + lag];
+            }
+            correlation /= variance;
+            if (correlation < 0) {
+                turnedNegative = true;
+            } else if (turnedNegative && correlation < previous && previous > 0) {
+                return (lag - 1) * (steps[1] - steps[0]);
+            }
+            previous = correlation;
+        }
+        return -1;
+    }
+
+    /**
+     * Return the first sample from which on a species is gone.
+     *
+     * @param species the index of the species
+     * @return the index of the sample, -1 if the species is there at the last sample
+     */
+    private int getExtinctionSample(int species) {
+        int sample = counts.length;
+        while (sample > 0 && counts[sample - 1][species] == 0) {
+            sample--;
+        }
+        return sample == counts.length ? -1 : sample;
+    }
+
+    /**
+     * Return the first sample from which on a species that was there at step 0 is gone.
+     *
+     * @return the index of the sample, the last sample if no species died out
+     */
+    private int getCoexistenceSample() {
+        int first = counts.length - 1;
+        for (int species = 0; species < names.length; species++) {
+            int sample = getExtinctionSample(species);
+            if (sample >= 0 && counts[0][species] > 0) {
+                first = Math.min(first, sample);
+            }
+        }
+        return first;
+    }
+}
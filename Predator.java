@@ -18,20 +18,11 @@ public class Predator extends Animal {
      * @param randomAge If true, the predator will have random age and hunger level.
      * @param field The field currently occupied.
      * @param initLocation The location within the field.
+     * @param rand The random stream of the predator.
      */
-    public Predator(AnimalStats stats, boolean randomAge, Field field, Location initLocation) {
-        super(stats, randomAge, field, initLocation, stats.getHungerValue(), stats.getMaxAge());
+    public Predator(AnimalStats stats, boolean randomAge, Field field, Location initLocation, RandomStream rand) {
+        super(stats, randomAge, field, initLocation, stats.getHungerValue(), stats.getMaxAge(), rand);
         animalStats = stats;
-        setPrey();          // add all prey that this animal will be feeding on
-    }
-
-    /**
-     * this method will set the prey of this animal
-     * which is stored in an ArrayList of type class that
-     * can be expanded later.
-     */
-    private void setPrey() {
-        addPrey(Prey.class);
     }
 
     /**
@@ -42,27 +33,24 @@ public class Predator extends Animal {
      * @param currentWeather the current weather to affect the animal.
      */
     public void act(List<Organism> newPredator, boolean isDay, Weather currentWeather) {
+        StepProfiler profiler = getProfiler();
+        long start = profiler.start();
         incrementAge();     // age is unique and can't be updated with other stats.
         if(determineDay(isDay)){
-            updateStatsOfAnimal(currentWeather);
+            updateStatsOfAnimal();
+            start = profiler.lap(StepProfiler.Phase.AGING, start);
             if(getIsAlive()) {
                 if(getBreedCounter() <= 0){
                     giveBirth(newPredator);
+                    profiler.lap(StepProfiler.Phase.BREEDING, start);
                 }
                 moveLocationOfAnimal(currentWeather);
             }
         }
-
-    }
-
-    /**
-     * Increase the age. This could result in the predator's death.
-     */
-    private void incrementAge() {
-        setAgeInSteps(getAgeInSteps() + 1);
-        if(getAgeInDays() > animalStats.getMaxAge()) {
-            setDead();
+        else {
+            profiler.lap(StepProfiler.Phase.AGING, start);
         }
+
     }
 
     /**
@@ -71,18 +59,25 @@ public class Predator extends Animal {
      * @param newPredator A list to return newly born predators.
      */
     private void giveBirth(List<Organism> newPredator) {
-        // New predators are born into adjacent locations.
-        // Get a list of adjacent free locations.
+        // New predators are born into free adjacent locations.
         Field field = getField();
 
         // we need to call find mate first.
         if(findMate(this)){
-            List<Location> free = field.getFreeAdjacentLocations(getLocation());
             int births = breed();
-            for(int b = 0; b < births && free.size() > 0; b++) {
-                Location loc = free.remove(0);
-                Predator young = new Predator(animalStats, false, field, loc);
-                newPredator.add(young);
+            int row = getLocation().getRow();
+            int col = getLocation().getCol();
+            for(int direction : field.randomNeighbourOrder(getRand())) {
+                if(births == 0) {
+                    break;
+                }
+                int where = field.neighbour(row, col, direction);
+                if(where != Field.NO_LOCATION && field.getObjectAtPacked(where) == null) {
+                    Location loc = new Location(Field.rowOf(where), Field.colOf(where));
+                    Predator young = new Predator(animalStats, false, field, loc, getRand().split());
+                    newPredator.add(young);
+                    births--;
+                }
             }
         }
     }
@@ -18,20 +18,11 @@ public class Prey extends Animal {
      * @param randomAge If true, the prey will have a random age.
      * @param field The field currently occupied.
      * @param initLocation The location within the field.
+     * @param rand The random stream of the prey.
      */
-    public Prey(AnimalStats stats, boolean randomAge, Field field, Location initLocation) {
-        super(stats, randomAge, field, initLocation, stats.getHungerValue(), stats.getMaxAge());
+    public Prey(AnimalStats stats, boolean randomAge, Field field, Location initLocation, RandomStream rand) {
+        super(stats, randomAge, field, initLocation, stats.getHungerValue(), stats.getMaxAge(), rand);
         animalStats = stats;
-        setPrey();
-    }
-
-    /**
-     * this method will set the prey of this animal
-     * which is stored in an ArrayList of type class that
-     * can be expanded later.
-     */
-    private void setPrey(){
-        addPrey(Plant.class);
     }
 
     /**
@@ -43,27 +34,22 @@ public class Prey extends Animal {
      * @param currentWeather the current weather to affect the animal.
      */
     public void act(List<Organism> newPrey, boolean isDay, Weather currentWeather) {
+        StepProfiler profiler = getProfiler();
+        long start = profiler.start();
         incrementAge();     // age is unique and can't be updated with other stats.
         if(determineDay(isDay)){
-            updateStatsOfAnimal(currentWeather);
+            updateStatsOfAnimal();
+            start = profiler.lap(StepProfiler.Phase.AGING, start);
             if(getIsAlive()) {
                 if(getBreedCounter() <= 0){
                     giveBirth(newPrey);
+                    profiler.lap(StepProfiler.Phase.BREEDING, start);
                 }
                 moveLocationOfAnimal(currentWeather);
             }
         }
-    }
-
-    /**
-     * Increase the age.
-     * This could result in the prey's death.
-     */
-    private void incrementAge()
-    {
-        setAgeInSteps(getAgeInSteps() + 1);
-        if(getAgeInDays() > animalStats.getMaxAge()) {
-            setDead();
+        else {
+            profiler.lap(StepProfiler.Phase.AGING, start);
         }
     }
 
@@ -74,16 +60,23 @@ public class Prey extends Animal {
      * @param newPrey A list to return newly born preys.
      */
     private void giveBirth(List<Organism> newPrey) {
-        // New preys are born into adjacent locations.
-        // Get a list of adjacent free locations.
+        // New preys are born into free adjacent locations.
         Field field = getField();
         if(findMate(this)){
-            List<Location> free = field.getFreeAdjacentLocations(getLocation());
             int births = breed();
-            for(int b = 0; b < births && free.size() > 0; b++) {
-                Location loc = free.remove(0);
-                Prey young = new Prey(animalStats, false, field, loc);
-                newPrey.add(young);
+            int row = getLocation().getRow();
+            int col = getLocation().getCol();
+            for(int direction : field.randomNeighbourOrder(getRand())) {
+                if(births == 0) {
+                    break;
+                }
+                int where = field.neighbour(row, col, direction);
+                if(where != Field.NO_LOCATION && field.getObjectAtPacked(where) == null) {
+                    Location loc = new Location(Field.rowOf(where), Field.colOf(where));
+                    Prey young = new Prey(animalStats, false, field, loc, getRand().split());
+                    newPrey.add(young);
+                    births--;
+                }
             }
         }
     }
@@ -118,13 +111,4 @@ public class Prey extends Animal {
     {
         return getAgeInDays() >= animalStats.getBreedingAge();
     }
-
-    /**
-     * A simple getter method to return the animalStats Field
-     *
-     * @return the animalStats field
-     */
-    public EntityStats getStats() {
-        return animalStats;
-    }
 }
@@ -0,0 +1,180 @@
+/**
+ * A small splittable random number generator (the SplitMix64 algorithm, the same one behind
+ * java.util.SplittableRandom). Each stream is owned by a single entity, tile or simulation so
+ * drawing a number never contends with another thread, and split() derives a new independent
+ * stream deterministically, so a run is reproducible whatever the number of threads.
+ * Unlike SplittableRandom its state can be read back, which lets a run be checkpointed.
+ *
+ * @author Syraj Alkhalil and Cosmo Colman
+ * @version 2022.02.27 (2)
+ */
+public class RandomStream {
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;      // The default gamma, from the golden ratio
+    private static final double DOUBLE_UNIT = 0x1.0p-53;                // Turns 53 random bits into a double in [0, 1)
+
+    private long seed;                                                  // The state of the stream, advanced by gamma every draw
+    private long gamma;                                                 // The odd increment of this stream
+
+    /**
+     * Create the root stream of a run from a seed.
+     *
+     * @param seed the seed of the run
+     */
+    public RandomStream(long seed) {
+        this(mix64(seed), GOLDEN_GAMMA);
+    }
+
+    /**
+     * Recreate a stream from its state, as returned by getSeed and getGamma.
+     *
+     * @param seed the seed of the stream
+     * @param gamma the gamma of the stream, it must be odd
+     */
+    public RandomStream(long seed, long gamma) {
+        this.seed = seed;
+        this.gamma = gamma | 1L;
+    }
+
+    /**
+     * Derive a new independent stream from this one, this advances this stream.
+     *
+     * @return the new stream
+     */
+    public RandomStream split() {
+        return new RandomStream(mix64(nextSeed()), mixGamma(nextSeed()));
+    }
+
+    /**
+     * Create a stream keyed on a seed and a number, without needing a parent stream.
+     * The same seed and key always give the same stream.
+     *
+     * @param seed the seed of the run
+     * @param key a number identifying the stream, for example a row of the field
+     * @return the keyed stream
+     */
+    public static RandomStream forKey(long seed, long key) {
+        long mixed = mix64(seed ^ mix64(key + GOLDEN_GAMMA));
+        return new RandomStream(mixed, mixGamma(mixed + GOLDEN_GAMMA));
+    }
+
+    /**
+     * A random double keyed on a seed and a number, without creating a stream.
+     * The same seed and key always give the same double, so work can be done in any order.
+     *
+     * @param seed the seed of the run
+     * @param key a number identifying the draw, for example a step and a cell
+     * @return a random double between 0 (inclusive) and 1 (exclusive)
+     */
+    public static double keyedDouble(long seed, long key) {
+        return (mix64(seed ^ mix64(key + GOLDEN_GAMMA)) >>> 11) * DOUBLE_UNIT;
+    }
+
+    /**
+     * @return a random long
+     */
+    public long nextLong() {
+        return mix64(nextSeed());
+    }
+
+    /**
+     * @param bound the upper bound (exclusive), it must be positive
+     * @return a random int between 0 (inclusive) and bound (exclusive)
+     */
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("bound must be positive");
+        }
+        int r = mix32(nextSeed());
+        int m = bound - 1;
+        if ((bound & m) == 0) {
+            // a power of two
+            return r & m;
+        }
+        for (int u = r >>> 1; u + m - (r = u % bound) < 0; u = mix32(nextSeed()) >>> 1) {
+            // reject values that would make the result biased
+        }
+        return r;
+    }
+
+    /**
+     * @return a random double between 0 (inclusive) and 1 (exclusive)
+     */
+    public double nextDouble() {
+        return (nextLong() >>> 11) * DOUBLE_UNIT;
+    }
+
+    /**
+     * A simple getter method to return the seed field, used to save the stream
+     *
+     * @return the current seed of the stream
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * A simple setter method to set the seed field, used to restore a saved stream
+     *
+     * @param seed the seed returned by getSeed when the stream was saved
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Point the stream at another state, so one stream can draw for many owners kept as numbers.
+     *
+     * @param seed the seed of the stream
+     * @param gamma the gamma of the stream, it must be odd
+     */
+    void setState(long seed, long gamma) {
+        this.seed = seed;
+        this.gamma = gamma;
+    }
+
+    /**
+     * A simple getter method to return the gamma field, used to save the stream
+     *
+     * @return the gamma of the stream
+     */
+    public long getGamma() {
+        return gamma;
+    }
+
+    /**
+     * Advance the stream.
+     *
+     * @return the new seed
+     */
+    private long nextSeed() {
+        return seed += gamma;
+    }
+
+    /**
+     * The finalizer of MurmurHash3, a good 64 bit mixing function.
+     */
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+
+    /**
+     * The 32 bit variant of mix64.
+     */
+    private static int mix32(long z) {
+        z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+        return (int)(((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+    }
+
+    /**
+     * Turn a seed into a gamma, making sure it is odd and has enough bit transitions.
+     */
+    private static long mixGamma(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        z = (z ^ (z >>> 33)) | 1L;
+        int n = Long.bitCount(z ^ (z >>> 1));
+        return (n < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+    }
+}
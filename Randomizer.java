@@ -1,36 +1,46 @@
-import java.util.Random;
-
 /**
  * Provide control over the randomization of the simulation. By using the fixed-seed
  * randomizer, repeated runs will perform exactly the same (which helps with testing).
  * Users are able to set the seed and therefore get different behaviour if they so wish
  *
+ * A Randomizer holds the root RandomStream of a simulation. Every entity gets its own stream
+ * split from it (or from its parent's stream when it is born), so no two threads ever draw
+ * from the same generator and the results do not depend on how the work is scheduled.
+ *
  * @author Syraj Alkhalil and Cosmo Colman
  * @version 2022.02.27 (2)
  */
 public class  Randomizer {
     private static final int DEFAULT_SEED = 1111;           // The default seed for control of randomization.
-    private static int seed = DEFAULT_SEED;                 // The variable seed that is altered by the user
-    private static Random rand = new Random(seed);          // A shared Random object, if required.
+    private long seed;                                      // The seed the next complete reset uses, altered by the user
+    private long runSeed;                                   // The seed this randomizer was last reset with
+    private RandomStream stream;                            // The root stream of this randomizer
 
     /**
-     * Constructor for objects of class Randomizer
+     * Constructor for objects of class Randomizer, using the default seed
      */
-    public Randomizer() {}
+    public Randomizer() {
+        this(DEFAULT_SEED);
+    }
 
     /**
-     * This method is used to reset the object's seed
+     * Constructor for objects of class Randomizer with an explicit seed
+     *
+     * @param runSeed the seed of the root stream, also used by the next complete reset
      */
-    public static void resetRandom(){
-        rand.setSeed(seed);
+    public Randomizer(long runSeed) {
+        this.seed = runSeed;
+        this.runSeed = runSeed;
+        this.stream = new RandomStream(runSeed);
     }
 
     /**
-     * A simple getter method to return the seed field
+     * A simple getter method to return the seed field. Every simulation has its own, so runs
+     * with different seeds can share a process
      *
-     * @return an int value of the seed
+     * @return the seed the next complete reset uses
      */
-    public static int getSeed(){
+    public long getSeed(){
         return seed;
     }
 
@@ -39,14 +49,14 @@ public class  Randomizer {
      *
      * @param newSeed the new seed we wish to set as the seed
      */
-    public static void setSeed(int newSeed){
+    public void setSeed(long newSeed){
         seed = newSeed;
     }
 
     /**
      * This method is used to restore the default seed
      */
-    public static void restoreDefaultSeed(){
+    public void restoreDefaultSeed(){
         seed = DEFAULT_SEED;
     }
 
@@ -57,23 +67,59 @@ public class  Randomizer {
      * @return a random int given the limit
      */
     public int nextInt(int limit){
-        return rand.nextInt(limit);
+        return stream.nextInt(limit);
+    }
+
+    /**
+     * Derive a new independent stream, for an entity or a sub system of the simulation.
+     *
+     * @return the new stream
+     */
+    public RandomStream split(){
+        return stream.split();
+    }
+
+    /**
+     * A simple getter method to return the stream field
+     *
+     * @return the root stream of this randomizer
+     */
+    public RandomStream getStream(){
+        return stream;
+    }
+
+    /**
+     * Replace the root stream, used when a saved run is restored.
+     *
+     * @param stream the new root stream
+     */
+    public void setStream(RandomStream stream){
+        this.stream = stream;
     }
 
     /**
-     * Provide a random generator.
+     * A simple getter method to return the seed this randomizer was last reset with
      *
-     * @return A random object.
+     * @return the seed of the current run
      */
-    public static Random getRandom()
-    {
-        return rand;
+    public long getRunSeed(){
+        return runSeed;
     }
 
     /**
-     * reset the entire object completely
+     * reset the entire object completely with the seed set by the user
      */
     public void completeReset(){
-        resetRandom();
+        completeReset(seed);
+    }
+
+    /**
+     * reset the entire object completely with the given seed
+     *
+     * @param newSeed the seed to restart the root stream from
+     */
+    public void completeReset(long newSeed){
+        runSeed = newSeed;
+        stream = new RandomStream(newSeed);
     }
 }
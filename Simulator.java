@@ -1,3 +1,5 @@
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
 import java.awt.Color;
 
@@ -14,8 +16,9 @@ public class Simulator {
     private static final int DEFAULT_DEPTH = 120;           // The default depth of the grid.
     public static final int STEP_PER_DAY = 24;              // The total number of steps in a day
 
-    private static String currentSpeedSymbol;               // The current speed symbol
-    private static int currentSpeed;                        // Current speed of simulation
+    private volatile String currentSpeedSymbol;             // The current speed symbol
+    private volatile int currentSpeed;                      // Current speed of simulation, the delay between steps
+    private volatile int currentFrameRate;                  // How many times a second the view is redrawn
     private final List<Organism> organisms;                 // List of animals in the field.
     private final Field field;                              // The current state of the field.
 
@@ -26,13 +29,24 @@ public class Simulator {
     private int time;                                       // The current time
 
     private final Weather weather;                          // The current weather
-    private final SimulatorView view;                       // A graphical view of the simulation.
-    private static boolean isRunning;                       // If the simulator is currently running
+    private final Epidemic epidemic;                        // The diseases spreading between the organisms
+    private final SimulatorView view;                       // A graphical view of the simulation, null when headless.
+    private volatile boolean isRunning;                     // If the simulator is currently running
     private final Randomizer rand = new Randomizer();       // A random object to control behaviour
     private final ArrayList<EntityStats> DEFAULT_ENTITIES;  // List of all the default entities
     private ArrayList<EntityStats> possibleEntities;        // The list of all possible entities
-
-    private static final ArrayList<Integer> speeds = new ArrayList<>(Arrays.asList(100, 50, 25, 800, 400, 200));
+    private int nextSpeciesId;                              // The id the next species joining the simulation gets
+    private ParallelEngine parallelEngine;                  // The parallel step engine, null when stepping on one thread
+    private StepRecorder recorder;                          // Records every step for replay, null when not recording
+    private MetricsServer metrics;                          // Serves the metrics of the simulation, null when not serving
+    private final ActivityScheduler scheduler = new ActivityScheduler(); // Lets only the awake organisms act when stepping serially
+    private EntityStore store;                              // Holds the organisms as arrays when stepping with the store, null otherwise
+    private final int firstPopulatedRow, endPopulatedRow;   // The rows reset() puts organisms in, the whole field unless the field is shared out
+
+    // the delay between steps in milliseconds and the frame rate of the view of each speed, the
+    // view skips the steps it has no time for so the fastest speed runs as fast as it can
+    private static final ArrayList<Integer> speeds = new ArrayList<>(Arrays.asList(100, 50, 0, 800, 400, 200));
+    private static final ArrayList<Integer> frameRates = new ArrayList<>(Arrays.asList(10, 20, 25, 2, 3, 5));
     private static final ArrayList<String> speedSymbols = new ArrayList<>(Arrays.asList("3","2","1","6","5","4"));
 
     /**
@@ -49,16 +63,74 @@ public class Simulator {
      * @param width Width of the field. Must be greater than zero.
      */
     public Simulator(int depth, int width) {
+        this(depth, width, false);
+    }
+
+    /**
+     * Create a simulation field with the given size, optionally without any window.
+     * A headless simulator never touches Swing so it can run under java.awt.headless=true.
+     *
+     * @param depth Depth of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @param headless true to run without a SimulatorView
+     */
+    public Simulator(int depth, int width, boolean headless) {
+        this(depth, width, headless, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Create a simulation that only ever populates some rows of its field, for a process holding
+     * part of a field shared out between processes, see DistributedWorker. The random numbers of
+     * the other rows are still drawn, so those rows get exactly the organisms they would get in a
+     * whole field and the rest of the simulation starts the same.
+     *
+     * @param depth Depth of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @param headless true to run without a SimulatorView
+     * @param firstPopulatedRow the first row given organisms
+     * @param endPopulatedRow the row after the last row given organisms
+     */
+    Simulator(int depth, int width, boolean headless, int firstPopulatedRow, int endPopulatedRow) {
+        this(depth, width, headless, firstPopulatedRow, endPopulatedRow, true);
+    }
+
+    /**
+     * Create a headless simulation whose field stays empty until reset is called, for a caller
+     * that sets the species or the seed first and would otherwise populate the field twice.
+     *
+     * @param depth Depth of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @return a simulation with an empty field, to be reset before it is stepped
+     */
+    public static Simulator createUnpopulated(int depth, int width) {
+        return new Simulator(depth, width, true, 0, Integer.MAX_VALUE, false);
+    }
+
+    /**
+     * Create a simulation, populating its field unless told not to.
+     *
+     * @param depth Depth of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @param headless true to run without a SimulatorView
+     * @param firstPopulatedRow the first row given organisms
+     * @param endPopulatedRow the row after the last row given organisms
+     * @param populate false to leave the field empty until reset is called
+     */
+    private Simulator(int depth, int width, boolean headless, int firstPopulatedRow, int endPopulatedRow, boolean populate) {
         if(width <= 0 || depth <= 0) {
             System.out.println("The dimensions must be greater than zero.");
             System.out.println("Using default values.");
             depth = DEFAULT_DEPTH;
             width = DEFAULT_WIDTH;
         }
+        this.firstPopulatedRow = firstPopulatedRow;
+        this.endPopulatedRow = endPopulatedRow;
 
         // setting all possible entities
-        possibleEntities = new ArrayList<>();
-        setAllPossibleEntities();
+        possibleEntities = createDefaultEntities();
+        for (EntityStats entity : possibleEntities) {
+            giveSpeciesId(entity);
+        }
 
         // making them the default starting entities
         DEFAULT_ENTITIES = new ArrayList<>();
@@ -71,23 +143,33 @@ public class Simulator {
         }
 
         currentSpeed = speeds.get(0);
+        currentFrameRate = frameRates.get(0);
         currentSpeedSymbol = speedSymbols.get(0);
 
         this.organisms = new ArrayList<>();
         this.field = new Field(depth, width);
-        this.weather = new Weather();
+        this.field.getProfiler().setEnabled(Boolean.getBoolean("simulator.profile"));
+        this.weather = new Weather(rand.split());
+        this.epidemic = new Epidemic(field);
+        this.epidemic.addDisease(new Disease(0.1, 0.2));
         //Create a view of the state of each location in the field.
-        this.view = new SimulatorView(depth, width, this, field);
+        this.view = headless ? null : new SimulatorView(depth, width, this, field);
 
         // Setup a valid starting point.
-        reset();
+        if (populate) {
+            reset();
+        }
         pickWeather();
     }
 
     /**
-     * setting up all the starting entities, all of these can be edited, removed or added to
+     * setting up all the starting entities, all of these can be edited, removed or added to.
+     * Every call makes new stats, with the species ids 0 upwards in the order of the list.
+     *
+     * @return the default entities
      */
-    private void setAllPossibleEntities() {
+    public static ArrayList<EntityStats> createDefaultEntities() {
+        ArrayList<EntityStats> possibleEntities = new ArrayList<>();
         AnimalStats predator1 = new AnimalStats("Wolf", EntityStats.EntityType.PREDATOR, Color.RED,  1.0,0.37, true, 15, 130, 2, 20);
         possibleEntities.add(predator1);
         AnimalStats predator2 = new AnimalStats("Eagle", EntityStats.EntityType.PREDATOR, Color.BLUE,  1.4,0.28, true,16, 150, 2, 16);
@@ -98,6 +180,22 @@ public class Simulator {
         possibleEntities.add(prey2);
         PlantStats plant1 = new PlantStats("Grapes", EntityStats.EntityType.PLANT, Color.GREEN,  1.0,0.01, 14, 5);
         possibleEntities.add(plant1);
+        for (int id = 0; id < possibleEntities.size(); id++) {
+            possibleEntities.get(id).setSpeciesId(id);
+        }
+
+        // the default food web: predators eat every prey and prey eat every plant, the animals
+        // also go back to it when their stats are reset to the defaults
+        for (EntityStats eater : possibleEntities) {
+            if (eater instanceof AnimalStats) {
+                for (EntityStats food : possibleEntities) {
+                    boolean eats = AnimalStats.eatsByDefault(eater.getEntityType(), food.getEntityType());
+                    ((AnimalStats) eater).setEats(food, eats);
+                    ((AnimalStats) eater).getDefaults().setEats(food, eats);
+                }
+            }
+        }
+        return possibleEntities;
     }
 
     /**
@@ -115,11 +213,20 @@ public class Simulator {
     }
 
     /**
-     * This method is responsible for adding an entity to the list of possible entities
+     * This method is responsible for adding an entity to the list of possible entities.
+     * The animals already there that eat its type by default start eating it, what the entity
+     * eats itself is left as it was chosen.
      *
      * @param entity the entity we wish to add to the possible entities
      */
     public void addEntityToPossibilities(EntityStats entity) {
+        giveSpeciesId(entity);
+        for (EntityStats eater : possibleEntities) {
+            if (eater instanceof AnimalStats && AnimalStats.eatsByDefault(eater.getEntityType(), entity.getEntityType())) {
+                ((AnimalStats) eater).setEats(entity, true);
+                ((AnimalStats) eater).getDefaults().setEats(entity, true);
+            }
+        }
         possibleEntities.add(entity);
     }
 
@@ -155,6 +262,28 @@ public class Simulator {
      * additionally updates the weather each day
      */
     private void checkForDayChange() {
+        updateDaytime();
+
+        if(time == 0) {
+            // do all changes
+            dayCount += 1;
+            pickWeather();
+        }
+    }
+
+    /**
+     * Move the clock on by one step and change the weather when a new day starts, without letting
+     * any organism act. Used by the coordinator of a distributed run, whose workers step the organisms.
+     */
+    void advanceClock() {
+        step++;
+        checkForDayChange();
+    }
+
+    /**
+     * Work out the time of the day and whether it is day or night from the step
+     */
+    private void updateDaytime() {
         // from 16 to 5 is night.
         time = step % STEP_PER_DAY;
         if(time < 4 || time > 16){
@@ -165,12 +294,6 @@ public class Simulator {
             daytime = "day";
             isDay = true;
         }
-
-        if(time == 0) {
-            // do all changes
-            dayCount += 1;
-            pickWeather();
-        }
     }
 
     /**
@@ -192,74 +315,453 @@ public class Simulator {
      * fox and rabbit.
      */
     public void simulateOneStep() {
+        long began = metrics != null ? System.nanoTime() : 0;
         step++;
+        StepProfiler profiler = field.getProfiler();
+        profiler.beginStep(getOrganismCount());
         // first calculate if it is day or night
         checkForDayChange();
 
-        // Provide space for newborn animals.
-        List<Organism> newOrganisms = new ArrayList<>();
-        // Let all animals act.
-        for (Iterator<Organism> it = organisms.iterator(); it.hasNext(); ) {
-            Organism entity = it.next();
-            entity.act(newOrganisms, isDay, this.weather);
-            if (!entity.getIsAlive()){
-                it.remove();
-            }else{
-                if(new Random().nextDouble() < 0.3){
-                    entity.addDisease(new Disease(0.1, 0.2 , entity));
-                }
-            }
+        if (parallelEngine != null) {
+            parallelEngine.step(organisms, field, step, isDay, this.weather);
+            scheduler.invalidate();
+        } else if (store != null) {
+            store.step(isDay, this.weather, profiler);
+        } else {
+            simulateSerially();
+        }
+        // nothing is placed between steps on other threads, so the emptied chunks can go
+        field.releaseEmptyChunks();
+        long start = profiler.start();
+        epidemic.step(step, this.weather);
+        start = profiler.lap(StepProfiler.Phase.DISEASE, start);
+        if (recorder != null) {
+            recorder.record(step, possibleEntities);
+            start = profiler.lap(StepProfiler.Phase.RECORDING, start);
         }
-
-        // Add the newly created organisms to the list.
-        organisms.addAll(newOrganisms);
         showStatus();
+        profiler.lap(StepProfiler.Phase.RENDERING, start);
+        profiler.endStep(step, getOrganismCount(), possibleEntities);
+        if (metrics != null) {
+            metrics.publish(this, System.nanoTime() - began);
+        }
+    }
+
+    /**
+     * Return the number of organisms, wherever they are held. Plants living on outside the field
+     * are counted too, so it can be more than the number of cells.
+     *
+     * @return the number of organisms
+     */
+    public int getOrganismCount() {
+        return store != null ? store.getOrganismCount() : organisms.size();
+    }
+
+    /**
+     * Let the awake organisms act one after the other on the current thread, the sleeping
+     * animals only grow older, see ActivityScheduler.
+     */
+    private void simulateSerially() {
+        scheduler.step(organisms, isDay, this.weather, field.getProfiler());
+    }
+
+    /**
+     * Choose what lies beyond the edges of the field, see Topology. This should be done
+     * between steps, the organisms stay where they are.
+     *
+     * @param topology the new topology
+     */
+    public void setTopology(Topology topology) {
+        field.setTopology(topology);
+    }
+
+    /**
+     * Choose whether a plant that lost its cell, to an animal eating it or to another plant, leaves
+     * the simulation at its next turn. By default it lives on outside the field, still growing and
+     * seeding, until it takes its cell back. This is a setting of the run, it is not saved in a
+     * checkpoint.
+     *
+     * @param dropOffFieldPlants true to take the plants outside the field out of the simulation
+     */
+    public void setDropOffFieldPlants(boolean dropOffFieldPlants) {
+        field.setDropOffFieldPlants(dropOffFieldPlants);
+    }
+
+    /**
+     * Step with the parallel engine from now on. Every entity draws from its own random stream
+     * so runs with the same seed and tile grid always produce the same results, whatever the
+     * number of threads.
+     *
+     * @param tileRows the number of tiles down the field
+     * @param tileCols the number of tiles across the field
+     * @param threads the number of threads to use
+     */
+    public void useParallelEngine(int tileRows, int tileCols, int threads) {
+        useSerialEngine();
+        parallelEngine = new ParallelEngine(tileRows, tileCols, threads);
+    }
+
+    /**
+     * Step on the current thread from now on, this is the default.
+     */
+    public void useSerialEngine() {
+        if (parallelEngine != null) {
+            parallelEngine.shutdown();
+            parallelEngine = null;
+        }
+        if (store != null) {
+            store.unload(organisms);
+            store = null;
+            epidemic.setHosts(null);
+            scheduler.invalidate();
+        }
+    }
+
+    /**
+     * Step on the current thread with the organisms held as arrays from now on, see EntityStore.
+     * The steps are the same as with the serial engine, diseases included, but the field holds
+     * one marker per species instead of the organisms. The store only steps on one thread, so it
+     * cannot be used with the parallel engine: call useSerialEngine first to leave it.
+     *
+     * @throws IllegalStateException if the parallel engine is stepping the simulation
+     */
+    public void useEntityStore() {
+        if (parallelEngine != null) {
+            throw new IllegalStateException("The entity store cannot be used with the parallel engine");
+        }
+        useSerialEngine();
+        store = new EntityStore(field);
+        store.load(organisms);
+        epidemic.setHosts(store);
+    }
+
+    /**
+     * A simple getter method to tell whether the entity store is stepping the simulation
+     *
+     * @return true if the organisms are held by the entity store
+     */
+    public boolean isUsingEntityStore() {
+        return store != null;
+    }
+
+    /**
+     * A simple getter method to tell which engine is stepping the simulation
+     *
+     * @return true if the parallel engine is used
+     */
+    public boolean isParallel() {
+        return parallelEngine != null;
     }
 
     /**
-     * removing an entity from the list of organisms
+     * removing an entity from the list of organisms, only the organisms of that entity are visited
+     * and they leave the field straight away
      *
      * @param entityStats the entity we wish to remove
      */
     public void removeFromOrganisms(EntityStats entityStats) {
-        organisms.removeIf(entity -> entity.getStats().equals(entityStats));
+        if (store != null) {
+            store.removeSpecies(entityStats);
+        } else {
+            scheduler.removeSpecies(organisms, entityStats);
+        }
     }
 
     /**
-     * updating the GUI and showing the current status of the simulation
+     * hand a snapshot of the current status of the simulation to the GUI, which displays it when it has time
      */
     public void showStatus() {
+        if (view == null) {
+            return;
+        }
         view.showStatus(step, field, daytime, dayCount, updateTime(), this.weather);
     }
 
+    /**
+     * Count how many of each possible entity are currently on the field.
+     * The field keeps these counts up to date, so this does not scan it.
+     *
+     * @return the counts, in the same order as getPossibleEntities()
+     */
+    public int[] countPopulation() {
+        int[] counts = new int[possibleEntities.size()];
+        for (int index = 0; index < counts.length; index++) {
+            counts[index] = field.getPopulation(possibleEntities.get(index));
+        }
+        return counts;
+    }
+
+    /**
+     * A simple getter method to return the step field
+     *
+     * @return the current step of the simulation
+     */
+    public int getStep() {
+        return step;
+    }
+
+    /**
+     * A simple getter method to return the isDay field
+     *
+     * @return true if it is currently day
+     */
+    public boolean isDay() {
+        return isDay;
+    }
+
+    /**
+     * A simple getter method to return the dayCount field
+     *
+     * @return the number of days that have passed
+     */
+    public int getDayCount() {
+        return dayCount;
+    }
+
+    /**
+     * A simple getter method to return the field
+     *
+     * @return the field the simulation takes place on
+     */
+    public Field getField() {
+        return field;
+    }
+
+    /**
+     * A simple getter method to return the weather field
+     *
+     * @return the current weather
+     */
+    public Weather getWeather() {
+        return weather;
+    }
+
+    /**
+     * A simple getter method to return the profiler of the simulation, it is switched on by
+     * setEnabled(true) or from the start by the system property simulator.profile=true
+     *
+     * @return the profiler measuring the steps
+     */
+    public StepProfiler getProfiler() {
+        return field.getProfiler();
+    }
+
+    /**
+     * A simple getter method to return the epidemic field
+     *
+     * @return the diseases spreading between the organisms
+     */
+    public Epidemic getEpidemic() {
+        return epidemic;
+    }
+
+    /**
+     * Save the whole state of the simulation to a file, see Checkpoint for the format.
+     *
+     * @param path the file to write, it is replaced if it exists
+     * @throws IOException if the file cannot be written
+     */
+    public void saveCheckpoint(Path path) throws IOException {
+        if (store == null) {
+            Checkpoint.save(this, path);
+            return;
+        }
+        store.unload(organisms);
+        epidemic.setHosts(null);
+        try {
+            Checkpoint.save(this, path);
+        } finally {
+            store.load(organisms);
+            epidemic.setHosts(store);
+        }
+    }
+
+    /**
+     * Continue the simulation from a file written by saveCheckpoint, instead of from a reset.
+     *
+     * @param path the file to read
+     * @throws IOException if the file cannot be read or was not written by saveCheckpoint
+     */
+    public void restoreCheckpoint(Path path) throws IOException {
+        stopRecording();
+        Checkpoint.restore(this, path);
+        scheduler.invalidate();
+        if (store != null) {
+            store.load(organisms);
+            epidemic.setHosts(store);
+        }
+        showStatus();
+        if (metrics != null) {
+            metrics.publish(this, -1);
+        }
+    }
+
+    /**
+     * Record every step from the current one on into a directory, so the run can be replayed
+     * with a StepLog. Recording stops when the simulation is reset or restored.
+     *
+     * @param directory the directory to record to, a log already there is replaced
+     * @throws IOException if the log cannot be created
+     */
+    public void startRecording(Path directory) throws IOException {
+        stopRecording();
+        recorder = new StepRecorder(field, directory, StepRecorder.DEFAULT_KEYFRAME_INTERVAL);
+        recorder.record(step, possibleEntities);
+    }
+
+    /**
+     * Stop recording, if the simulation is being recorded.
+     */
+    public void stopRecording() {
+        if (recorder != null) {
+            recorder.close();
+            recorder = null;
+        }
+    }
+
+    /**
+     * A simple getter method to tell whether the simulation is being recorded
+     *
+     * @return true if every step is being recorded
+     */
+    public boolean isRecording() {
+        return recorder != null;
+    }
+
+    /**
+     * Serve the metrics of the simulation on the loopback interface, see MetricsServer.
+     * Serving carries on across resets until stopMetrics is called.
+     *
+     * @param port the port to listen on, 0 to pick a free one
+     * @return the port the metrics are served on
+     * @throws IOException if the port cannot be bound
+     */
+    public int startMetrics(int port) throws IOException {
+        stopMetrics();
+        metrics = new MetricsServer(port);
+        metrics.publish(this, -1);
+        return metrics.getPort();
+    }
+
+    /**
+     * Stop serving the metrics, if they are being served.
+     */
+    public void stopMetrics() {
+        if (metrics != null) {
+            metrics.stop();
+            metrics = null;
+        }
+    }
+
+    /**
+     * A simple getter method to return the organisms field, for the classes saving the simulation
+     *
+     * @return the organisms of the simulation, in the order they act, empty while the entity store holds them
+     */
+    List<Organism> getOrganisms() {
+        return organisms;
+    }
+
+    /**
+     * A simple getter method to return the rand field, for the classes saving the simulation
+     *
+     * @return the randomizer of the simulation
+     */
+    Randomizer getRandomizer() {
+        return rand;
+    }
+
+    /**
+     * Put back the step and the number of days of a saved simulation.
+     *
+     * @param step the step of the saved simulation
+     * @param dayCount the number of days of the saved simulation
+     */
+    void restoreClock(int step, int dayCount) {
+        this.step = step;
+        this.dayCount = dayCount;
+        updateDaytime();
+    }
+
+    /**
+     * Replace the list of all possible entities, when a saved simulation is restored.
+     *
+     * @param possibleEntities the possible entities of the saved simulation
+     */
+    void setPossibleEntities(ArrayList<EntityStats> possibleEntities) {
+        this.possibleEntities = possibleEntities;
+        for (EntityStats entity : possibleEntities) {
+            giveSpeciesId(entity);
+        }
+    }
+
+    /**
+     * Make sure the species that join the simulation from now on get ids from the given one
+     * upwards, when a saved simulation brings back species that are no longer possible entities.
+     *
+     * @param speciesCount the number of species ids already taken, from 0 upwards
+     */
+    void reserveSpeciesIds(int speciesCount) {
+        nextSpeciesId = Math.max(nextSpeciesId, speciesCount);
+    }
+
+    /**
+     * Give a species joining the simulation the next id of the simulation unless it has one, e.g.
+     * as a clone of one of its species. The ids are handed out per simulation, so they stay small
+     * however many simulations a process runs.
+     *
+     * @param entity the species joining the simulation
+     */
+    private void giveSpeciesId(EntityStats entity) {
+        if (entity.getSpeciesId() < 0) {
+            entity.setSpeciesId(nextSpeciesId);
+        }
+        reserveSpeciesIds(entity.getSpeciesId() + 1);
+    }
+
     /**
      * Reset the simulation to a starting position.
      */
     public void reset() {
-        Randomizer.resetRandom();
+        stopRecording();
+        rand.completeReset();
 
         step = 0;
         time = 0;
         dayCount = 0;
         organisms.clear();
+        if (store != null) {
+            store.clear();
+        }
         populate();
-        this.weather.resetWeather();
+        scheduler.invalidate();
+        this.weather.resetWeather(rand.split());
+        this.epidemic.reset(rand.split().nextLong());
         pickWeather();
         // Show the starting state in the view.
         showStatus();
+        if (metrics != null) {
+            metrics.publish(this, -1);
+        }
     }
 
     /**
-     * Randomly populate the field with foxes and rabbits.
+     * Randomly populate the field with foxes and rabbits. Outside the populated rows the
+     * organisms are only drawn, so the rows that are populated do not depend on which they are.
      */
     private void populate() {
         field.clear();
         for(int row = 0; row < field.getDepth(); row++) {
+            boolean populated = row >= firstPopulatedRow && row < endPopulatedRow;
             for(int col = 0; col < field.getWidth(); col++) {
                 EntityStats newEntity = getRandomEntity(getChanceLimit());
                 if (newEntity != null && newEntity.isEnabled()) {
-                    Location location = new Location(row, col);
-                    addEntityToSimulator(newEntity, true, field, location);
+                    if (populated) {
+                        Location location = new Location(row, col);
+                        addEntityToSimulator(newEntity, true, field, location);
+                    } else {
+                        rand.split();
+                    }
                 }
             }
         }
@@ -271,6 +773,11 @@ public class Simulator {
     public void clearScreen() {
         field.clear();
         organisms.clear();
+        if (store != null) {
+            store.clear();
+        }
+        scheduler.invalidate();
+        epidemic.reset(rand.split().nextLong());
     }
 
     /**
@@ -282,18 +789,22 @@ public class Simulator {
      * @param location The location of the entity on the field
      */
     public void addEntityToSimulator(EntityStats entity, boolean randomAge, Field field, Location location) {
+        Organism organism = null;
         if (entity.getEntityType() == AnimalStats.EntityType.PREDATOR){
-            Predator predator = new Predator((AnimalStats) entity, randomAge, field, location);
-            organisms.add(predator);
+            organism = new Predator((AnimalStats) entity, randomAge, field, location, rand.split());
         }
         else if (entity.getEntityType() == AnimalStats.EntityType.PREY){
-            Prey prey = new Prey((AnimalStats) entity, randomAge, field, location);
-            organisms.add(prey);
+            organism = new Prey((AnimalStats) entity, randomAge, field, location, rand.split());
         }
         else if (entity.getEntityType() == AnimalStats.EntityType.PLANT) {
-            Plant plant = new Plant((PlantStats) entity, field, location);
-            organisms.add(plant);
+            organism = new Plant((PlantStats) entity, field, location, rand.split());
+        }
+        if (organism != null && store != null) {
+            store.adopt(organism);
+        } else if (organism != null) {
+            organisms.add(organism);
         }
+        scheduler.invalidate();
     }
 
     /**
@@ -303,7 +814,11 @@ public class Simulator {
      * @param location The location on the field we wish to remove the entity from
      */
     public void removeEntityInSimulator(Field field, Location location) {
-        field.clear(location);
+        if (store != null && field == this.field) {
+            store.clearCell(Field.pack(location.getRow(), location.getCol()));
+        } else {
+            field.clear(location);
+        }
     }
 
     /**
@@ -378,7 +893,8 @@ public class Simulator {
 
     /**
      * This method will increase the speed of the simulation
-     * This allows for more variance
+     * This allows for more variance. Every speed sets both the delay between
+     * steps and the frame rate of the view.
      */
     public void incSpeed() {
         int index = speeds.indexOf(currentSpeed) + 1;
@@ -386,25 +902,40 @@ public class Simulator {
             index = 0;
         }
         currentSpeed = speeds.get(index);
+        currentFrameRate = frameRates.get(index);
         currentSpeedSymbol = speedSymbols.get(index);
     }
 
+    /**
+     * A simple getter method to return the frame rate of the current speed
+     *
+     * @return how many times a second the view is redrawn
+     */
+    public int getFrameRate(){
+        return currentFrameRate;
+    }
+
     /**
      * The main method
      *
-     * @param args could be null
+     * @param args could be null, "--parallel" optionally followed by the number of
+     *             tiles down and across the field selects the parallel engine
      */
     public static void main(String[] args) {
         Simulator simulator = new Simulator();
+        if (args != null && args.length > 0 && args[0].equals("--parallel")) {
+            int tiles = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+            simulator.useParallelEngine(tiles, tiles, Runtime.getRuntime().availableProcessors());
+        }
         simulator.reset();
-        isRunning = true;
+        simulator.isRunning = true;
         while (true){
             // In case the simulation is paused.
-            while (!isRunning){
+            while (!simulator.isRunning){
                 simulator.delay(200);
             }
             simulator.simulateOneStep();
-            simulator.delay(currentSpeed);
+            simulator.delay(simulator.currentSpeed);
         }
     }
 }
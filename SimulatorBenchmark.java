@@ -0,0 +1,528 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Benchmarks of the hot paths of the simulation, run without any window.
+ * Every benchmark is warmed up first and then measured for a number of iterations of a fixed
+ * wall-clock time. The operations run in batches, and a benchmark can put its state back before
+ * every batch; only the batches themselves are timed. The score is the number of operations per
+ * second; the bytes the benchmark thread allocated during the batches are measured too, giving
+ * the allocation rate and the bytes per operation.
+ * The results can be written as JSON in the format of JMH, with the allocation figures under the
+ * same names as the JMH GC profiler, so they can be tracked over time with the usual tools.
+ *
+ * Micro benchmarks run on a default field after a few steps of simulation:
+ *   Field.adjacentLocations, Field.getFreeAdjacentLocations   one call for one location
+ *   Animal.findFood, Animal.findMate              one call for one animal, which finds nothing to eat; the
+ *                                                 animals are put back as they were before every batch
+ *   Epidemic.infect                               infecting a share of the organisms and stepping the epidemic
+ *   FieldStats.getPopulationDetails               counting the population of the field
+ * Macro benchmarks step the whole simulation on one thread:
+ *   Simulator.simulateOneStep                     one step, for several field sizes and densities; every
+ *                                                 batch of steps starts from the same checkpoint
+ *
+ * Usage: java -Djava.awt.headless=true SimulatorBenchmark [options]
+ *   --json FILE      write the results to FILE as JSON
+ *   --filter TEXT    only run the benchmarks whose name contains TEXT
+ *   --warmup N       the number of warmup iterations (default 3)
+ *   --iterations N   the number of measured iterations (default 5)
+ *   --time N         the length of an iteration in milliseconds (default 1000)
+ *
+ * @author Syraj Alkhalil and Cosmo Colman
+ * @version 2022.02.27 (2)
+ */
+public class SimulatorBenchmark {
+    private static final int[][] SIZES = {{120, 200}, {500, 500}, {1000, 1000}};    // The depth and width of the macro benchmarks
+    private static final double[] DENSITIES = {0.25, 1.0, 2.0};                     // The creation probabilities, relative to the default ones
+    private static final int LOCATIONS = 4096;                                      // The number of locations the micro benchmarks cycle through
+    private static final int ANIMALS = 256;                                         // The number of animals the micro benchmarks cycle through
+    private static final int WARMUP_STEPS = 50;                                     // The steps simulated before the micro benchmarks
+    private static final int MACRO_WARMUP_STEPS = 20;                               // The steps simulated before a macro benchmark is saved
+    private static final int MACRO_STEPS = 10;                                      // The steps of a batch of a macro benchmark
+    private static final double ERROR_Z = 3.29;                                     // The score error is the 99.9% confidence interval
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final int warmupIterations;                 // The number of iterations before measuring
+    private final int measurementIterations;            // The number of measured iterations
+    private final long iterationNanos;                  // The length of an iteration
+    private final String filter;                        // Only the benchmarks whose name contains this are run
+    private final List<String> results;                 // The JSON of every benchmark run so far
+    private long sink;                                  // Everything the operations return ends here, so the JIT cannot drop the work
+    private long measuredNanos;                         // The time the batches of the last iteration took
+    private long measuredBytes;                         // The bytes the batches of the last iteration allocated
+
+    /**
+     * An operation to measure.
+     */
+    private interface Operation {
+        /**
+         * Run the operation once.
+         *
+         * @return anything depending on the work done
+         */
+        long run();
+    }
+
+    /**
+     * Create a benchmark run.
+     *
+     * @param warmupIterations the number of iterations before measuring
+     * @param measurementIterations the number of measured iterations
+     * @param iterationMillis the length of an iteration in milliseconds
+     * @param filter only the benchmarks whose name contains this are run
+     */
+    public SimulatorBenchmark(int warmupIterations, int measurementIterations, long iterationMillis, String filter) {
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = Math.max(1, measurementIterations);
+        this.iterationNanos = iterationMillis * 1_000_000L;
+        this.filter = filter;
+        this.results = new ArrayList<>();
+    }
+
+    /**
+     * Run every benchmark matching the filter.
+     */
+    public void runAll() {
+        System.out.printf("%-34s %-30s %5s %14s   %12s %12s%n", "Benchmark", "(params)", "Cnt", "Score", "Error", "B/op");
+        runMicroBenchmarks();
+        runMacroBenchmarks();
+        // keeps the sink alive
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+
+    /**
+     * Run the micro benchmarks, on a default field after a few steps.
+     */
+    private void runMicroBenchmarks() {
+        Simulator simulator = new Simulator(120, 200, true);
+        simulator.reset();
+        for (int step = 0; step < WARMUP_STEPS; step++) {
+            simulator.simulateOneStep();
+        }
+        Field field = simulator.getField();
+        RandomStream rand = new RandomStream(1);
+        Location[] locations = new Location[LOCATIONS];
+        for (int index = 0; index < LOCATIONS; index++) {
+            locations[index] = new Location(rand.nextInt(field.getDepth()), rand.nextInt(field.getWidth()));
+        }
+        List<Animal> animals = spacedAnimals(simulator);
+        Runnable restoreAnimals = restorer(field, animals);
+        // a new species eats nothing, so every neighbour is looked at and nothing is eaten
+        AnimalStats nothingToEat = new AnimalStats();
+        Weather weather = simulator.getWeather();
+        int[] next = new int[1];
+
+        measure("Field.adjacentLocations", "", 256, () -> () ->
+                field.adjacentLocations(locations[next[0]++ & (LOCATIONS - 1)], rand).size());
+        measure("Field.getFreeAdjacentLocations", "", 256, () -> () ->
+                field.getFreeAdjacentLocations(locations[next[0]++ & (LOCATIONS - 1)], rand).size());
+        // every animal is called once per batch, starting as it was before the first one
+        Runnable startAnimals = () -> {
+            restoreAnimals.run();
+            next[0] = 0;
+        };
+        measure("Animal.findFood", "", animals.size(), startAnimals, () -> () ->
+                animals.get(next[0]++).findFood(nothingToEat, weather) == null ? 0 : 1);
+        measure("Animal.findMate", "", animals.size(), startAnimals, () -> () -> {
+            Animal animal = animals.get(next[0]++);
+            return animal.findMate(animal) ? 1 : 0;
+        });
+        FieldStats stats = new FieldStats();
+        measure("FieldStats.getPopulationDetails", "", 256, () -> () ->
+                stats.getPopulationDetails(field).length());
+        for (double share : new double[]{0.01, 0.1}) {
+            Operation infect = infectingEpidemic(share);
+            measure("Epidemic.infect", "share=" + share, 1, () -> infect);
+        }
+    }
+
+    /**
+     * Pick animals far enough apart that no two of them look at the same cell, so calling one
+     * of them does not change what another finds around it.
+     *
+     * @param simulator the simulation to pick the animals from
+     * @return at most ANIMALS animals, at least three rows or columns apart
+     */
+    private static List<Animal> spacedAnimals(Simulator simulator) {
+        Field field = simulator.getField();
+        boolean[] taken = new boolean[field.getDepth() * field.getWidth()];
+        List<Animal> animals = new ArrayList<>();
+        for (Organism organism : simulator.getOrganisms()) {
+            if (!(organism instanceof Animal) || !organism.getIsAlive() || animals.size() == ANIMALS) {
+                continue;
+            }
+            int row = organism.getLocation().getRow();
+            int col = organism.getLocation().getCol();
+            if (taken[row * field.getWidth() + col]) {
+                continue;
+            }
+            animals.add((Animal) organism);
+            for (int takenRow = Math.max(0, row - 2); takenRow <= Math.min(field.getDepth() - 1, row + 2); takenRow++) {
+                for (int takenCol = Math.max(0, col - 2); takenCol <= Math.min(field.getWidth() - 1, col + 2); takenCol++) {
+                    taken[takenRow * field.getWidth() + takenCol] = true;
+                }
+            }
+        }
+        return animals;
+    }
+
+    /**
+     * Save the animals and the animals around them, which findFood and findMate change: the
+     * water level, the pregnancy and the random stream.
+     *
+     * @param field the field of the animals
+     * @param animals the animals the benchmark calls
+     * @return putting every saved animal back as it was
+     */
+    private static Runnable restorer(Field field, List<Animal> animals) {
+        List<Animal> saved = new ArrayList<>();
+        for (Animal animal : animals) {
+            saved.add(animal);
+            int row = animal.getLocation().getRow();
+            int col = animal.getLocation().getCol();
+            for (int direction = 0; direction < Field.NEIGHBOURS; direction++) {
+                int where = field.neighbour(row, col, direction);
+                if (where != Field.NO_LOCATION && field.getObjectAtPacked(where) instanceof Animal) {
+                    saved.add((Animal) field.getObjectAtPacked(where));
+                }
+            }
+        }
+        int count = saved.size();
+        boolean[] males = new boolean[count];
+        boolean[] pregnancies = new boolean[count];
+        int[] breedCounters = new int[count];
+        int[] foodLevels = new int[count];
+        int[] waterLevels = new int[count];
+        long[] seeds = new long[count];
+        long[] gammas = new long[count];
+        for (int index = 0; index < count; index++) {
+            Animal animal = saved.get(index);
+            males[index] = animal.getIsMale();
+            pregnancies[index] = animal.getIsPregnant();
+            breedCounters[index] = animal.getBreedCounter();
+            foodLevels[index] = animal.getFoodLevel();
+            waterLevels[index] = animal.getWaterLevel();
+            seeds[index] = animal.getRand().getSeed();
+            gammas[index] = animal.getRand().getGamma();
+        }
+        return () -> {
+            for (int index = 0; index < count; index++) {
+                Animal animal = saved.get(index);
+                animal.restoreState(males[index], pregnancies[index], breedCounters[index], foodLevels[index], waterLevels[index]);
+                animal.getRand().setState(seeds[index], gammas[index]);
+            }
+        };
+    }
+
+    /**
+     * Set up a field whose epidemic keeps going: every step a share of the organisms, taken in
+     * turn, is made susceptible again and infected with a disease that kills nobody. The
+     * organisms do not act, so the field stays the same from one step to the next.
+     *
+     * @param share the share of the organisms to infect every step
+     * @return infecting the organisms and stepping the epidemic once
+     */
+    private Operation infectingEpidemic(double share) {
+        Simulator simulator = new Simulator(120, 200, true);
+        simulator.reset();
+        Field field = simulator.getField();
+        Epidemic epidemic = simulator.getEpidemic();
+        int harmless = epidemic.addDisease(new Disease(0.1, 0.0));
+        List<Organism> organisms = new ArrayList<>(simulator.getOrganisms());
+        int perStep = Math.max(1, (int) (organisms.size() * share));
+        Weather weather = simulator.getWeather();
+        int[] step = new int[1];
+        return () -> {
+            for (int index = 0; index < perStep; index++) {
+                Organism organism = organisms.get((step[0] * perStep + index) % organisms.size());
+                Location location = organism.getLocation();
+                field.setCellState(Field.pack(location.getRow(), location.getCol()), Epidemic.SUSCEPTIBLE);
+                epidemic.infect(organism, harmless);
+            }
+            epidemic.step(++step[0], weather);
+            return epidemic.getInfectedCount();
+        };
+    }
+
+    /**
+     * Run the macro benchmarks, stepping the whole simulation at every size and density. The
+     * simulation is saved after a few steps and every batch of steps starts from there, so every
+     * iteration measures the same steps.
+     */
+    private void runMacroBenchmarks() {
+        if (!matches("Simulator.simulateOneStep")) {
+            return;
+        }
+        for (int[] size : SIZES) {
+            for (double density : DENSITIES) {
+                String params = "size=" + size[0] + "x" + size[1] + ",density=" + density;
+                Simulator simulator = new Simulator(size[0], size[1], true);
+                for (EntityStats entity : simulator.getPossibleEntities()) {
+                    entity.setCreationProbability(entity.getCreationProbability() * density);
+                }
+                simulator.reset();
+                for (int step = 0; step < MACRO_WARMUP_STEPS; step++) {
+                    simulator.simulateOneStep();
+                }
+                Path checkpoint = null;
+                try {
+                    checkpoint = Files.createTempFile("benchmark", ".checkpoint");
+                    simulator.saveCheckpoint(checkpoint);
+                    Path saved = checkpoint;
+                    Runnable restore = () -> {
+                        try {
+                            simulator.restoreCheckpoint(saved);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    };
+                    Operation step = () -> {
+                        simulator.simulateOneStep();
+                        return simulator.getStep();
+                    };
+                    measure("Simulator.simulateOneStep", params, MACRO_STEPS, restore, () -> step);
+                } catch (IOException e) {
+                    System.err.println("Could not save the simulation for " + params + ": " + e.getMessage());
+                } finally {
+                    deleteQuietly(checkpoint);
+                }
+            }
+        }
+    }
+
+    /**
+     * Delete a temporary file, if there is one.
+     */
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            path.toFile().deleteOnExit();
+        }
+    }
+
+    /**
+     * @param name the name of a benchmark
+     * @return true if the benchmark is to be run
+     */
+    private boolean matches(String name) {
+        return filter == null || name.contains(filter);
+    }
+
+    /**
+     * Warm up and measure a benchmark whose state needs no putting back.
+     *
+     * @param name the name of the benchmark
+     * @param params the parameters of the benchmark, as name=value separated by commas
+     * @param batchSize how many operations to run between two looks at the clock
+     * @param setUp called before every iteration, outside of the measurement, to get the operation
+     */
+    private void measure(String name, String params, int batchSize, Supplier<Operation> setUp) {
+        measure(name, params, batchSize, null, setUp);
+    }
+
+    /**
+     * Warm up and measure a benchmark, print its result and keep its JSON.
+     *
+     * @param name the name of the benchmark
+     * @param params the parameters of the benchmark, as name=value separated by commas
+     * @param batchSize how many operations to run between two looks at the clock
+     * @param reset called before every batch, outside of the measurement, null if there is nothing to put back
+     * @param setUp called before every iteration, outside of the measurement, to get the operation
+     */
+    private void measure(String name, String params, int batchSize, Runnable reset, Supplier<Operation> setUp) {
+        if (!matches(name)) {
+            return;
+        }
+        for (int iteration = 0; iteration < warmupIterations; iteration++) {
+            iterate(setUp.get(), batchSize, reset);
+        }
+        double[] scores = new double[measurementIterations];
+        double[] allocationRates = new double[measurementIterations];
+        double[] allocationsPerOp = new double[measurementIterations];
+        for (int iteration = 0; iteration < measurementIterations; iteration++) {
+            long ops = iterate(setUp.get(), batchSize, reset);
+            long nanos = measuredNanos;
+            long allocated = measuredBytes;
+            scores[iteration] = ops * 1e9 / nanos;
+            allocationRates[iteration] = allocated * 1e9 / nanos / (1024 * 1024);
+            allocationsPerOp[iteration] = (double) allocated / ops;
+        }
+        System.out.printf(Locale.ROOT, "%-34s %-30s %5d %14.3f \u00b1 %12.3f %12.1f%n", name, params, measurementIterations,
+                mean(scores), error(scores), mean(allocationsPerOp));
+        results.add(toJson(name, params, scores, allocationRates, allocationsPerOp));
+    }
+
+    /**
+     * Run an operation in batches until the batches took the length of an iteration. The time
+     * and the bytes allocated by the batches are left in measuredNanos and measuredBytes.
+     *
+     * @param operation the operation
+     * @param batchSize how many operations to run between two looks at the clock
+     * @param reset called before every batch, outside of the measurement, null if there is nothing to put back
+     * @return the number of operations run
+     */
+    private long iterate(Operation operation, int batchSize, Runnable reset) {
+        long ops = 0;
+        measuredNanos = 0;
+        measuredBytes = 0;
+        do {
+            if (reset != null) {
+                reset.run();
+            }
+            long allocatedBefore = THREADS.getCurrentThreadAllocatedBytes();
+            long startNanos = System.nanoTime();
+            for (int index = 0; index < batchSize; index++) {
+                sink += operation.run();
+            }
+            measuredNanos += System.nanoTime() - startNanos;
+            measuredBytes += THREADS.getCurrentThreadAllocatedBytes() - allocatedBefore;
+            ops += batchSize;
+        } while (measuredNanos < iterationNanos);
+        return ops;
+    }
+
+    /**
+     * @param values the values of every iteration
+     * @return their mean
+     */
+    private static double mean(double[] values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum / values.length;
+    }
+
+    /**
+     * @param values the values of every iteration
+     * @return the half width of their 99.9% confidence interval, 0 for a single iteration
+     */
+    private static double error(double[] values) {
+        if (values.length < 2) {
+            return 0;
+        }
+        double mean = mean(values);
+        double squares = 0;
+        for (double value : values) {
+            squares += (value - mean) * (value - mean);
+        }
+        return ERROR_Z * Math.sqrt(squares / (values.length - 1)) / Math.sqrt(values.length);
+    }
+
+    /**
+     * Write the result of a benchmark the way JMH does.
+     */
+    private String toJson(String name, String params, double[] scores, double[] allocationRates, double[] allocationsPerOp) {
+        StringBuilder json = new StringBuilder();
+        json.append("    {\n");
+        json.append("        \"benchmark\" : \"SimulatorBenchmark.").append(name).append("\",\n");
+        json.append("        \"mode\" : \"thrpt\",\n");
+        json.append("        \"threads\" : 1,\n");
+        json.append("        \"forks\" : 0,\n");
+        json.append("        \"jvm\" : \"").append(System.getProperty("java.home").replace("\\", "\\\\")).append("\",\n");
+        json.append("        \"jdkVersion\" : \"").append(System.getProperty("java.version")).append("\",\n");
+        json.append("        \"warmupIterations\" : ").append(warmupIterations).append(",\n");
+        json.append("        \"warmupTime\" : \"").append(iterationNanos / 1_000_000).append(" ms\",\n");
+        json.append("        \"measurementIterations\" : ").append(measurementIterations).append(",\n");
+        json.append("        \"measurementTime\" : \"").append(iterationNanos / 1_000_000).append(" ms\",\n");
+        if (!params.isEmpty()) {
+            json.append("        \"params\" : {\n");
+            String[] pairs = params.split(",");
+            for (int index = 0; index < pairs.length; index++) {
+                String[] pair = pairs[index].split("=");
+                json.append("            \"").append(pair[0]).append("\" : \"").append(pair[1]).append('"');
+                json.append(index < pairs.length - 1 ? ",\n" : "\n");
+            }
+            json.append("        },\n");
+        }
+        json.append("        \"primaryMetric\" : ").append(metricJson(scores, "ops/s")).append(",\n");
+        json.append("        \"secondaryMetrics\" : {\n");
+        json.append("            \"\u00b7gc.alloc.rate\" : ").append(metricJson(allocationRates, "MB/sec")).append(",\n");
+        json.append("            \"\u00b7gc.alloc.rate.norm\" : ").append(metricJson(allocationsPerOp, "B/op")).append("\n");
+        json.append("        }\n");
+        json.append("    }");
+        return json.toString();
+    }
+
+    /**
+     * Write one metric the way JMH does.
+     */
+    private static String metricJson(double[] values, String unit) {
+        StringBuilder raw = new StringBuilder();
+        for (int index = 0; index < values.length; index++) {
+            raw.append(index == 0 ? "" : ", ").append(String.format(Locale.ROOT, "%.6f", values[index]));
+        }
+        return String.format(Locale.ROOT, "{ \"score\" : %.6f, \"scoreError\" : %.6f, \"scoreUnit\" : \"%s\", \"rawData\" : [ [ %s ] ] }",
+                mean(values), error(values), unit, raw);
+    }
+
+    /**
+     * Write the results of every benchmark run so far to a file.
+     *
+     * @param path the file to write, it is replaced if it exists
+     * @throws IOException if the file cannot be written
+     */
+    public void writeJson(Path path) throws IOException {
+        Files.write(path, ("[\n" + String.join(",\n", results) + "\n]\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * The main method of a benchmark run, see the class comment for the options.
+     *
+     * @param args the command line options
+     * @throws IOException if the results cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        Path json = null;
+        String filter = null;
+        int warmup = 3;
+        int iterations = 5;
+        long millis = 1000;
+        for (int index = 0; index < args.length; index++) {
+            switch (args[index]) {
+                case "--json":
+                    json = Paths.get(args[++index]);
+                    break;
+                case "--filter":
+                    filter = args[++index];
+                    break;
+                case "--warmup":
+                    warmup = Integer.parseInt(args[++index]);
+                    break;
+                case "--iterations":
+                    iterations = Integer.parseInt(args[++index]);
+                    break;
+                case "--time":
+                    millis = Long.parseLong(args[++index]);
+                    break;
+                default:
+                    System.err.println("Unknown option " + args[index]);
+                    return;
+            }
+        }
+
+        SimulatorBenchmark benchmark = new SimulatorBenchmark(warmup, iterations, millis, filter);
+        benchmark.runAll();
+        if (json != null) {
+            benchmark.writeJson(json);
+        }
+    }
+}
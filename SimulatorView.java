@@ -5,6 +5,11 @@ import javax.swing.event.DocumentListener;
 import java.awt.event.*;
 import java.util.*;
 import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.*;
 
 /**
@@ -12,6 +17,10 @@ import java.util.function.*;
  * the number of animals present, the clock, the weather, etc...
  * The view displays a colored rectangle for each location
  * representing its contents. It uses a default background color.
+ *
+ * The simulation thread publishes a StatusSnapshot after every step and a Swing timer displays
+ * the latest one at the frame rate of the current speed. Snapshots taken while the previous one
+ * is still waiting to be displayed are skipped, so painting never holds the simulation back.
  * Colors for each type of species can be defined and changed during the simulation
  *
  * @author Syraj Alkhalil and Cosmo Colman
@@ -46,7 +55,6 @@ public class SimulatorView extends JFrame {
 
     // Components for MAIN -> SOUTH Population Stats Panel (pop stats)
     private JLabel popStats_TotalLabel, popStats_TypeLabel;
-    private ArrayList<Integer> popStats_EntityCount;
     private ArrayList<JLabel> popStats_EntityLabels;
 
     // Components for MAIN -> EAST -> NORTH Control Buttons (play pause)
@@ -77,6 +85,13 @@ public class SimulatorView extends JFrame {
     private JButton drawer_EnableButton;
     private boolean drawModeEnabled = false;
 
+    // Components for MAIN -> EAST -> CENTRE -> TAB5 Replay Panel (replay)
+    private JPanel replay_Panel;
+    private JButton replay_RecordButton, replay_OpenButton, replay_CloseButton;
+    private JSlider replay_StepSlider;
+    private StepLog replayLog;                                          // The recording being replayed, null when showing the simulation
+    private BufferedImage replayImage;                                  // The field of the recording at the step shown
+
     // Components for MAIN -> EAST -> SOUTH -> NORTH details Label
     private JLabel detailsLabel;        // For telling the user important details
 
@@ -100,6 +115,14 @@ public class SimulatorView extends JFrame {
 
     private final int height, width;
 
+    // Handing the snapshots from the simulation thread to the Swing thread
+    private static final int SNAPSHOT_IMAGES = 3;                      // One displayed, one waiting and one being taken
+    private final FieldRaster raster;                                   // The field, kept up to date by the simulation thread
+    private final AtomicReference<StatusSnapshot> pendingSnapshot = new AtomicReference<>();  // The latest snapshot not displayed yet
+    private final Queue<BufferedImage> freeImages = new ConcurrentLinkedQueue<>();            // Images no snapshot is using
+    private StatusSnapshot displayedSnapshot;                           // The snapshot on screen, only used on the Swing thread
+    private final javax.swing.Timer displayTimer;                       // Displays the latest snapshot at the frame rate
+
     /**
      * Create a view of the given width and height.
      *
@@ -114,7 +137,12 @@ public class SimulatorView extends JFrame {
         this.simulator = simulator;
         this.field = field;
         stats = new FieldStats();
-        fieldView = new FieldView(height, width);
+        raster = new FieldRaster(field, EMPTY_COLOR);
+        for (int index = 0; index < SNAPSHOT_IMAGES; index++){
+            freeImages.add(raster.createCompatibleImage());
+        }
+        fieldView = new FieldView(raster.getImage().getHeight(), raster.getImage().getWidth(), raster.getScale());
+        displayTimer = new javax.swing.Timer(1000 / simulator.getFrameRate(), e -> displayLatestSnapshot());
         mainPanel = getContentPane();
 
         setupInspector();
@@ -140,6 +168,7 @@ public class SimulatorView extends JFrame {
         setSize(new Dimension(1681,948));
         setDefaultCloseOperation(EXIT_ON_CLOSE);
         setVisible(true);
+        displayTimer.start();
     }
 
     /**
@@ -147,7 +176,7 @@ public class SimulatorView extends JFrame {
      * initialised everytime the tab is being drawn
      */
     private void setupTab1() {
-        spawnRate_seedTextField = new JTextField(Randomizer.getSeed() + "");
+        spawnRate_seedTextField = new JTextField(simulator.getRandomizer().getSeed() + "");
         spawnRate_seedResetButton = new JButton(restoreIcon);
         spawnRate_seedResetButton.setPreferredSize(SMALL_BUTTON_SIZE);
     }
@@ -170,12 +199,12 @@ public class SimulatorView extends JFrame {
                 inspectPanel.removeAll();
 
                 inspectFrame.setLocation(e.getXOnScreen() + 20, e.getYOnScreen() + 20);
-                int fieldX = e.getX()/(fieldView.getWidth()/width);
-                int fieldY = e.getY()/(fieldView.getHeight()/height);
+                Location cell = fieldView.getCellAt(e.getX(), e.getY());
 
-                Entity entity = (Entity)field.getObjectAt(fieldY, fieldX);
+                Entity entity = cell == null ? null : (Entity)field.getObjectAt(cell);
 
-                if (entity == null){
+                // a replay shows the recorded species, not the organisms on the field now
+                if (entity == null || replayLog != null){
                     inspectFrame.setVisible(false);
                 }
                 else {
@@ -230,11 +259,8 @@ public class SimulatorView extends JFrame {
         popStats_TypeLabel = new JLabel();
         addAll(popStats_Panel, popStats_TotalLabel, new JLabel("     ", JLabel.CENTER), popStats_TypeLabel, new JLabel("     ", JLabel.CENTER));
 
-        popStats_EntityCount = new ArrayList<>();
         popStats_EntityLabels = new ArrayList<>();
         for (EntityStats entity : simulator.getPossibleEntities()){
-            popStats_EntityCount.add(0);
-
             JLabel currentEntity = new JLabel();
             popStats_EntityLabels.add(currentEntity);
             popStats_Panel.add(currentEntity); // IF THIS BREAKS THEN USE INDEX OF
@@ -285,7 +311,7 @@ public class SimulatorView extends JFrame {
 
         fullResetButton.addActionListener(e -> {
             simulator.resetEntities();
-            Randomizer.restoreDefaultSeed();
+            simulator.getRandomizer().restoreDefaultSeed();
             refreshPanels();
             playPause_resetButton.doClick();
         });
@@ -350,6 +376,7 @@ public class SimulatorView extends JFrame {
         drawTab2Validate(valEdit_Panel, BorderLayout.CENTER);
         drawTab3Addend(addend_Panel, BorderLayout.CENTER);
         drawTab4Drawer(drawer_Panel, BorderLayout. CENTER);
+        drawTab5Replay(replay_Panel, BorderLayout.CENTER);
 
         simulator.showStatus();
     }
@@ -414,6 +441,7 @@ public class SimulatorView extends JFrame {
         playPause_speedButton.addActionListener(e -> {
             simulator.incSpeed();
             playPause_speedButton.setText(simulator.getSpeedSymbol());
+            displayTimer.setDelay(1000 / simulator.getFrameRate());
         });
         // Steps the simulation forward by one
         playPause_stepButton.addActionListener(e -> simulator.simulateOneStep());
@@ -434,6 +462,9 @@ public class SimulatorView extends JFrame {
 
         tabMenu_TabbedPane.setEnabledAt(3, isEnabled);
         drawer_EnableButton.setEnabled(isEnabled);
+
+        tabMenu_TabbedPane.setEnabledAt(4, isEnabled);
+        updateReplayControls();
     }
 
     /**
@@ -495,6 +526,14 @@ public class SimulatorView extends JFrame {
         String TAB4_TOOLTIP = "Draw entities on the simulation";
         tabMenu_TabbedPane.setToolTipTextAt(3, TAB4_TOOLTIP);
 
+        // Tab 5
+        replay_Panel = new JPanel(new BorderLayout());
+        drawTab5Replay(replay_Panel, BorderLayout.CENTER);
+        String TAB5_NAME = "Replay";
+        tabMenu_TabbedPane.addTab(TAB5_NAME, replay_Panel);
+        String TAB5_TOOLTIP = "Record the simulation and scrub through recordings";
+        tabMenu_TabbedPane.setToolTipTextAt(4, TAB5_TOOLTIP);
+
         setTabsEnabled(simulator.isRunning());
         panel.add(tabMenu_TabbedPane, layout);
     }
@@ -583,14 +622,14 @@ public class SimulatorView extends JFrame {
                 if ((((character < '0') || (character > '9')) && (character != KeyEvent.VK_BACK_SPACE)) || (spawnRate_seedTextField.getText().length() > 8)) {
                     e.consume();
                 }
-                Randomizer.setSeed(Integer.parseInt(spawnRate_seedTextField.getText()));
+                simulator.getRandomizer().setSeed(Integer.parseInt(spawnRate_seedTextField.getText()));
             }
         });
 
         // Resets the field
         spawnRate_seedResetButton.addActionListener(e -> {
-            Randomizer.restoreDefaultSeed();
-            spawnRate_seedTextField.setText(Randomizer.getSeed() + "");
+            simulator.getRandomizer().restoreDefaultSeed();
+            spawnRate_seedTextField.setText(simulator.getRandomizer().getSeed() + "");
         });
 
         //Creates listener for each existing entity in the simulation
@@ -783,6 +822,7 @@ public class SimulatorView extends JFrame {
         newEntity = new EntityStats();
         AnimalStats newAnimal = new AnimalStats();
         PlantStats newPlant = new PlantStats();
+        Map<EntityStats, JCheckBox> dietBoxes = new LinkedHashMap<>();
 
         GridBagConstraints gbc = new GridBagConstraints();
         gbc.gridx = 0;
@@ -802,6 +842,10 @@ public class SimulatorView extends JFrame {
                 newEntity = newAnimal;
             }
             newEntity.setEntityType(type);
+            // start from the default food web of the type, the boxes update the diet
+            for (Map.Entry<EntityStats, JCheckBox> dietBox : dietBoxes.entrySet()) {
+                dietBox.getValue().setSelected(AnimalStats.eatsByDefault(type, dietBox.getKey().getEntityType()));
+            }
 
             addend_Container.removeAll();
             addend_Container.add(typePanel.get(type),BorderLayout.CENTER);
@@ -887,6 +931,22 @@ public class SimulatorView extends JFrame {
         createSlider(inputBoxesPanel, 9, "Max Litter Size", AnimalStats.MAXLITTERSIZE_MAX, newAnimal::getMaxLitterSize, newAnimal::setMaxLitterSize);
         createSlider(inputBoxesPanel, 11, "Hunger Value", AnimalStats.HUNGERVALUE_MAX, newAnimal::getHungerValue, newAnimal::setHungerValue);
 
+        gbc = new GridBagConstraints();
+        gbc.gridx = 0;
+        gbc.gridy = 13;
+        gbc.gridwidth = 2;
+        gbc.anchor = GridBagConstraints.WEST;
+        inputBoxesPanel.add(new JLabel("Eats:"), gbc);
+
+        for (EntityStats food : simulator.getPossibleEntities()) {
+            JCheckBox foodBox = new JCheckBox(food.getName(), AnimalStats.eatsByDefault(newAnimal.getEntityType(), food.getEntityType()));
+            newAnimal.setEats(food, foodBox.isSelected());
+            foodBox.addItemListener(e -> newAnimal.setEats(food, foodBox.isSelected()));
+            gbc.gridy++;
+            inputBoxesPanel.add(foodBox, gbc);
+            dietBoxes.put(food, foodBox);
+        }
+
         typePanel = new HashMap<>();
         typePanel.put(EntityStats.EntityType.PREY, inputBoxesPanel);
         typePanel.put(EntityStats.EntityType.PREDATOR, inputBoxesPanel);
@@ -1065,8 +1125,12 @@ public class SimulatorView extends JFrame {
                          {2, -1}, {2, 0}, {2, 1}};
 
         Consumer<MouseEvent> draw = (e) -> {
-            int fieldX = e.getX()/(fieldView.getWidth()/width);
-            int fieldY = e.getY()/(fieldView.getHeight()/height);
+            Location cell = fieldView.getCellAt(e.getX(), e.getY());
+            if (cell == null){
+                return;
+            }
+            int fieldX = cell.getCol();
+            int fieldY = cell.getRow();
 
             int[][] translations;
             if (smallBrush.isSelected() || smallEraser.isSelected()){
@@ -1166,6 +1230,161 @@ public class SimulatorView extends JFrame {
         panel.updateUI();
     }
 
+    /**
+     * Initialises the fifth tab of the TabbedPane, the Replay tab.
+     * This tab lets you record the simulation and scrub through a recording step by step.
+     *
+     * @param panel The panel you want to initialise components to.
+     * @param layout The position to assign the components.
+     */
+    private void drawTab5Replay(JPanel panel, String layout){
+        panel.removeAll();
+
+        replay_RecordButton = new JButton();
+        panel.add(replay_RecordButton, BorderLayout.NORTH);
+
+        JPanel replay_OptionsPanel = new JPanel(new GridBagLayout());
+        panel.add(replay_OptionsPanel, layout);
+
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.gridx = 0;
+        gbc.gridy = 0;
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        replay_OpenButton = new JButton("Open Recording");
+        replay_OptionsPanel.add(replay_OpenButton, gbc);
+
+        gbc.gridy++;
+        replay_StepSlider = new JSlider(0, 0, 0);
+        replay_OptionsPanel.add(replay_StepSlider, gbc);
+
+        gbc.gridy++;
+        replay_CloseButton = new JButton("Close Replay");
+        replay_OptionsPanel.add(replay_CloseButton, gbc);
+
+        replay_RecordButton.addActionListener(e -> {
+            if (simulator.isRecording()){
+                simulator.stopRecording();
+                setDetailText("Recording stopped", SUCCESS_COLOR);
+            }
+            else {
+                JFileChooser chooser = new JFileChooser();
+                chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+                if (chooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION){
+                    try {
+                        simulator.startRecording(chooser.getSelectedFile().toPath());
+                        setDetailText("Recording every step from step " + simulator.getStep(), SUCCESS_COLOR);
+                    } catch (IOException exception) {
+                        setDetailText("Cannot record: " + exception.getMessage(), FAIL_COLOR);
+                    }
+                }
+            }
+            updateReplayControls();
+        });
+
+        replay_OpenButton.addActionListener(e -> {
+            JFileChooser chooser = new JFileChooser();
+            chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+            if (chooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION){
+                try {
+                    StepLog log = new StepLog(chooser.getSelectedFile().toPath());
+                    if (log.getDepth() != height || log.getWidth() != width){
+                        setDetailText("The recording is of a " + log.getDepth() + " by " + log.getWidth() + " field", FAIL_COLOR);
+                        return;
+                    }
+                    replayLog = log;
+                    replayImage = raster.createCompatibleImage();
+                    setSimulationControlsEnabled(false);
+                    replay_StepSlider.setMinimum(log.getFirstStep());
+                    replay_StepSlider.setMaximum(log.getLastStep());
+                    replay_StepSlider.setValue(log.getFirstStep());
+                    showReplayStep(log.getFirstStep());
+                } catch (IOException exception) {
+                    setDetailText("Cannot open the recording: " + exception.getMessage(), FAIL_COLOR);
+                }
+            }
+            updateReplayControls();
+        });
+
+        replay_StepSlider.addChangeListener(e -> {
+            if (replayLog != null){
+                showReplayStep(replay_StepSlider.getValue());
+            }
+        });
+
+        replay_CloseButton.addActionListener(e -> {
+            replayLog = null;
+            replayImage = null;
+            setSimulationControlsEnabled(true);
+            updateReplayControls();
+            // the latest snapshot of the simulation takes the place of the recording
+            simulator.showStatus();
+        });
+
+        updateReplayControls();
+        panel.updateUI();
+    }
+
+    /**
+     * Enable the controls of the Replay tab that make sense at the moment.
+     */
+    private void updateReplayControls(){
+        if (replay_RecordButton == null){
+            return;
+        }
+        boolean isReplaying = replayLog != null;
+        boolean isPaused = !simulator.isRunning();
+        replay_RecordButton.setText(simulator.isRecording() ? "Stop Recording" : "Start Recording");
+        replay_RecordButton.setEnabled(isPaused && !isReplaying);
+        replay_OpenButton.setEnabled(isPaused && !isReplaying);
+        replay_StepSlider.setEnabled(isReplaying);
+        replay_CloseButton.setEnabled(isReplaying);
+    }
+
+    /**
+     * Enable or disable everything that changes the simulation, so it cannot be played or changed
+     * while a recording is replayed.
+     *
+     * @param isEnabled The state you want to set the controls
+     */
+    private void setSimulationControlsEnabled(boolean isEnabled){
+        for (Component component : playPause_Panel.getComponents()) {
+            component.setEnabled(isEnabled);
+        }
+        fullResetButton.setEnabled(isEnabled);
+        for (int index = 0; index < 4; index++){
+            tabMenu_TabbedPane.setEnabledAt(index, isEnabled);
+        }
+    }
+
+    /**
+     * Show the field of the recording being replayed at a step, instead of the simulation.
+     *
+     * @param step a recorded step
+     */
+    private void showReplayStep(int step){
+        try {
+            replayLog.seek(step);
+        } catch (IOException exception) {
+            setDetailText("Cannot read the recording: " + exception.getMessage(), FAIL_COLOR);
+            return;
+        }
+        replayLog.render(((DataBufferInt) replayImage.getRaster().getDataBuffer()).getData(), raster.getScale(), EMPTY_COLOR.getRGB());
+
+        int time = step % Simulator.STEP_PER_DAY;
+        simStats_StepLabel.setText(SIMSTATS_STEP_PREFIX + step + " (replay)");
+        simStats_TimeLabel.setText(SIMSTATS_TIME_PREFIX + String.format("%02d:00", time));
+        simStats_DaytimeLabel.setText(SIMSTATS_DAYTIME_PREFIX + (time < 4 || time > 16 ? "night" : "day"));
+        simStats_DayCountLabel.setText(SIMSTATS_DAYCOUNT_PREFIX + step / Simulator.STEP_PER_DAY);
+        enview_clock.setIcon(enview_clockFaces.get(time));
+
+        popStats_TotalLabel.setText("Total Population: " + replayLog.getTotalPopulation());
+        popStats_TypeLabel.setText(replayLog.getPopulationDetails());
+        for (JLabel label : popStats_EntityLabels){
+            label.setText("");
+        }
+        fieldView.setImage(replayImage);
+    }
+
     /**
      * Creates a selection of components and event listeners and adds them to a panel.
      * @param panel panel to add the components to.
@@ -1331,63 +1550,86 @@ public class SimulatorView extends JFrame {
     }
 
     /**
-     * Show the current status of the field.
+     * Take a snapshot of the current status of the field and hand it to the Swing thread.
+     * On the simulation thread the snapshot is skipped if the previous one has not been
+     * displayed yet; when called from the Swing thread (after the user changed something)
+     * it always replaces the waiting one.
      * @param step Which iteration step it is.
      * @param field The field whose status is to be displayed.
+     * @param daytime "day" or "night".
+     * @param dayCount The number of days that have passed.
+     * @param time The time of the day.
+     * @param currentWeather The current weather.
      */
-    public void showStatus(int step, Field field, String daytime, int dayCount, String time, Weather currentWeather){
-        if(!isVisible()) {
-            setVisible(true);
+    public synchronized void showStatus(int step, Field field, String daytime, int dayCount, String time, Weather currentWeather){
+        if(!SwingUtilities.isEventDispatchThread() && pendingSnapshot.get() != null) {
+            // the display has not caught up, the changes are picked up by the next snapshot
+            return;
         }
 
-        simStats_StepLabel.setText(SIMSTATS_STEP_PREFIX + step);
-        simStats_TimeLabel.setText(SIMSTATS_TIME_PREFIX + time);
-        simStats_DaytimeLabel.setText(SIMSTATS_DAYTIME_PREFIX + daytime);
-        simStats_DayCountLabel.setText(SIMSTATS_DAYCOUNT_PREFIX + dayCount);
-        weather.setText("<html>"+ currentWeather.toString() +"</html>");
-        stats.reset();
+        // only the cells that changed since the last snapshot are redrawn
+        raster.update(simulator.getPossibleEntities());
+        BufferedImage image = freeImages.poll();
+        raster.copyTo(image);
+
+        // the field keeps the populations up to date so they are read rather than counted
+        ArrayList<EntityStats> entities = simulator.getPossibleEntities();
+        String[] entityLabels = new String[entities.size()];
+        for (int index = 0; index < entityLabels.length; index++){
+            EntityStats entity = entities.get(index);
+            entityLabels[index] = entity.getName() + ": " + field.getPopulation(entity);
+        }
 
-        enview_clock.setIcon(enview_clockFaces.get(step % Simulator.STEP_PER_DAY));
-        enview_clock.repaint();
-        enview_clock.revalidate();
+        StatusSnapshot snapshot = new StatusSnapshot(step, time, daytime, dayCount, currentWeather.toString(),
+                stats.getTotalCount(field), stats.getPopulationDetails(field), entityLabels, image);
+        StatusSnapshot skipped = pendingSnapshot.getAndSet(snapshot);
+        if(skipped != null) {
+            freeImages.add(skipped.getImage());
+        }
+    }
 
-        fieldView.preparePaint();
+    /**
+     * Display the latest snapshot, if there is a new one. This runs on the Swing thread.
+     */
+    private void displayLatestSnapshot(){
+        if(replayLog != null) {
+            // the snapshot waits until the replay is closed
+            return;
+        }
+        StatusSnapshot snapshot = pendingSnapshot.getAndSet(null);
+        if(snapshot == null) {
+            return;
+        }
+        if(displayedSnapshot != null) {
+            freeImages.add(displayedSnapshot.getImage());
+        }
+        displayedSnapshot = snapshot;
 
-        popStats_EntityCount = new ArrayList<>();
-        for (EntityStats entity : simulator.getPossibleEntities()){
-            popStats_EntityCount.add(0);
+        if(!isVisible()) {
+            setVisible(true);
         }
 
-        for(int row = 0; row < field.getDepth(); row++) {
-            for(int col = 0; col < field.getWidth(); col++) {
-                Entity animal = (Entity) field.getObjectAt(row, col);
-                if(animal != null) {
-                    int index = simulator.getPossibleEntities().indexOf(animal.getStats());
-                    if(index >= 0){
-                        popStats_EntityCount.set(simulator.getPossibleEntities().indexOf(animal.getStats()), popStats_EntityCount.get(index) + 1);
-                    }
+        simStats_StepLabel.setText(SIMSTATS_STEP_PREFIX + snapshot.getStep());
+        simStats_TimeLabel.setText(SIMSTATS_TIME_PREFIX + snapshot.getTime());
+        simStats_DaytimeLabel.setText(SIMSTATS_DAYTIME_PREFIX + snapshot.getDaytime());
+        simStats_DayCountLabel.setText(SIMSTATS_DAYCOUNT_PREFIX + snapshot.getDayCount());
+        weather.setText("<html>"+ snapshot.getWeather() +"</html>");
 
-                    stats.incrementCount(animal.getClass());
-                    fieldView.drawMark(col, row, animal.getStats().getColor());
-                }
-                else {
-                    fieldView.drawMark(col, row, EMPTY_COLOR);
-                }
-            }
-        }
-        stats.countFinished();
+        enview_clock.setIcon(enview_clockFaces.get(snapshot.getStep() % Simulator.STEP_PER_DAY));
+        enview_clock.repaint();
+        enview_clock.revalidate();
 
         // Constants for MAIN -> SOUTH Population Stats Panel (pop stats)
         String POPSTATS_TOTAL_PREFIX = "Total Population: ";
 
-
-        popStats_TotalLabel.setText(POPSTATS_TOTAL_PREFIX + stats.getTotalCount(field));
-        popStats_TypeLabel.setText(stats.getPopulationDetails(field));
-        for (EntityStats entity : simulator.getPossibleEntities()){
-            int index = simulator.getPossibleEntities().indexOf(entity);
-            popStats_EntityLabels.get(index).setText(entity.getName() + ": " + popStats_EntityCount.get(index));
+        popStats_TotalLabel.setText(POPSTATS_TOTAL_PREFIX + snapshot.getTotalCount());
+        popStats_TypeLabel.setText(snapshot.getPopulationDetails());
+        // the entities may have been added or removed since the snapshot was taken
+        int labels = Math.min(snapshot.getEntityLabelCount(), popStats_EntityLabels.size());
+        for (int index = 0; index < labels; index++){
+            popStats_EntityLabels.get(index).setText(snapshot.getEntityLabel(index));
         }
-        fieldView.repaint();
+        fieldView.setImage(snapshot.getImage());
     }
 
     /**
@@ -1395,27 +1637,31 @@ public class SimulatorView extends JFrame {
      * a nested class (a class defined inside a class) which
      * defines a custom component for the user interface. This
      * component displays the field.
+     * The field is shown as an image with one pixel per cell, which
+     * is scaled up to the size of the component when it is painted.
      * This is rather advanced GUI stuff - you can ignore this
      * for your project if you like.
      */
     private class FieldView extends JPanel
     {
         private final int GRID_VIEW_SCALING_FACTOR = 6;
+        private final int MAX_PREFERRED_SIZE = 1200;    // The view asks for no more pixels down or across
 
-        private final int gridWidth, gridHeight;
-        private int xScale, yScale;
-        Dimension size;
-        private Graphics g;
-        private Image fieldImage;
+        private final int gridWidth, gridHeight;        // The size of the image of the field
+        private final int cellsPerPixel;                // The number of cells down and across a pixel of the image stands for
+        private BufferedImage image;
 
         /**
          * Create a new FieldView component.
+         * @param height The height of the image of the field.
+         * @param width The width of the image of the field.
+         * @param cellsPerPixel The number of cells down and across a pixel of the image stands for.
          */
-        public FieldView(int height, int width)
+        public FieldView(int height, int width, int cellsPerPixel)
         {
             gridHeight = height;
             gridWidth = width;
-            size = new Dimension(0, 0);
+            this.cellsPerPixel = cellsPerPixel;
         }
 
         /**
@@ -1423,55 +1669,78 @@ public class SimulatorView extends JFrame {
          */
         public Dimension getPreferredSize()
         {
-            return new Dimension(gridWidth * GRID_VIEW_SCALING_FACTOR,
-                    gridHeight * GRID_VIEW_SCALING_FACTOR);
+            int scaling = Math.max(1, Math.min(GRID_VIEW_SCALING_FACTOR, MAX_PREFERRED_SIZE / Math.max(gridWidth, gridHeight)));
+            return new Dimension(gridWidth * scaling, gridHeight * scaling);
         }
 
         /**
-         * Prepare for a new round of painting. Since the component
-         * may be resized, compute the scaling factor again.
+         * Return the cell of the field under a point of the view.
+         * @param x The x coordinate of the point.
+         * @param y The y coordinate of the point.
+         * @return The location of the cell, null if the point is off the image.
          */
-        public void preparePaint()
+        public Location getCellAt(int x, int y)
         {
-            if(! size.equals(getSize())) {  // if the size has changed...
-                size = getSize();
-                fieldImage = fieldView.createImage(size.width, size.height);
-                g = fieldImage.getGraphics();
-
-                xScale = size.width / gridWidth;
-                if(xScale < 1) {
-                    xScale = GRID_VIEW_SCALING_FACTOR;
-                }
-                yScale = size.height / gridHeight;
-                if(yScale < 1) {
-                    yScale = GRID_VIEW_SCALING_FACTOR;
-                }
+            Dimension drawn = getDrawnSize();
+            if(x < 0 || y < 0 || x >= drawn.width || y >= drawn.height) {
+                return null;
+            }
+            int row = (int) ((long) y * gridHeight / drawn.height) * cellsPerPixel;
+            int col = (int) ((long) x * gridWidth / drawn.width) * cellsPerPixel;
+            return row < field.getDepth() && col < field.getWidth() ? new Location(row, col) : null;
+        }
+
+        /**
+         * Return the size the image is drawn at: a whole number of pixels per cell, or the size
+         * of the view if the image is larger than the view.
+         */
+        private Dimension getDrawnSize()
+        {
+            int xScale = getWidth() / gridWidth;
+            int yScale = getHeight() / gridHeight;
+            if(xScale < 1 || yScale < 1) {
+                return new Dimension(Math.max(1, getWidth()), Math.max(1, getHeight()));
             }
+            return new Dimension(gridWidth * xScale, gridHeight * yScale);
         }
 
         /**
-         * Paint on grid location on this field in a given color.
+         * Show a new image of the field.
+         * @param image The field, one pixel per cell or per square of cells for a large field.
          */
-        public void drawMark(int x, int y, Color color)
+        public void setImage(BufferedImage image)
         {
-            g.setColor(color);
-            g.fillRect(x * xScale, y * yScale, xScale-1, yScale-1);
+            this.image = image;
+            repaint();
         }
 
         /**
-         * The field view component needs to be redisplayed. Copy the
-         * internal image to screen.
+         * The field view component needs to be redisplayed. Draw the
+         * image of the field scaled to a whole number of pixels per
+         * cell, or to the size of the view if it does not fit, then
+         * the gaps between the cells.
          */
         public void paintComponent(Graphics g)
         {
-            if(fieldImage != null) {
-                Dimension currentSize = getSize();
-                if(size.equals(currentSize)) {
-                    g.drawImage(fieldImage, 0, 0, null);
+            super.paintComponent(g);
+            if(image == null) {
+                return;
+            }
+            Dimension drawn = getDrawnSize();
+            g.drawImage(image, 0, 0, drawn.width, drawn.height, null);
+
+            // leave a line of background between cells when they are big enough
+            int xScale = drawn.width / gridWidth;
+            int yScale = drawn.height / gridHeight;
+            g.setColor(getBackground());
+            if(xScale > 1) {
+                for(int col = 1; col <= gridWidth; col++) {
+                    g.fillRect(col * xScale - 1, 0, 1, gridHeight * yScale);
                 }
-                else {
-                    // Rescale the previous image.
-                    g.drawImage(fieldImage, 0, 0, currentSize.width, currentSize.height, null);
+            }
+            if(yScale > 1) {
+                for(int row = 1; row <= gridHeight; row++) {
+                    g.fillRect(0, row * yScale - 1, gridWidth * xScale, 1);
                 }
             }
         }
@@ -0,0 +1,139 @@
+import java.awt.image.BufferedImage;
+
+/**
+ * Everything the view shows about one step of the simulation, taken on the simulation thread
+ * and handed to the Swing thread to be displayed. The snapshot is never changed once it is
+ * published; the image belongs to the view, which only reuses it after the snapshot is no
+ * longer displayed or waiting to be.
+ *
+ * @author Syraj Alkhalil and Cosmo Colman
+ * @version 2022.02.27 (2)
+ */
+public class StatusSnapshot {
+    private final int step;                         // The step the snapshot was taken at
+    private final String time;                      // The time of the day, e.g. "07:00"
+    private final String daytime;                   // "day" or "night"
+    private final int dayCount;                     // The number of days that have passed
+    private final String weather;                   // The description of the weather
+    private final int totalCount;                   // The number of entities on the field
+    private final String populationDetails;         // The number of entities of every type
+    private final String[] entityLabels;            // The text of the label of every possible entity
+    private final BufferedImage image;              // The field, one pixel per cell
+
+    /**
+     * Create a snapshot.
+     *
+     * @param step the current step
+     * @param time the time of the day
+     * @param daytime "day" or "night"
+     * @param dayCount the number of days that have passed
+     * @param weather the description of the weather
+     * @param totalCount the number of entities on the field
+     * @param populationDetails the number of entities of every type
+     * @param entityLabels the text of the label of every possible entity
+     * @param image the field, one pixel per cell
+     */
+    public StatusSnapshot(int step, String time, String daytime, int dayCount, String weather, int totalCount,
+                          String populationDetails, String[] entityLabels, BufferedImage image) {
+        this.step = step;
+        this.time = time;
+        this.daytime = daytime;
+        this.dayCount = dayCount;
+        this.weather = weather;
+        this.totalCount = totalCount;
+        this.populationDetails = populationDetails;
+        this.entityLabels = entityLabels;
+        this.image = image;
+    }
+
+    /**
+     * A simple getter method to return the step field
+     *
+     * @return the step the snapshot was taken at
+     */
+    public int getStep() {
+        return step;
+    }
+
+    /**
+     * A simple getter method to return the time field
+     *
+     * @return the time of the day
+     */
+    public String getTime() {
+        return time;
+    }
+
+    /**
+     * A simple getter method to return the daytime field
+     *
+     * @return "day" or "night"
+     */
+    public String getDaytime() {
+        return daytime;
+    }
+
+    /**
+     * A simple getter method to return the dayCount field
+     *
+     * @return the number of days that have passed
+     */
+    public int getDayCount() {
+        return dayCount;
+    }
+
+    /**
+     * A simple getter method to return the weather field
+     *
+     * @return the description of the weather
+     */
+    public String getWeather() {
+        return weather;
+    }
+
+    /**
+     * A simple getter method to return the totalCount field
+     *
+     * @return the number of entities on the field
+     */
+    public int getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * A simple getter method to return the populationDetails field
+     *
+     * @return the number of entities of every type
+     */
+    public String getPopulationDetails() {
+        return populationDetails;
+    }
+
+    /**
+     * A simple getter method to return the number of entity labels
+     *
+     * @return the number of possible entities when the snapshot was taken
+     */
+    public int getEntityLabelCount() {
+        return entityLabels.length;
+    }
+
+    /**
+     * Return the text of the label of a possible entity.
+     *
+     * @param index the index of the entity in the possible entities
+     * @return the name and number of the entity
+     */
+    public String getEntityLabel(int index) {
+        return entityLabels[index];
+    }
+
+    /**
+     * A simple getter method to return the image field
+     *
+     * @return the field, one pixel per cell
+     */
+    public BufferedImage getImage() {
+        return image;
+    }
+}
@@ -0,0 +1,309 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads a log written by a StepRecorder and rebuilds the field at any recorded step, see
+ * StepRecorder for the format. The index and the segments are mapped read-only, so seeking
+ * reads the offset of a record straight out of the index and never scans the log: going to a
+ * step loads the keyframe at or before it and applies the few deltas after the keyframe.
+ * Moving forward by less than a keyframe interval only applies the deltas in between.
+ *
+ * Only the species in every cell are known, not the organisms themselves.
+ *
+ * @author Syraj Alkhalil and Cosmo Colman
+ * @version 2022.02.27 (2)
+ */
+public class StepLog {
+    private final Path directory;                       // Where the index and the segments are
+    private final MappedByteBuffer index;               // The mapping of the index file
+    private final int depth, width;                     // The size of the recorded field
+    private final int keyframeInterval;                 // The steps between two keyframes
+    private final long segmentSize;                     // The size of every segment file
+    private final int firstStep;                        // The first recorded step
+    private final int stepCount;                        // The number of recorded steps
+    private MappedByteBuffer[] segments;                // The mapped segments, mapped the first time they are read
+    private MappedByteBuffer reading;                   // The segment being read
+    private int readingNumber;                          // The number of the segment being read
+    private int readingAt;                              // Where the next value is read from in that segment
+
+    private final short[] species;                      // The species in every cell at the current step, 0 if empty
+    private int[] population = new int[1];              // The number of cells of every species at the current step
+    private int[] colours = new int[1];                 // The colour of every species defined so far
+    private String[] names = new String[1];             // The name of every species defined so far
+    private int currentStep = -1;                       // The step the cells are at, -1 before the first seek
+
+    /**
+     * Open a log. The steps recorded after it is opened are not seen.
+     *
+     * @param directory the directory the log was recorded to
+     * @throws IOException if the log cannot be read or was not written by a StepRecorder
+     */
+    public StepLog(Path directory) throws IOException {
+        this.directory = directory;
+        try (FileChannel channel = FileChannel.open(directory.resolve(StepRecorder.INDEX_FILE), StandardOpenOption.READ)) {
+            index = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (index.capacity() < StepRecorder.HEADER_SIZE || index.getInt(0) != StepRecorder.MAGIC) {
+            throw new IOException("Not a step log: " + directory);
+        }
+        if (index.getInt(4) < 1 || index.getInt(4) > StepRecorder.VERSION) {
+            throw new IOException("Unsupported step log version " + index.getInt(4));
+        }
+        depth = index.getInt(8);
+        width = index.getInt(12);
+        if ((long) depth * width > StepRecorder.MAX_CELLS) {
+            throw new IOException("The step log of a " + depth + " by " + width + " field has too many cells to replay");
+        }
+        keyframeInterval = index.getInt(StepRecorder.KEYFRAME_INTERVAL_AT);
+        segmentSize = index.getLong(StepRecorder.SEGMENT_SIZE_AT);
+        firstStep = index.getInt(StepRecorder.FIRST_STEP_AT);
+        stepCount = index.getInt(StepRecorder.STEP_COUNT_AT);
+        if (stepCount == 0) {
+            throw new IOException("The step log is empty: " + directory);
+        }
+        long lastOffset = index.getLong(StepRecorder.HEADER_SIZE + (stepCount - 1) * 8);
+        segments = new MappedByteBuffer[(int) (lastOffset / segmentSize) + 1];
+        species = new short[depth * width];
+    }
+
+    /**
+     * Rebuild the field at a step.
+     *
+     * @param step a step between getFirstStep() and getLastStep()
+     * @throws IOException if a segment cannot be read
+     */
+    public void seek(int step) throws IOException {
+        if (step < firstStep || step > getLastStep()) {
+            throw new IllegalArgumentException("Step " + step + " was not recorded");
+        }
+        int keyframe = firstStep + (step - firstStep) / keyframeInterval * keyframeInterval;
+        int from = keyframe;
+        if (currentStep >= keyframe && currentStep <= step) {
+            // already on the way, only the deltas in between are needed
+            from = currentStep + 1;
+        }
+        for (int next = from; next <= step; next++) {
+            apply(next);
+        }
+        currentStep = step;
+    }
+
+    /**
+     * Apply the record of a step to the cells. The record may run on over several segments.
+     *
+     * @param step the step of the record
+     * @throws IOException if its segment cannot be read
+     */
+    private void apply(int step) throws IOException {
+        long offset = index.getLong(StepRecorder.HEADER_SIZE + (step - firstStep) * 8);
+        readingNumber = (int) (offset / segmentSize);
+        reading = segment(readingNumber);
+        readingAt = (int) (offset % segmentSize);
+        if (reading.getInt(readingAt) != step) {
+            throw new IOException("The step log is damaged at step " + step);
+        }
+        int kind = reading.getInt(readingAt + 4);
+        int count = reading.getInt(readingAt + 8);
+        readingAt += StepRecorder.RECORD_HEADER_SIZE;
+        if (kind == StepRecorder.KEYFRAME) {
+            Arrays.fill(population, 0);
+            for (int cell = 0; cell < count; cell++) {
+                makeRoom(2);
+                short code = reading.getShort(readingAt);
+                readingAt += 2;
+                species[cell] = code;
+                countSpecies(code, 1);
+            }
+        } else {
+            for (int change = 0; change < count; change++) {
+                makeRoom(8);
+                int cell = reading.getInt(readingAt);
+                short code = reading.getShort(readingAt + 6);
+                countSpecies(reading.getShort(readingAt + 4), -1);
+                readingAt += 8;
+                species[cell] = code;
+                countSpecies(code, 1);
+            }
+        }
+
+        makeRoom(4);
+        int definitions = reading.getInt(readingAt);
+        readingAt += 4;
+        for (int definition = 0; definition < definitions; definition++) {
+            makeRoom(8);
+            int code = reading.getShort(readingAt);
+            int colour = reading.getInt(readingAt + 2);
+            byte[] name = new byte[reading.getShort(readingAt + 6)];
+            makeRoom(8 + name.length);
+            reading.get(readingAt + 8, name);
+            readingAt += 8 + name.length;
+            growSpecies(code);
+            colours[code] = colour;
+            names[code] = new String(name, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Change the population of a species.
+     *
+     * @param code the species id + 1
+     * @param change the number of cells gained or lost
+     */
+    private void countSpecies(int code, int change) {
+        growSpecies(code);
+        population[code] += change;
+    }
+
+    /**
+     * Make room in the tables of species for a species.
+     *
+     * @param code the species id + 1
+     */
+    private void growSpecies(int code) {
+        if (code >= population.length) {
+            int length = Math.max(code + 1, population.length * 2);
+            population = Arrays.copyOf(population, length);
+            colours = Arrays.copyOf(colours, length);
+            names = Arrays.copyOf(names, length);
+        }
+    }
+
+    /**
+     * Make sure the next value is in what is left of the segment being read, moving on to the
+     * next segment if it is not, as the StepRecorder did when writing it.
+     *
+     * @param bytes the size of the next value
+     * @throws IOException if the next segment cannot be read
+     */
+    private void makeRoom(int bytes) throws IOException {
+        if (segmentSize - readingAt < bytes) {
+            readingNumber++;
+            reading = segment(readingNumber);
+            readingAt = 0;
+        }
+    }
+
+    /**
+     * Map a segment the first time it is read.
+     *
+     * @param number the number of the segment
+     * @return the mapping of the segment
+     * @throws IOException if the segment cannot be read
+     */
+    private MappedByteBuffer segment(int number) throws IOException {
+        if (number >= segments.length) {
+            // the last record may run on into segments after the one it starts in
+            segments = Arrays.copyOf(segments, number + 1);
+        }
+        if (segments[number] == null) {
+            try (FileChannel channel = FileChannel.open(directory.resolve(StepRecorder.segmentName(number)), StandardOpenOption.READ)) {
+                segments[number] = channel.map(FileChannel.MapMode.READ_ONLY, 0, segmentSize);
+            }
+        }
+        return segments[number];
+    }
+
+    /**
+     * Colour an image of the field at the current step, every pixel showing the cell at the top
+     * left corner of the square of cells it stands for, as a FieldRaster does.
+     *
+     * @param pixels the pixels of the image, row * image width + col
+     * @param scale the number of cells down and across a pixel stands for, 1 for one pixel per cell
+     * @param emptyColour the colour of an empty cell, as an RGB int
+     */
+    public void render(int[] pixels, int scale, int emptyColour) {
+        int pixel = 0;
+        for (int row = 0; row < depth; row += scale) {
+            for (int col = 0; col < width; col += scale) {
+                short code = species[row * width + col];
+                pixels[pixel++] = code == StepRecorder.EMPTY ? emptyColour : colours[code];
+            }
+        }
+    }
+
+    /**
+     * Describe the population at the current step, the same way FieldStats does for a field.
+     *
+     * @return the name and number of every species on the field
+     */
+    public String getPopulationDetails() {
+        StringBuilder details = new StringBuilder();
+        for (int code = 1; code < population.length; code++) {
+            if (population[code] > 0) {
+                details.append(names[code]).append(": ").append(population[code]).append("    ");
+            }
+        }
+        return details.toString();
+    }
+
+    /**
+     * A simple getter method to return the number of occupied cells
+     *
+     * @return the number of occupied cells at the current step
+     */
+    public int getTotalPopulation() {
+        return species.length - population[StepRecorder.EMPTY];
+    }
+
+    /**
+     * Return the species in a cell at the current step.
+     *
+     * @param row the row of the cell
+     * @param col the column of the cell
+     * @return the name of the species, null if the cell is empty
+     */
+    public String getSpeciesAt(int row, int col) {
+        short code = species[row * width + col];
+        return code == StepRecorder.EMPTY ? null : names[code];
+    }
+
+    /**
+     * A simple getter method to return the firstStep field
+     *
+     * @return the first recorded step
+     */
+    public int getFirstStep() {
+        return firstStep;
+    }
+
+    /**
+     * A simple getter method to return the last recorded step
+     *
+     * @return the last recorded step
+     */
+    public int getLastStep() {
+        return firstStep + stepCount - 1;
+    }
+
+    /**
+     * A simple getter method to return the currentStep field
+     *
+     * @return the step the field was last rebuilt at, -1 if it never was
+     */
+    public int getCurrentStep() {
+        return currentStep;
+    }
+
+    /**
+     * A simple getter method to return the depth field
+     *
+     * @return the depth of the recorded field
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * A simple getter method to return the width field
+     *
+     * @return the width of the recorded field
+     */
+    public int getWidth() {
+        return width;
+    }
+}
@@ -0,0 +1,506 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Measures where the time of a step goes: how long every phase of the organisms and of the
+ * simulator takes, how many organisms of every species act, how many are born and die and how
+ * many bytes the threads stepping the simulation allocate.
+ *
+ * The profiler is off unless switched on with setEnabled, and while it is off every measuring
+ * point costs a single check. The organisms time their phases like this:
+ * <pre>
+ *     long start = profiler.start();
+ *     ...
+ *     start = profiler.lap(StepProfiler.Phase.AGING, start);
+ * </pre>
+ * Every thread measures into a recorder of its own, so the parallel engine never waits on the
+ * profiler. The recorders are added up once the step is over, into a StepSample kept for the
+ * last SAMPLES steps, into a histogram per phase kept for the whole run and into the JFR events
+ * StepEvent and SpeciesActsEvent, which Mission Control shows under "Simulation". Adding up and
+ * reading the results is synchronized on the profiler.
+ *
+ * @author Syraj Alkhalil and Cosmo Colman
+ * @version 2022.02.27 (2)
+ */
+public class StepProfiler {
+    /**
+     * The phases the time of a step is split into.
+     */
+    public enum Phase {
+        AGING,          // Animals getting older, hungrier and thirstier
+        FEEDING,        // Animals looking for food and eating it
+        MOVEMENT,       // Animals moving when they found no food
+        BREEDING,       // Organisms looking for a mate and giving birth
+        GROWTH,         // Plants growing
+        DISEASE,        // The epidemic spreading
+        RECORDING,      // The step recorder writing the step
+        RENDERING       // Handing the step to the view
+    }
+
+    private static final int PHASES = Phase.values().length;
+    private static final int BUCKETS = 64;                      // Histogram bucket b holds the times from 2^(b-1) to 2^b - 1 nanoseconds
+    private static final int SAMPLES = 1024;                    // The number of recent steps kept
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private volatile boolean enabled;                           // Whether anything is measured
+    private final ThreadLocal<Recorder> recorders = ThreadLocal.withInitial(this::newRecorder);
+    private final List<Recorder> allRecorders = new ArrayList<>();  // Every thread's recorder
+    private List<EntityStats> species = new ArrayList<>();      // The species of the simulation, to name the acts
+    private final long[][] histograms = new long[PHASES][BUCKETS];  // The times of every phase since the profiler was reset
+    private final long[] totalNanos = new long[PHASES];         // The total time of every phase since the profiler was reset
+    private int[] totalActs = new int[8];                       // The acts of every species since the profiler was reset, by species id
+    private final ArrayDeque<StepSample> samples = new ArrayDeque<>();  // The samples of the last steps, oldest first
+
+    private long stepStart;                                     // When the current step started, 0 if it is not measured
+    private int organismsBefore;                                // The number of organisms when the current step started
+    private StepEvent stepEvent;                                // The JFR event of the current step
+
+    /**
+     * Everything one thread measured during the current step.
+     */
+    private static class Recorder {
+        private final long threadId = Thread.currentThread().getId();
+        private final long[] phaseNanos = new long[PHASES];
+        private final long[][] histograms = new long[PHASES][BUCKETS];
+        private int[] acts = new int[8];
+        private int births;
+        private long allocatedBytes = allocatedBytes(threadId);  // The bytes the thread had allocated when it was last added up
+    }
+
+    /**
+     * Switch the profiler on or off. Switching it on or off in the middle of a step only
+     * affects the phases that start afterwards.
+     *
+     * @param enabled true to measure the steps from now on
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * A simple getter method to return the enabled field
+     *
+     * @return true if the steps are being measured
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Start timing a phase.
+     *
+     * @return the time now, 0 if the profiler is off
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Finish timing a phase and start timing the next one.
+     *
+     * @param phase the phase that is finished
+     * @param start what start() or the last lap() returned
+     * @return the time now, 0 if the phase was not timed
+     */
+    public long lap(Phase phase, long start) {
+        if (start == 0) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        long nanos = now - start;
+        Recorder recorder = recorders.get();
+        recorder.phaseNanos[phase.ordinal()] += nanos;
+        recorder.histograms[phase.ordinal()][BUCKETS - Long.numberOfLeadingZeros(nanos | 1)]++;
+        return now;
+    }
+
+    /**
+     * Let an organism act, counting the act and its newborns when the profiler is on.
+     *
+     * @param organism the organism
+     * @param newborns the list collecting the newborns
+     * @param isDay is it currently day or night
+     * @param weather the current weather
+     */
+    public void act(Organism organism, List<Organism> newborns, boolean isDay, Weather weather) {
+        if (!enabled) {
+            organism.act(newborns, isDay, weather);
+            return;
+        }
+        int before = newborns.size();
+        organism.act(newborns, isDay, weather);
+        countActs(organism.getStats().getSpeciesId(), 1, newborns.size() - before);
+    }
+
+    /**
+     * Count acts and their newborns when the profiler is on, for engines that do not act through
+     * act().
+     *
+     * @param speciesId the species that acted
+     * @param acts the number of organisms of the species that acted
+     * @param births the number of organisms they gave birth to
+     */
+    public void countActs(int speciesId, int acts, int births) {
+        if (!enabled) {
+            return;
+        }
+        Recorder recorder = recorders.get();
+        if (speciesId >= recorder.acts.length) {
+            recorder.acts = Arrays.copyOf(recorder.acts, Math.max(speciesId + 1, recorder.acts.length * 2));
+        }
+        recorder.acts[speciesId] += acts;
+        recorder.births += births;
+    }
+
+    /**
+     * Start measuring a step, called by the simulator before anything acts.
+     *
+     * @param organisms the number of organisms at the start of the step
+     */
+    public void beginStep(int organisms) {
+        stepStart = start();
+        if (stepStart == 0) {
+            return;
+        }
+        organismsBefore = organisms;
+        recorders.get();
+        stepEvent = new StepEvent();
+        stepEvent.begin();
+    }
+
+    /**
+     * Finish measuring a step, called by the simulator once every thread is done with it.
+     * The recorders of all threads are added up and emptied.
+     *
+     * @param step the step that is over
+     * @param organisms the number of organisms at the end of the step
+     * @param species the possible entities of the simulation, to name the acts
+     */
+    public void endStep(int step, int organisms, List<EntityStats> species) {
+        if (stepStart == 0) {
+            return;
+        }
+        long duration = System.nanoTime() - stepStart;
+        stepStart = 0;
+        StepSample sample = addUp(step, duration, organisms, species);
+        commitEvents(sample);
+    }
+
+    /**
+     * Add up and empty the recorders of all threads.
+     *
+     * @param step the step that is over
+     * @param duration the wall-clock time of the step
+     * @param organisms the number of organisms at the end of the step
+     * @param species the possible entities of the simulation
+     * @return the sample of the step
+     */
+    private synchronized StepSample addUp(int step, long duration, int organisms, List<EntityStats> species) {
+        this.species = species;
+        long[] phaseNanos = new long[PHASES];
+        int[] acts = new int[totalActs.length];
+        int births = 0;
+        long allocated = allocatedBytes(Thread.currentThread().getId()) < 0 ? -1 : 0;
+        for (Iterator<Recorder> it = allRecorders.iterator(); it.hasNext(); ) {
+            Recorder recorder = it.next();
+            for (int phase = 0; phase < PHASES; phase++) {
+                phaseNanos[phase] += recorder.phaseNanos[phase];
+                recorder.phaseNanos[phase] = 0;
+                for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                    histograms[phase][bucket] += recorder.histograms[phase][bucket];
+                }
+                Arrays.fill(recorder.histograms[phase], 0);
+            }
+            if (recorder.acts.length > acts.length) {
+                acts = Arrays.copyOf(acts, recorder.acts.length);
+            }
+            for (int id = 0; id < recorder.acts.length; id++) {
+                acts[id] += recorder.acts[id];
+            }
+            Arrays.fill(recorder.acts, 0);
+            births += recorder.births;
+            recorder.births = 0;
+            long now = allocatedBytes(recorder.threadId);
+            if (now >= 0 && allocated >= 0) {
+                allocated += now - recorder.allocatedBytes;
+                recorder.allocatedBytes = now;
+            } else if (allocated >= 0) {
+                // the thread is gone, a parallel engine that was shut down
+                it.remove();
+            }
+        }
+        if (acts.length > totalActs.length) {
+            totalActs = Arrays.copyOf(totalActs, acts.length);
+        }
+        for (int id = 0; id < acts.length; id++) {
+            totalActs[id] += acts[id];
+        }
+        for (int phase = 0; phase < PHASES; phase++) {
+            totalNanos[phase] += phaseNanos[phase];
+        }
+
+        StepSample sample = new StepSample(step, duration, phaseNanos, acts, births, organismsBefore + births - organisms, organisms, allocated);
+        if (samples.size() == SAMPLES) {
+            samples.removeFirst();
+        }
+        samples.addLast(sample);
+        return sample;
+    }
+
+    /**
+     * Emit the JFR events of a step, if a recording is taking them.
+     *
+     * @param sample the sample of the step
+     */
+    private void commitEvents(StepSample sample) {
+        stepEvent.end();
+        if (stepEvent.shouldCommit()) {
+            stepEvent.step = sample.getStep();
+            stepEvent.organisms = sample.getOrganisms();
+            stepEvent.births = sample.getBirths();
+            stepEvent.deaths = sample.getDeaths();
+            stepEvent.allocated = sample.getAllocatedBytes();
+            stepEvent.aging = sample.getPhaseNanos(Phase.AGING);
+            stepEvent.feeding = sample.getPhaseNanos(Phase.FEEDING);
+            stepEvent.movement = sample.getPhaseNanos(Phase.MOVEMENT);
+            stepEvent.breeding = sample.getPhaseNanos(Phase.BREEDING);
+            stepEvent.growth = sample.getPhaseNanos(Phase.GROWTH);
+            stepEvent.disease = sample.getPhaseNanos(Phase.DISEASE);
+            stepEvent.recording = sample.getPhaseNanos(Phase.RECORDING);
+            stepEvent.rendering = sample.getPhaseNanos(Phase.RENDERING);
+            stepEvent.commit();
+        }
+        stepEvent = null;
+
+        if (new SpeciesActsEvent().isEnabled()) {
+            for (EntityStats stats : species) {
+                if (sample.getActCount(stats) > 0) {
+                    SpeciesActsEvent actsEvent = new SpeciesActsEvent();
+                    actsEvent.step = sample.getStep();
+                    actsEvent.species = stats.getName();
+                    actsEvent.acts = sample.getActCount(stats);
+                    actsEvent.commit();
+                }
+            }
+        }
+    }
+
+    /**
+     * Create the recorder of the current thread and remember it, so it is added up at the end of every step.
+     *
+     * @return the new recorder
+     */
+    private synchronized Recorder newRecorder() {
+        Recorder recorder = new Recorder();
+        allRecorders.add(recorder);
+        return recorder;
+    }
+
+    /**
+     * @param threadId the id of a thread
+     * @return the bytes the thread allocated since it started, -1 if the JVM cannot tell or the thread is gone
+     */
+    private static long allocatedBytes(long threadId) {
+        return THREADS.isThreadAllocatedMemorySupported() && THREADS.isThreadAllocatedMemoryEnabled()
+                ? THREADS.getThreadAllocatedBytes(threadId) : -1;
+    }
+
+    /**
+     * Forget everything measured so far.
+     */
+    public synchronized void reset() {
+        for (long[] histogram : histograms) {
+            Arrays.fill(histogram, 0);
+        }
+        Arrays.fill(totalNanos, 0);
+        Arrays.fill(totalActs, 0);
+        samples.clear();
+    }
+
+    /**
+     * Return the samples of the last steps that were measured.
+     *
+     * @return up to SAMPLES samples, oldest first
+     */
+    public synchronized List<StepSample> getSamples() {
+        return new ArrayList<>(samples);
+    }
+
+    /**
+     * Return the sample of the last step that was measured.
+     *
+     * @return the sample, null if no step was measured
+     */
+    public synchronized StepSample getLastSample() {
+        return samples.peekLast();
+    }
+
+    /**
+     * Return the histogram of the times of a phase since the profiler was reset.
+     *
+     * @param phase the phase
+     * @return the number of times the phase took from 2^(b-1) to 2^b - 1 nanoseconds, for every bucket b
+     */
+    public synchronized long[] getHistogram(Phase phase) {
+        return histograms[phase.ordinal()].clone();
+    }
+
+    /**
+     * Return how many times a phase was timed since the profiler was reset.
+     *
+     * @param phase the phase
+     * @return the number of times the phase was timed
+     */
+    public synchronized long getCount(Phase phase) {
+        long count = 0;
+        for (long bucket : histograms[phase.ordinal()]) {
+            count += bucket;
+        }
+        return count;
+    }
+
+    /**
+     * Return the total time spent in a phase since the profiler was reset.
+     *
+     * @param phase the phase
+     * @return the time in nanoseconds, summed over the threads
+     */
+    public synchronized long getTotalNanos(Phase phase) {
+        return totalNanos[phase.ordinal()];
+    }
+
+    /**
+     * Estimate a percentile of the times of a phase, from its histogram.
+     *
+     * @param phase the phase
+     * @param percentile the percentile, between 0 and 100
+     * @return the longest time of the histogram bucket holding the percentile, in nanoseconds
+     */
+    public synchronized long getPercentileNanos(Phase phase, double percentile) {
+        long[] histogram = histograms[phase.ordinal()];
+        long wanted = (long) Math.ceil(getCount(phase) * percentile / 100);
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += histogram[bucket];
+            if (seen >= wanted && seen > 0) {
+                return bucket == BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Return how many organisms of a species acted since the profiler was reset.
+     *
+     * @param stats the species
+     * @return the number of acts
+     */
+    public synchronized long getActCount(EntityStats stats) {
+        int id = stats.getSpeciesId();
+        return id < totalActs.length ? totalActs[id] : 0;
+    }
+
+    /**
+     * Describe everything measured since the profiler was reset, one line per phase and per species.
+     *
+     * @return the description
+     */
+    public synchronized String getSummary() {
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format("%-10s %12s %14s %10s %10s %10s%n", "phase", "count", "total ms", "p50 ns", "p99 ns", "max ns"));
+        for (Phase phase : Phase.values()) {
+            summary.append(String.format("%-10s %12d %14.1f %10d %10d %10d%n", phase, getCount(phase), getTotalNanos(phase) / 1e6,
+                    getPercentileNanos(phase, 50), getPercentileNanos(phase, 99), getPercentileNanos(phase, 100)));
+        }
+        for (EntityStats stats : species) {
+            summary.append(String.format("%-10s %12d acts%n", stats.getName(), getActCount(stats)));
+        }
+        List<StepSample> recent = getSamples();
+        if (!recent.isEmpty()) {
+            long nanos = 0, allocated = 0;
+            int births = 0, deaths = 0;
+            for (StepSample sample : recent) {
+                nanos += sample.getDurationNanos();
+                allocated += sample.getAllocatedBytes();
+                births += sample.getBirths();
+                deaths += sample.getDeaths();
+            }
+            summary.append(String.format("last %d steps: %.3f ms, %d births, %d deaths, %d bytes allocated per step%n", recent.size(),
+                    nanos / 1e6 / recent.size(), births / recent.size(), deaths / recent.size(), allocated / recent.size()));
+        }
+        return summary.toString();
+    }
+
+    /**
+     * The JFR event of one step.
+     */
+    @Name("simulator.Step")
+    @Label("Simulation Step")
+    @Category("Simulation")
+    @Description("One step of the simulation and the time spent in each of its phases, summed over the threads")
+    static class StepEvent extends Event {
+        @Label("Step")
+        int step;
+        @Label("Organisms")
+        int organisms;
+        @Label("Births")
+        int births;
+        @Label("Deaths")
+        int deaths;
+        @Label("Allocated")
+        @DataAmount
+        long allocated;
+        @Label("Aging")
+        @Timespan
+        long aging;
+        @Label("Feeding")
+        @Timespan
+        long feeding;
+        @Label("Movement")
+        @Timespan
+        long movement;
+        @Label("Breeding")
+        @Timespan
+        long breeding;
+        @Label("Growth")
+        @Timespan
+        long growth;
+        @Label("Disease")
+        @Timespan
+        long disease;
+        @Label("Recording")
+        @Timespan
+        long recording;
+        @Label("Rendering")
+        @Timespan
+        long rendering;
+    }
+
+    /**
+     * The JFR event of the acts of one species during one step.
+     */
+    @Name("simulator.SpeciesActs")
+    @Label("Species Acts")
+    @Category("Simulation")
+    @Description("How many organisms of a species acted during a step")
+    static class SpeciesActsEvent extends Event {
+        @Label("Step")
+        int step;
+        @Label("Species")
+        String species;
+        @Label("Acts")
+        int acts;
+    }
+}
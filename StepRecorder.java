@@ -0,0 +1,357 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Records what the field looks like at every step into a directory, so a run can be replayed
+ * and scrubbed through later by a StepLog without simulating it again.
+ *
+ * Every step appends one record to a segment file: either the cells whose species changed since
+ * the step before, or every KEYFRAME_INTERVAL steps a keyframe holding the species of every cell.
+ * Records are written straight into the memory mapping of the segment, so recording a step
+ * costs one pass over the cells the field reports as changed and never waits for the disk; the
+ * operating system writes the pages out in its own time. Segments are sized for a couple of the
+ * largest records but never beyond MAX_SEGMENT_SIZE, so the records of a large field, keyframes
+ * above all, may run on into the next segment. A value never straddles two segments: when the
+ * next value does not fit in what is left of a segment, the rest of the segment is skipped and the
+ * value starts the next one. The header of a record, its step, kind and count, is kept together.
+ * The field may have at most MAX_CELLS cells.
+ *
+ * The directory holds an index file, INDEX_FILE, mapped as well:
+ *
+ *   header     MAGIC, VERSION, depth, width, keyframe interval, segment size, first step, number of steps
+ *   offsets    one long per step, the segment number * segment size + position of its record
+ *
+ * and the segment files, segment-00000.dat and so on, holding the records:
+ *
+ *   step, DELTA, number of changes, then every change as cell, old species, new species
+ *   step, KEYFRAME, number of cells, then the species of every cell, row * width + col
+ *
+ * each followed by the number of species definitions and every definition as species, colour and
+ * name. A species is defined in the first record it appears in, again whenever its colour changes
+ * and in every keyframe, so a reader starting from a keyframe knows every species. Species are
+ * written as shorts, the species id + 1, 0 meaning an empty cell. All numbers are big-endian.
+ *
+ * @author Syraj Alkhalil and Cosmo Colman
+ * @version 2022.02.27 (2)
+ */
+public class StepRecorder {
+    static final int MAGIC = 0x46585354;                        // "FXST"
+    static final int VERSION = 2;                               // Bumped whenever the format changes
+    static final String INDEX_FILE = "steps.idx";               // The name of the index file in the directory
+    static final int HEADER_SIZE = 64;                          // The bytes before the first offset of the index
+    static final int KEYFRAME_INTERVAL_AT = 16;                 // Where the fields of the header are
+    static final int SEGMENT_SIZE_AT = 20;
+    static final int FIRST_STEP_AT = 28;
+    static final int STEP_COUNT_AT = 32;
+    static final int DELTA = 0;                                 // The kinds of record
+    static final int KEYFRAME = 1;
+    static final int EMPTY = 0;                                 // The species of an empty cell
+    static final int RECORD_HEADER_SIZE = 12;                   // The step, kind and count starting every record
+    static final long MAX_CELLS = Integer.MAX_VALUE - 8;        // The most cells a log can hold, as many as an array
+
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 1000;   // The steps between two keyframes unless told otherwise
+    private static final long MIN_SEGMENT_SIZE = 64L << 20;     // The smallest segment, bigger fields get bigger ones
+    private static final long MAX_SEGMENT_SIZE = 1L << 30;      // The largest segment, well within what one mapping can hold
+    private static final int INITIAL_INDEX_STEPS = 1 << 16;     // The steps the index has room for at first, doubled when full
+    private static final int DEFINITIONS_ROOM = 1 << 16;        // The room kept for the species definitions of a record
+    private static final int MAX_NAME_LENGTH = 100;             // Longer names are cut in the log
+
+    private final Field field;                                  // The field being recorded
+    private final ChangeTracker changes;                        // The cells that changed since the last record
+    private final Path directory;                               // Where the index and the segments are
+    private final int keyframeInterval;                         // The steps between two keyframes
+    private final long segmentSize;                             // The size of every segment file
+    private final short[] recorded;                             // The species of every cell as of the last record
+    private int[] definedColours = new int[0];                  // The colour every species was last defined with, by species
+    private boolean[] defined = new boolean[0];                 // Whether every species was defined yet
+    private String[] names = new String[0];                     // The name of every species that was defined
+    private short[] pendingDefinitions = new short[8];          // The species to define at the end of the current record
+    private int pendingCount;                                   // The number of species in pendingDefinitions
+
+    private FileChannel indexChannel;                           // The index file, kept open so it can grow
+    private MappedByteBuffer index;                             // The mapping of the index file
+    private int indexCapacity;                                  // The number of steps the mapping has room for
+    private MappedByteBuffer segment;                           // The mapping of the segment being written
+    private int segmentNumber = -1;                             // The number of the segment being written
+    private int firstStep;                                      // The step of the first record
+    private int stepCount;                                      // The number of steps recorded
+    private int changeCount;                                    // The number of changes written in the current record
+
+    /**
+     * Start recording a field into a directory. Nothing is written until the first step is recorded.
+     * A log already in the directory is replaced.
+     *
+     * @param field the field to record
+     * @param directory the directory to write the log to, it is created if needed
+     * @param keyframeInterval the number of steps between two keyframes, more means a smaller log but slower seeking
+     * @throws IOException if the directory or the index cannot be created
+     * @throws IllegalArgumentException if the field has more than MAX_CELLS cells
+     */
+    public StepRecorder(Field field, Path directory, int keyframeInterval) throws IOException {
+        long cells = (long) field.getDepth() * field.getWidth();
+        if (cells > MAX_CELLS) {
+            throw new IllegalArgumentException("A " + field.getDepth() + " by " + field.getWidth()
+                    + " field has too many cells to record, at most " + MAX_CELLS + " can be");
+        }
+        this.field = field;
+        this.directory = directory;
+        this.keyframeInterval = Math.max(1, keyframeInterval);
+        // the largest record is a delta changing every cell
+        this.segmentSize = Math.min(MAX_SEGMENT_SIZE, Math.max(MIN_SEGMENT_SIZE, 2L * (RECORD_HEADER_SIZE + cells * 8L + DEFINITIONS_ROOM)));
+        this.recorded = new short[(int) cells];
+
+        Files.createDirectories(directory);
+        indexChannel = FileChannel.open(directory.resolve(INDEX_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        mapIndex(INITIAL_INDEX_STEPS);
+        index.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, field.getDepth()).putInt(12, field.getWidth());
+        index.putInt(KEYFRAME_INTERVAL_AT, this.keyframeInterval).putLong(SEGMENT_SIZE_AT, segmentSize);
+        this.changes = field.trackChanges();
+    }
+
+    /**
+     * Append the field as it is now. Steps must be recorded one after the other, the first one
+     * recorded is written as a keyframe.
+     *
+     * @param step the current step of the simulation
+     * @param species the possible entities, whose colours are kept up to date in the log
+     */
+    public void record(int step, List<EntityStats> species) {
+        if (stepCount == 0) {
+            firstStep = step;
+            index.putInt(FIRST_STEP_AT, firstStep);
+        } else if (step != firstStep + stepCount) {
+            throw new IllegalStateException("Step " + step + " recorded after step " + (firstStep + stepCount - 1));
+        }
+        if (stepCount == indexCapacity) {
+            try {
+                mapIndex(indexCapacity * 2);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        makeRoom(RECORD_HEADER_SIZE);
+        index.putLong(HEADER_SIZE + stepCount * 8, segmentNumber * segmentSize + segment.position());
+        segment.putInt(step);
+        if ((step - firstStep) % keyframeInterval == 0) {
+            writeKeyframe();
+        } else {
+            writeDelta();
+        }
+        for (EntityStats stats : species) {
+            noteSpecies(stats);
+        }
+        writeDefinitions();
+
+        // the step only counts once its record is complete, so a reader never sees half of it
+        stepCount++;
+        index.putInt(STEP_COUNT_AT, stepCount);
+    }
+
+    /**
+     * Write the species of every cell, read from the field itself.
+     */
+    private void writeKeyframe() {
+        changes.clear();
+        segment.putInt(KEYFRAME).putInt(recorded.length);
+        for (int cell = 0; cell < recorded.length; cell++) {
+            short species = speciesIn(cell);
+            recorded[cell] = species;
+            makeRoom(2);
+            segment.putShort(species);
+        }
+        // a reader starting here must learn every species, whether or not it is on the field
+        for (int code = 1; code < defined.length; code++) {
+            if (defined[code]) {
+                addPendingDefinition(code);
+            }
+        }
+    }
+
+    /**
+     * Write the cells whose species changed since the last record. The count is written
+     * last, once the changes have been counted, into the segment the record started in.
+     */
+    private void writeDelta() {
+        MappedByteBuffer header = segment;
+        int countAt = segment.position() + 4;
+        segment.putInt(DELTA).putInt(0);
+        changeCount = 0;
+        changes.drain(cell -> writeChange((int) cell));
+        header.putInt(countAt, changeCount);
+    }
+
+    /**
+     * Write a change if the species in a cell is not the one last recorded. A cell that was
+     * emptied and taken again by the same species during the step is not a change of the log.
+     *
+     * @param cell the index of a cell the field reported as changed
+     */
+    private void writeChange(int cell) {
+        short species = speciesIn(cell);
+        if (species != recorded[cell]) {
+            makeRoom(8);
+            segment.putInt(cell).putShort(recorded[cell]).putShort(species);
+            recorded[cell] = species;
+            changeCount++;
+        }
+    }
+
+    /**
+     * Find the species in a cell, noting species that still have to be defined.
+     *
+     * @param cell the index of the cell, row * width + col
+     * @return the species id + 1, EMPTY if the cell is empty
+     */
+    private short speciesIn(int cell) {
+        Entity occupant = (Entity) field.getObjectAt(cell / field.getWidth(), cell % field.getWidth());
+        if (occupant == null) {
+            return EMPTY;
+        }
+        return (short) noteSpecies(occupant.getStats());
+    }
+
+    /**
+     * Note a species, so it is defined at the end of the current record if it was never defined
+     * or its colour changed.
+     *
+     * @param stats the species
+     * @return the species id + 1
+     */
+    private int noteSpecies(EntityStats stats) {
+        int code = stats.getSpeciesId() + 1;
+        if (code > Short.MAX_VALUE) {
+            throw new IllegalStateException("Too many species to record");
+        }
+        if (code >= defined.length) {
+            int length = Math.max(code + 1, defined.length * 2);
+            defined = Arrays.copyOf(defined, length);
+            definedColours = Arrays.copyOf(definedColours, length);
+            names = Arrays.copyOf(names, length);
+        }
+        int colour = stats.getColor() == null ? 0 : stats.getColor().getRGB();
+        if (!defined[code] || definedColours[code] != colour) {
+            defined[code] = true;
+            definedColours[code] = colour;
+            names[code] = stats.getName().length() > MAX_NAME_LENGTH ? stats.getName().substring(0, MAX_NAME_LENGTH) : stats.getName();
+            addPendingDefinition(code);
+        }
+        return code;
+    }
+
+    /**
+     * Queue a species to be defined at the end of the current record.
+     *
+     * @param code the species id + 1
+     */
+    private void addPendingDefinition(int code) {
+        for (int index = 0; index < pendingCount; index++) {
+            if (pendingDefinitions[index] == code) {
+                return;
+            }
+        }
+        if (pendingCount == pendingDefinitions.length) {
+            pendingDefinitions = Arrays.copyOf(pendingDefinitions, pendingCount * 2);
+        }
+        pendingDefinitions[pendingCount++] = (short) code;
+    }
+
+    /**
+     * Write the queued species definitions and empty the queue.
+     */
+    private void writeDefinitions() {
+        makeRoom(4);
+        segment.putInt(pendingCount);
+        for (int index = 0; index < pendingCount; index++) {
+            int code = pendingDefinitions[index];
+            byte[] name = names[code].getBytes(StandardCharsets.UTF_8);
+            makeRoom(8 + name.length);
+            segment.putShort((short) code).putInt(definedColours[code]).putShort((short) name.length).put(name);
+        }
+        pendingCount = 0;
+    }
+
+    /**
+     * Make sure the next value fits in what is left of the segment being written, moving on to
+     * the next segment if it does not.
+     *
+     * @param bytes the size of the next value
+     */
+    private void makeRoom(int bytes) {
+        if (segment != null && segment.remaining() >= bytes) {
+            return;
+        }
+        try {
+            mapSegment(segmentNumber + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Map the index file with room for a number of steps, growing the file if needed.
+     *
+     * @param steps the number of steps to make room for
+     * @throws IOException if the index cannot be mapped
+     */
+    private void mapIndex(int steps) throws IOException {
+        index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + steps * 8L);
+        indexCapacity = steps;
+    }
+
+    /**
+     * Create a segment file and map it, the mapping stays valid once the channel is closed.
+     *
+     * @param number the number of the segment
+     * @throws IOException if the segment cannot be created
+     */
+    private void mapSegment(int number) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory.resolve(segmentName(number)), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        segmentNumber = number;
+    }
+
+    /**
+     * @param number the number of a segment
+     * @return the name of its file
+     */
+    static String segmentName(int number) {
+        return String.format("segment-%05d.dat", number);
+    }
+
+    /**
+     * A simple getter method to return the number of steps recorded
+     *
+     * @return the number of steps in the log so far
+     */
+    public int getStepCount() {
+        return stepCount;
+    }
+
+    /**
+     * Stop recording: stop following the field and make sure everything written reaches the disk.
+     */
+    public void close() {
+        field.stopTracking(changes);
+        if (segment != null) {
+            segment.force();
+        }
+        index.force();
+        try {
+            indexChannel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * What the StepProfiler measured during one step of the simulation. A sample is never changed
+ * once it is taken.
+ *
+ * @author Syraj Alkhalil and Cosmo Colman
+ * @version 2022.02.27 (2)
+ */
+public class StepSample {
+    private final int step;                         // The step the sample was taken at
+    private final long durationNanos;               // The wall-clock time of the whole step
+    private final long[] phaseNanos;                // The time spent in every phase, by phase ordinal, summed over the threads
+    private final int[] acts;                       // The number of organisms of every species that acted, by species id
+    private final int births;                       // The number of organisms born during the step
+    private final int deaths;                       // The number of organisms that died during the step
+    private final int organisms;                    // The number of organisms at the end of the step
+    private final long allocatedBytes;              // The bytes allocated by the threads stepping the simulation
+
+    /**
+     * Create a sample.
+     *
+     * @param step the step the sample was taken at
+     * @param durationNanos the wall-clock time of the whole step
+     * @param phaseNanos the time spent in every phase, by phase ordinal
+     * @param acts the number of organisms of every species that acted, by species id
+     * @param births the number of organisms born during the step
+     * @param deaths the number of organisms that died during the step
+     * @param organisms the number of organisms at the end of the step
+     * @param allocatedBytes the bytes allocated by the threads stepping the simulation
+     */
+    public StepSample(int step, long durationNanos, long[] phaseNanos, int[] acts, int births, int deaths, int organisms, long allocatedBytes) {
+        this.step = step;
+        this.durationNanos = durationNanos;
+        this.phaseNanos = phaseNanos;
+        this.acts = acts;
+        this.births = births;
+        this.deaths = deaths;
+        this.organisms = organisms;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    /**
+     * A simple getter method to return the step field
+     *
+     * @return the step the sample was taken at
+     */
+    public int getStep() {
+        return step;
+    }
+
+    /**
+     * A simple getter method to return the durationNanos field
+     *
+     * @return the wall-clock time of the whole step in nanoseconds
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * Return the time spent in a phase during the step. With the parallel engine the time of
+     * every thread is added up, so the phases can add up to more than the step.
+     *
+     * @param phase the phase
+     * @return the time spent in the phase in nanoseconds
+     */
+    public long getPhaseNanos(StepProfiler.Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    /**
+     * Return how many organisms of a species acted during the step.
+     *
+     * @param stats the species
+     * @return the number of organisms of the species that acted
+     */
+    public int getActCount(EntityStats stats) {
+        int id = stats.getSpeciesId();
+        return id < acts.length ? acts[id] : 0;
+    }
+
+    /**
+     * A simple getter method to return the births field
+     *
+     * @return the number of organisms born during the step
+     */
+    public int getBirths() {
+        return births;
+    }
+
+    /**
+     * A simple getter method to return the deaths field
+     *
+     * @return the number of organisms that died during the step
+     */
+    public int getDeaths() {
+        return deaths;
+    }
+
+    /**
+     * A simple getter method to return the organisms field
+     *
+     * @return the number of organisms at the end of the step
+     */
+    public int getOrganisms() {
+        return organisms;
+    }
+
+    /**
+     * A simple getter method to return the allocatedBytes field
+     *
+     * @return the bytes allocated by the threads stepping the simulation, -1 if the JVM cannot tell
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * Why and when a run was stopped before its last step, as decided by a TerminationCondition.
+ * A termination is never changed once made.
+ *
+ * @author Syraj Alkhalil and Cosmo Colman
+ * @version 2022.02.27 (2)
+ */
+public class Termination {
+    /**
+     * The reasons a run can be stopped for.
+     */
+    public enum Reason {
+        EXTINCTION, NOT_VIABLE, STEADY_STATE, CYCLE
+    }
+
+    private final Reason reason;        // Why the run was stopped
+    private final int step;             // The step the run was stopped at
+    private final String detail;        // What was seen, e.g. the species that died out
+
+    /**
+     * Create a termination.
+     *
+     * @param reason why the run was stopped
+     * @param step the step the run was stopped at
+     * @param detail what was seen, e.g. the species that died out
+     */
+    public Termination(Reason reason, int step, String detail) {
+        this.reason = reason;
+        this.step = step;
+        this.detail = detail;
+    }
+
+    /**
+     * A simple getter method to return the reason field
+     *
+     * @return why the run was stopped
+     */
+    public Reason getReason() {
+        return reason;
+    }
+
+    /**
+     * A simple getter method to return the step field
+     *
+     * @return the step the run was stopped at
+     */
+    public int getStep() {
+        return step;
+    }
+
+    /**
+     * A simple getter method to return the detail field
+     *
+     * @return what was seen, e.g. the species that died out
+     */
+    public String getDetail() {
+        return detail;
+    }
+
+    @Override
+    public String toString() {
+        return reason + " at step " + step + " (" + detail + ")";
+    }
+}
@@ -0,0 +1,37 @@
+/**
+ * Decides after every step whether a batch run can stop because its outcome is settled, e.g.
+ * every predator is gone. A condition is checked once per step with the population of every
+ * species, which the field keeps up to date as it goes, so checking is cheap. A condition may
+ * remember what it saw, so every run needs a condition of its own.
+ *
+ * @author Syraj Alkhalil and Cosmo Colman
+ * @version 2022.02.27 (2)
+ */
+public interface TerminationCondition {
+    /**
+     * Look at the simulation after a step.
+     *
+     * @param simulator the simulation
+     * @param counts the population of every possible entity, as Simulator.countPopulation
+     * @return why the run should stop, null to keep going
+     */
+    Termination check(Simulator simulator, int[] counts);
+
+    /**
+     * Combine conditions, the run stops as soon as any of them says so.
+     *
+     * @param conditions the conditions, checked in this order every step
+     * @return a condition stopping the run with the first reason found
+     */
+    static TerminationCondition anyOf(TerminationCondition... conditions) {
+        return (simulator, counts) -> {
+            for (TerminationCondition condition : conditions) {
+                Termination termination = condition.check(simulator, counts);
+                if (termination != null) {
+                    return termination;
+                }
+            }
+            return null;
+        };
+    }
+}
@@ -0,0 +1,38 @@
+/**
+ * What lies beyond the edges of the field.
+ *
+ * BOUNDED is the original field, a cell on the edge simply has fewer neighbours. TOROIDAL joins
+ * the opposite edges, so every cell has eight neighbours and no cell is special. REFLECTIVE
+ * mirrors the field at its edges, a step off the field lands on the cell that lies as far
+ * inside, so a cell on the edge still has eight neighbours, some of them twice.
+ *
+ * @author Syraj Alkhalil and Cosmo Colman
+ * @version 2022.02.27 (2)
+ */
+public enum Topology {
+    BOUNDED, TOROIDAL, REFLECTIVE;
+
+    /**
+     * Bring a row or column one step off the field back onto it.
+     *
+     * @param index the row or column, from -1 to size
+     * @param size the depth or width of the field
+     * @return the row or column on the field, -1 if there is none
+     */
+    public int wrap(int index, int size) {
+        if (index >= 0 && index < size) {
+            return index;
+        }
+        switch (this) {
+            case TOROIDAL:
+                return index < 0 ? size - 1 : 0;
+            case REFLECTIVE:
+                if (size == 1) {
+                    return 0;
+                }
+                return index < 0 ? 1 : size - 2;
+            default:
+                return -1;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+/**
+ * Stops a run once FieldStats.isViable turns false, i.e. once fewer than two types of entity
+ * are left on the field. The populations handed in are used rather than the field, so it also
+ * works when the field is shared out between processes.
+ *
+ * @author Syraj Alkhalil and Cosmo Colman
+ * @version 2022.02.27 (2)
+ */
+public class ViabilityCondition implements TerminationCondition {
+    private final FieldStats stats = new FieldStats();     // Counts the entities of every type
+
+    @Override
+    public Termination check(Simulator simulator, int[] counts) {
+        if (stats.isViable(simulator.getPossibleEntities(), counts)) {
+            return null;
+        }
+        return new Termination(Termination.Reason.NOT_VIABLE, simulator.getStep(),
+                stats.getPopulationDetails(simulator.getPossibleEntities(), counts).trim());
+    }
+}
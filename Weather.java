@@ -8,11 +8,11 @@
  * @version 2022.02.27 (2)
  */
 public class Weather {
-    private final Randomizer rand = new Randomizer();                   // a random chance of things happening
+    private RandomStream rand;                                          // a random chance of things happening
     private final Seasons[] possibleSeasons = Seasons.values();         // all the possible values of seasons
     private Seasons currentSeason;                                      // current season
     private final int max = possibleSeasons.length;                     // the total number of the seasons
-    private int current = rand.nextInt(possibleSeasons.length);         // the index of the current season
+    private int current;                                                // the index of the current season
 
     private int actualVisibility;                                       // the visibility generated
     private int actualDownfall;                                         // the downfall generated
@@ -20,8 +20,12 @@ public class Weather {
     /**
      * the main constructor of the weather class
      * initialise the weather object with a seasons, visibility, and a downfall
+     *
+     * @param rand the random stream the weather draws from
      */
-    public Weather(){
+    public Weather(RandomStream rand){
+        this.rand = rand;
+        this.current = rand.nextInt(possibleSeasons.length);
         pickSeason();
         generateVisibilityAndDownfall();
     }
@@ -38,9 +42,11 @@ public class Weather {
 
     /**
      * This method is used to reset the weather completely.
+     *
+     * @param rand the random stream the weather draws from from now on
      */
-    public void resetWeather(){
-        rand.completeReset();
+    public void resetWeather(RandomStream rand){
+        this.rand = rand;
         current = rand.nextInt(possibleSeasons.length);
     }
 
@@ -76,6 +82,40 @@ public class Weather {
         return actualDownfall;
     }
 
+    /**
+     * A simple getter method to return the index of the current season
+     *
+     * @return the index of the current season in Seasons.values()
+     */
+    public int getSeasonIndex(){
+        return current;
+    }
+
+    /**
+     * A simple getter method to return the rand field, used to save the weather
+     *
+     * @return the random stream the weather draws from
+     */
+    public RandomStream getRand(){
+        return rand;
+    }
+
+    /**
+     * Put back a saved weather, used when a checkpoint is restored.
+     *
+     * @param seasonIndex the index of the season in Seasons.values()
+     * @param visibility the visibility
+     * @param downfall the downfall
+     * @param rand the random stream the weather draws from from now on
+     */
+    public void restoreWeather(int seasonIndex, int visibility, int downfall, RandomStream rand){
+        this.current = seasonIndex;
+        this.currentSeason = possibleSeasons[seasonIndex];
+        this.actualVisibility = visibility;
+        this.actualDownfall = downfall;
+        this.rand = rand;
+    }
+
     /**
      * Overriding the method toString to represent the weather in a good way
      *